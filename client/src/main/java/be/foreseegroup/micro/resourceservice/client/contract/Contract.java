@@ -0,0 +1,100 @@
+package be.foreseegroup.micro.resourceservice.client.contract;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.Date;
+
+/**
+ * A contract as exchanged with the contract-service. Start and end dates are calendar days in UTC, a contract
+ * without end date runs indefinitely.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Contract {
+    static final String DATE_PATTERN = "yyyy-MM-dd";
+    static final String DATE_TIME_ZONE = "UTC";
+
+    private String id;
+
+    private String unitId;
+    private String consultantId;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = DATE_PATTERN, timezone = DATE_TIME_ZONE)
+    private Date startDate;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = DATE_PATTERN, timezone = DATE_TIME_ZONE)
+    private Date endDate;
+
+    private String type;
+
+    private Long version;
+
+    public Contract() {
+    }
+
+    public Contract(String unitId, String consultantId, Date startDate, Date endDate, String type) {
+        this.unitId = unitId;
+        this.consultantId = consultantId;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.type = type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUnitId() {
+        return unitId;
+    }
+
+    public void setUnitId(String unitId) {
+        this.unitId = unitId;
+    }
+
+    public String getConsultantId() {
+        return consultantId;
+    }
+
+    public void setConsultantId(String consultantId) {
+        this.consultantId = consultantId;
+    }
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(Date startDate) {
+        this.startDate = startDate;
+    }
+
+    public Date getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(Date endDate) {
+        this.endDate = endDate;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * The version the contract was read at, sent back on update so a concurrent change is answered with 409.
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,116 @@
+package be.foreseegroup.micro.resourceservice.client.contract;
+
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the keys that concurrent callers look up within {@code windowMillis} of the first one and loads them
+ * with a single call of the loader. Callers asking for a key that is already waiting share its result. A batch
+ * that reaches {@code maxSize} keys is loaded right away by the caller that filled it, otherwise the batch is loaded
+ * on the executor when its window ends.
+ */
+class ContractBatcher<K, V> {
+    private final Function<Set<K>, Map<K, V>> loader;
+    private final ScheduledExecutorService executor;
+    private final long windowMillis;
+    private final int maxSize;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private Map<K, SettableFuture<V>> pending = new LinkedHashMap<>();
+
+    ContractBatcher(Function<Set<K>, Map<K, V>> loader, ScheduledExecutorService executor,
+                    long windowMillis, int maxSize) {
+        this.loader = loader;
+        this.executor = executor;
+        this.windowMillis = windowMillis;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the value the loader returned for the key, or null when it returned none
+     */
+    V get(K key) {
+        calls.incrementAndGet();
+        SettableFuture<V> result;
+        Map<K, SettableFuture<V>> full = null;
+        synchronized (this) {
+            result = pending.get(key);
+            if (result != null) {
+                coalesced.incrementAndGet();
+            } else {
+                result = SettableFuture.create();
+                pending.put(key, result);
+                if (pending.size() >= maxSize) {
+                    full = pending;
+                    pending = new LinkedHashMap<>();
+                } else if (pending.size() == 1) {
+                    final Map<K, SettableFuture<V>> batch = pending;
+                    executor.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            flush(batch);
+                        }
+                    }, windowMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        if (full != null)
+            load(full);
+        try {
+            return Uninterruptibles.getUninterruptibly(result);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    long getCalls() {
+        return calls.get();
+    }
+
+    long getCoalesced() {
+        return coalesced.get();
+    }
+
+    long getBatches() {
+        return batches.get();
+    }
+
+    private void flush(Map<K, SettableFuture<V>> batch) {
+        synchronized (this) {
+            // a batch that filled up was taken over by the caller that filled it
+            if (pending != batch)
+                return;
+            pending = new LinkedHashMap<>();
+        }
+        load(batch);
+    }
+
+    private void load(Map<K, SettableFuture<V>> batch) {
+        batches.incrementAndGet();
+        try {
+            Map<K, V> values = loader.apply(new LinkedHashSet<>(batch.keySet()));
+            for (Map.Entry<K, SettableFuture<V>> entry : batch.entrySet()) {
+                entry.getValue().set(values == null ? null : values.get(entry.getKey()));
+            }
+        } catch (RuntimeException | Error e) {
+            // every caller of the batch gets the failure, none of them may be left waiting
+            for (SettableFuture<V> result : batch.values()) {
+                result.setException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package be.foreseegroup.micro.resourceservice.client.contract;
+
+import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Typed client for the contract-service API.
+ * <p>
+ * Instances are resolved through discovery under {@code contract.client.serviceId}, or taken from
+ * {@code contract.client.urls}, and chosen by response time, see {@link ContractInstances}. Requests go over a pool
+ * of keep-alive connections. Concurrent lookups by id, consultant or unit are sent together as one request to the
+ * corresponding lookup endpoint of the service, see {@link ContractBatcher}. Reads that fail on one instance are
+ * retried once on another, writes are not retried.
+ * <p>
+ * With {@code contract.client.cache.enabled} the lookups are cached locally for
+ * {@code contract.client.cache.timeToLiveSeconds}. Writes through this client evict what they change: the contract
+ * itself, the consultant and unit it belongs to, and every cached consultant or unit list that held it, as it may
+ * have belonged to another consultant or unit before. Writes of other services are seen once the entries expire.
+ * Cached contracts are shared between callers and must not be modified.
+ * <p>
+ * Failures surface as the {@link org.springframework.web.client.RestClientException}s of {@link RestTemplate}.
+ */
+public class ContractClient implements Closeable {
+    private static final ParameterizedTypeReference<Map<String, Contract>> CONTRACTS_BY_ID =
+            new ParameterizedTypeReference<Map<String, Contract>>() {};
+    private static final ParameterizedTypeReference<Map<String, List<Contract>>> CONTRACTS_BY_KEY =
+            new ParameterizedTypeReference<Map<String, List<Contract>>>() {};
+    private static final ParameterizedTypeReference<List<Contract>> CONTRACTS =
+            new ParameterizedTypeReference<List<Contract>>() {};
+    private static final ParameterizedTypeReference<Contract> CONTRACT =
+            new ParameterizedTypeReference<Contract>() {};
+
+    private final ContractClientProperties properties;
+    private final ContractInstances instances;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final ContractBatcher<String, Contract> byId;
+    private final ContractBatcher<String, List<Contract>> byConsultantId;
+    private final ContractBatcher<String, List<Contract>> byUnitId;
+
+    private final Cache<String, Optional<Contract>> byIdCache;
+    private final Cache<String, List<Contract>> byConsultantIdCache;
+    private final Cache<String, List<Contract>> byUnitIdCache;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * @param discoveryClient resolves the instances when no fixed URLs are configured, may be null when they are
+     */
+    public ContractClient(ContractClientProperties properties, DiscoveryClient discoveryClient) {
+        this.properties = properties;
+        this.instances = new ContractInstances(properties, discoveryClient);
+
+        final ContractClientProperties.Pool pool = properties.getPool();
+        PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager();
+        connections.setMaxTotal(pool.getMaxConnections());
+        connections.setDefaultMaxPerRoute(pool.getMaxConnectionsPerInstance());
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(pool.getConnectTimeoutMillis())
+                .setConnectionRequestTimeout(pool.getConnectTimeoutMillis())
+                .setSocketTimeout(pool.getReadTimeoutMillis())
+                .setStaleConnectionCheckEnabled(true)
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connections)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+                    @Override
+                    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                        // the service sends no Keep-Alive header, close idle connections before it does
+                        long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                        return duration > 0 ? Math.min(duration, pool.getKeepAliveMillis()) : pool.getKeepAliveMillis();
+                    }
+                })
+                .build();
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+
+        this.executor = new ScheduledThreadPoolExecutor(properties.getBatch().getThreads(),
+                new ThreadFactoryBuilder().setNameFormat("contract-client-batch-%d").setDaemon(true).build());
+        long window = properties.getBatch().getWindowMillis();
+        int maxSize = properties.getBatch().getMaxSize();
+        this.byId = new ContractBatcher<>(new Function<Set<String>, Map<String, Contract>>() {
+            @Override
+            public Map<String, Contract> apply(Set<String> ids) {
+                return read("/contracts/lookup", HttpMethod.POST, ids, CONTRACTS_BY_ID);
+            }
+        }, executor, window, maxSize);
+        this.byConsultantId = new ContractBatcher<>(new Function<Set<String>, Map<String, List<Contract>>>() {
+            @Override
+            public Map<String, List<Contract>> apply(Set<String> consultantIds) {
+                return read("/contractsbycid", HttpMethod.POST, consultantIds, CONTRACTS_BY_KEY);
+            }
+        }, executor, window, maxSize);
+        this.byUnitId = new ContractBatcher<>(new Function<Set<String>, Map<String, List<Contract>>>() {
+            @Override
+            public Map<String, List<Contract>> apply(Set<String> unitIds) {
+                return read("/contractsbyuid", HttpMethod.POST, unitIds, CONTRACTS_BY_KEY);
+            }
+        }, executor, window, maxSize);
+
+        ContractClientProperties.Cache cache = properties.getCache();
+        if (cache.isEnabled()) {
+            this.byIdCache = newCache(cache);
+            this.byConsultantIdCache = newCache(cache);
+            this.byUnitIdCache = newCache(cache);
+        } else {
+            this.byIdCache = null;
+            this.byConsultantIdCache = null;
+            this.byUnitIdCache = null;
+        }
+    }
+
+    /**
+     * @return the contract, or null when it does not exist
+     */
+    public Contract findOne(final String id) {
+        if (byIdCache == null)
+            return byId.get(id);
+        return cached(byIdCache, id, new Callable<Optional<Contract>>() {
+            @Override
+            public Optional<Contract> call() {
+                return Optional.ofNullable(byId.get(id));
+            }
+        }).orElse(null);
+    }
+
+    public List<Contract> findByConsultantId(final String consultantId) {
+        if (byConsultantIdCache == null)
+            return orEmpty(byConsultantId.get(consultantId));
+        return cached(byConsultantIdCache, consultantId, new Callable<List<Contract>>() {
+            @Override
+            public List<Contract> call() {
+                return orEmpty(byConsultantId.get(consultantId));
+            }
+        });
+    }
+
+    public List<Contract> findByUnitId(final String unitId) {
+        if (byUnitIdCache == null)
+            return orEmpty(byUnitId.get(unitId));
+        return cached(byUnitIdCache, unitId, new Callable<List<Contract>>() {
+            @Override
+            public List<Contract> call() {
+                return orEmpty(byUnitId.get(unitId));
+            }
+        });
+    }
+
+    public List<Contract> findAll() {
+        return read("/contracts", HttpMethod.GET, null, CONTRACTS);
+    }
+
+    /**
+     * @return the created contract with its id
+     */
+    public Contract create(Contract contract) {
+        Contract created = write("/contracts", HttpMethod.POST, contract, CONTRACT);
+        evict(created);
+        return created;
+    }
+
+    /**
+     * Overwrites the contract with the given id. When the contract carries the version it was read at, the update
+     * is rejected with 409 if it changed in the meantime.
+     *
+     * @return the updated contract
+     */
+    public Contract update(Contract contract) {
+        Contract updated = write("/contracts/{id}", HttpMethod.PUT, contract, CONTRACT, contract.getId());
+        evict(contract.getId());
+        evict(updated);
+        return updated;
+    }
+
+    public void delete(String id) {
+        write("/contracts/{id}", HttpMethod.DELETE, null, CONTRACT, id);
+        evict(id);
+    }
+
+    /**
+     * Drops all locally cached lookups.
+     */
+    public void invalidateAll() {
+        if (byIdCache == null)
+            return;
+        byIdCache.invalidateAll();
+        byConsultantIdCache.invalidateAll();
+        byUnitIdCache.invalidateAll();
+    }
+
+    /**
+     * @return the number of HTTP requests sent, lookups that were batched or cached count once or not at all
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the lookups that shared a request with a concurrent lookup of the same key
+     */
+    public long getCoalesced() {
+        return byId.getCoalesced() + byConsultantId.getCoalesced() + byUnitId.getCoalesced();
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        httpClient.close();
+    }
+
+    private <T> T read(String path, HttpMethod method, Object body, ParameterizedTypeReference<T> type,
+                       Object... uriVariables) {
+        ContractInstances.Instance instance = instances.choose(null);
+        try {
+            return exchange(instance, path, method, body, type, uriVariables);
+        } catch (ResourceAccessException | HttpServerErrorException e) {
+            ContractInstances.Instance other = instances.choose(instance);
+            if (other == instance)
+                throw e;
+            return exchange(other, path, method, body, type, uriVariables);
+        }
+    }
+
+    private <T> T write(String path, HttpMethod method, Object body, ParameterizedTypeReference<T> type,
+                        Object... uriVariables) {
+        return exchange(instances.choose(null), path, method, body, type, uriVariables);
+    }
+
+    private <T> T exchange(ContractInstances.Instance instance, String path, HttpMethod method, Object body,
+                           ParameterizedTypeReference<T> type, Object... uriVariables) {
+        requests.incrementAndGet();
+        instance.started();
+        long start = System.nanoTime();
+        try {
+            T result = restTemplate.exchange(instance.getBaseUrl() + path, method,
+                    body == null ? null : new HttpEntity<>(body), type, uriVariables).getBody();
+            instance.completed(System.nanoTime() - start);
+            return result;
+        } catch (ResourceAccessException | HttpServerErrorException e) {
+            instance.failed(TimeUnit.MILLISECONDS.toNanos(properties.getPool().getReadTimeoutMillis()));
+            throw e;
+        } catch (RuntimeException e) {
+            // a client error says nothing about the instance
+            instance.completed(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * Evicts the contract and every cached list that holds it, whether or not the contract itself was cached.
+     */
+    private void evict(String id) {
+        if (byIdCache == null)
+            return;
+        Optional<Contract> cached = byIdCache.getIfPresent(id);
+        if (cached != null && cached.isPresent())
+            evict(cached.get());
+        byIdCache.invalidate(id);
+        evictListsHolding(byConsultantIdCache, id);
+        evictListsHolding(byUnitIdCache, id);
+    }
+
+    private static void evictListsHolding(Cache<String, List<Contract>> cache, String id) {
+        for (Map.Entry<String, List<Contract>> entry : cache.asMap().entrySet()) {
+            for (Contract contract : entry.getValue()) {
+                if (id.equals(contract.getId())) {
+                    cache.invalidate(entry.getKey());
+                    break;
+                }
+            }
+        }
+    }
+
+    private void evict(Contract contract) {
+        if (byIdCache == null || contract == null)
+            return;
+        byIdCache.invalidate(contract.getId());
+        if (contract.getConsultantId() != null)
+            byConsultantIdCache.invalidate(contract.getConsultantId());
+        if (contract.getUnitId() != null)
+            byUnitIdCache.invalidate(contract.getUnitId());
+    }
+
+    private static <V> Cache<String, V> newCache(ContractClientProperties.Cache cache) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(cache.getMaxContracts())
+                .expireAfterWrite(cache.getTimeToLiveSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    private static <V> V cached(Cache<String, V> cache, String key, Callable<V> loader) {
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static List<Contract> orEmpty(List<Contract> contracts) {
+        return contracts == null ? Collections.<Contract>emptyList() : Collections.unmodifiableList(contracts);
+    }
+}
@@ -0,0 +1,24 @@
+package be.foreseegroup.micro.resourceservice.client.contract;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers a {@link ContractClient} configured from the {@code contract.client.*} properties, resolving the
+ * instances through the discovery client of the consuming service. Consumers opt in with
+ * {@code @Import(ContractClientConfiguration.class)}.
+ */
+@Configuration
+@EnableConfigurationProperties(ContractClientProperties.class)
+public class ContractClientConfiguration {
+    @Autowired(required = false)
+    DiscoveryClient discoveryClient;
+
+    @Bean
+    public ContractClient contractClient(ContractClientProperties properties) {
+        return new ContractClient(properties, discoveryClient);
+    }
+}
@@ -0,0 +1,177 @@
+package be.foreseegroup.micro.resourceservice.client.contract;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tunables for the {@link ContractClient}, bound from the {@code contract.client.*} properties of the consuming
+ * service.
+ */
+@ConfigurationProperties(prefix = "contract.client")
+public class ContractClientProperties {
+    /** Name the contract-service registers under in Eureka. */
+    private String serviceId = "contract";
+    /** Fixed base URLs of contract-service instances, used instead of discovery when given. */
+    private List<String> urls = new ArrayList<>();
+    /** Time after which the instances are looked up in discovery again. */
+    private long refreshIntervalMillis = 30000;
+
+    private final Pool pool = new Pool();
+    private final Batch batch = new Batch();
+    private final Cache cache = new Cache();
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public void setServiceId(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    public List<String> getUrls() {
+        return urls;
+    }
+
+    public void setUrls(List<String> urls) {
+        this.urls = urls;
+    }
+
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    public Pool getPool() {
+        return pool;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public static class Pool {
+        /** Maximum number of open connections over all instances. */
+        private int maxConnections = 200;
+        /** Maximum number of open connections to one instance. */
+        private int maxConnectionsPerInstance = 50;
+        private int connectTimeoutMillis = 1000;
+        private int readTimeoutMillis = 10000;
+        /** Time after which an idle connection is closed, below the keep-alive timeout of the service. */
+        private long keepAliveMillis = 15000;
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getMaxConnectionsPerInstance() {
+            return maxConnectionsPerInstance;
+        }
+
+        public void setMaxConnectionsPerInstance(int maxConnectionsPerInstance) {
+            this.maxConnectionsPerInstance = maxConnectionsPerInstance;
+        }
+
+        public int getConnectTimeoutMillis() {
+            return connectTimeoutMillis;
+        }
+
+        public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+        }
+
+        public int getReadTimeoutMillis() {
+            return readTimeoutMillis;
+        }
+
+        public void setReadTimeoutMillis(int readTimeoutMillis) {
+            this.readTimeoutMillis = readTimeoutMillis;
+        }
+
+        public long getKeepAliveMillis() {
+            return keepAliveMillis;
+        }
+
+        public void setKeepAliveMillis(long keepAliveMillis) {
+            this.keepAliveMillis = keepAliveMillis;
+        }
+    }
+
+    public static class Batch {
+        /** Time lookups wait for others to join their request. */
+        private long windowMillis = 2;
+        /** Maximum number of keys per request, at most the maxLookupKeys of the service. */
+        private int maxSize = 100;
+        /** Threads sending the requests of batches that filled up their window. */
+        private int threads = 4;
+
+        public long getWindowMillis() {
+            return windowMillis;
+        }
+
+        public void setWindowMillis(long windowMillis) {
+            this.windowMillis = windowMillis;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    public static class Cache {
+        /** Keep the results of the id, consultant and unit lookups in a local cache. */
+        private boolean enabled = false;
+        /** Maximum number of entries held by each of the id, consultant and unit caches. */
+        private long maxContracts = 10000;
+        /** Time after which a cached entry is looked up again, how stale writes of other services may be seen. */
+        private long timeToLiveSeconds = 30;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxContracts() {
+            return maxContracts;
+        }
+
+        public void setMaxContracts(long maxContracts) {
+            this.maxContracts = maxContracts;
+        }
+
+        public long getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
+}
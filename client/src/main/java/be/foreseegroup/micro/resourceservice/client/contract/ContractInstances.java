@@ -0,0 +1,177 @@
+package be.foreseegroup.micro.resourceservice.client.contract;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The contract-service instances, resolved through discovery or from fixed URLs, and the choice between them.
+ * <p>
+ * Each instance keeps a moving average of its response times. A request picks two instances at random and goes to
+ * the one with the lower average times its requests in flight plus one, so slow or busy instances get less traffic
+ * without all clients piling onto the single fastest one. Instances without a response time yet are tried first.
+ * <p>
+ * While an instance gets no requests its average halves every {@value #HALF_LIFE_SECONDS} seconds, so an instance
+ * that was penalized for failing, and therefore loses every comparison, comes up again after a while and is
+ * measured anew instead of being starved until it leaves discovery.
+ */
+class ContractInstances {
+    /** Weight of the newest response time in the moving average. */
+    private static final double DECAY = 0.2;
+    /** Time in which the average of an instance without requests halves. */
+    static final long HALF_LIFE_SECONDS = 5;
+    private static final double HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(HALF_LIFE_SECONDS);
+
+    private final ContractClientProperties properties;
+    private final DiscoveryClient discoveryClient;
+
+    private volatile List<Instance> instances = Collections.emptyList();
+    private volatile long resolvedAt;
+
+    ContractInstances(ContractClientProperties properties, DiscoveryClient discoveryClient) {
+        this.properties = properties;
+        this.discoveryClient = discoveryClient;
+    }
+
+    /**
+     * @param exclude an instance that just failed, only chosen again when it is the only one
+     */
+    Instance choose(Instance exclude) {
+        List<Instance> candidates = resolve();
+        if (candidates.isEmpty())
+            throw new ResourceAccessException("No instance of " + properties.getServiceId() + " available");
+        if (candidates.size() == 1)
+            return candidates.get(0);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first)
+            second++;
+        Instance a = candidates.get(first);
+        Instance b = candidates.get(second);
+        if (a == exclude)
+            return b;
+        if (b == exclude)
+            return a;
+        return a.cost() <= b.cost() ? a : b;
+    }
+
+    List<Instance> getInstances() {
+        return resolve();
+    }
+
+    private List<Instance> resolve() {
+        long now = System.nanoTime();
+        if (resolvedAt != 0 && now - resolvedAt < TimeUnit.MILLISECONDS.toNanos(properties.getRefreshIntervalMillis()))
+            return instances;
+        synchronized (this) {
+            if (resolvedAt == 0 || now - resolvedAt >= TimeUnit.MILLISECONDS.toNanos(properties.getRefreshIntervalMillis())) {
+                instances = refresh();
+                resolvedAt = System.nanoTime();
+            }
+            return instances;
+        }
+    }
+
+    /**
+     * Instances that are still registered keep their response times.
+     */
+    private List<Instance> refresh() {
+        List<URI> uris = new ArrayList<>();
+        if (!properties.getUrls().isEmpty() || discoveryClient == null) {
+            for (String url : properties.getUrls()) {
+                uris.add(URI.create(url));
+            }
+        } else {
+            for (ServiceInstance instance : discoveryClient.getInstances(properties.getServiceId())) {
+                uris.add(instance.getUri());
+            }
+        }
+        Map<URI, Instance> known = new HashMap<>();
+        for (Instance instance : instances) {
+            known.put(instance.uri, instance);
+        }
+        List<Instance> refreshed = new ArrayList<>(uris.size());
+        for (URI uri : uris) {
+            Instance instance = known.get(uri);
+            refreshed.add(instance != null ? instance : new Instance(uri));
+        }
+        return Collections.unmodifiableList(refreshed);
+    }
+
+    static class Instance {
+        private final URI uri;
+        private final String baseUrl;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // guarded by this
+        private double latencyNanos;
+        private long sampledAt;
+
+        Instance(URI uri) {
+            this.uri = uri;
+            String url = uri.toString();
+            this.baseUrl = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        }
+
+        String getBaseUrl() {
+            return baseUrl;
+        }
+
+        void started() {
+            inFlight.incrementAndGet();
+        }
+
+        void completed(long nanos) {
+            inFlight.decrementAndGet();
+            long now = System.nanoTime();
+            synchronized (this) {
+                double current = decayed(now);
+                latencyNanos = current == 0 ? nanos : current + DECAY * (nanos - current);
+                sampledAt = now;
+            }
+        }
+
+        /**
+         * A failed request counts as at least as slow as the read timeout, so the instance is avoided until the
+         * penalty fades or it answers again.
+         */
+        void failed(long timeoutNanos) {
+            inFlight.decrementAndGet();
+            long now = System.nanoTime();
+            synchronized (this) {
+                latencyNanos = Math.max(decayed(now) * 2, timeoutNanos);
+                sampledAt = now;
+            }
+        }
+
+        synchronized double getLatencyNanos() {
+            return decayed(System.nanoTime());
+        }
+
+        // guarded by this
+        private double decayed(long now) {
+            if (latencyNanos == 0)
+                return 0;
+            return latencyNanos * Math.pow(0.5, (now - sampledAt) / HALF_LIFE_NANOS);
+        }
+
+        private double cost() {
+            return getLatencyNanos() * (inFlight.get() + 1);
+        }
+
+        @Override
+        public String toString() {
+            return baseUrl;
+        }
+    }
+}
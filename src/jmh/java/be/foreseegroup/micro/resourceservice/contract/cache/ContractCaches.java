@@ -0,0 +1,20 @@
+package be.foreseegroup.micro.resourceservice.contract.cache;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractRepository;
+
+/**
+ * Wires a {@link ContractCache} by hand for benchmarks that run without a Spring context.
+ */
+public final class ContractCaches {
+    private ContractCaches() {
+    }
+
+    public static ContractCache create(ContractRepository repo, ContractProperties properties) {
+        ContractCache cache = new ContractCache();
+        cache.repo = repo;
+        cache.properties = properties;
+        cache.init();
+        return cache;
+    }
+}
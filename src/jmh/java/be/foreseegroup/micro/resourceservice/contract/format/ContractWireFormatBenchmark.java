@@ -0,0 +1,88 @@
+package be.foreseegroup.micro.resourceservice.contract.format;
+
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractDates;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding and decoding cost of a list response in each wire format, with and without the gzip the
+ * container applies to compressible responses. The encoded sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContractWireFormatBenchmark {
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    @Param({"100", "1000"})
+    public int listSize;
+
+    private ObjectWriter listWriter;
+    private ObjectReader listReader;
+    private List<Contract> contracts;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws Exception {
+        Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder();
+        ContractFormats formats = new ContractFormats(builder.build(), builder);
+        ObjectMapper mapper = formats.negotiate("smile".equals(format) ? ContractFormats.SMILE_VALUE
+                : "cbor".equals(format) ? ContractFormats.CBOR_VALUE : "application/json");
+        JavaType listType = mapper.getTypeFactory().constructCollectionType(List.class, Contract.class);
+        listWriter = mapper.writerWithType(listType);
+        listReader = mapper.reader(listType);
+
+        contracts = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            Contract contract = new Contract(String.format("55f3e1a0c4d2a8b1e0f0%04x", i), "unit" + (i % 50),
+                    "consultant" + (i % 500), ContractDates.parse("2015-01-01"), ContractDates.parse("2016-12-31"), "fixed");
+            contract.setVersion((long) i % 7);
+            contracts.add(contract);
+        }
+        encoded = listWriter.writeValueAsBytes(contracts);
+        System.out.printf("%n%s, %d contracts: %d bytes, %d bytes gzipped%n", format, listSize, encoded.length, gzip(encoded).length);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws Exception {
+        return listWriter.writeValueAsBytes(contracts);
+    }
+
+    @Benchmark
+    public List<Contract> deserializeList() throws Exception {
+        return listReader.readValue(encoded);
+    }
+
+    @Benchmark
+    public byte[] serializeListGzipped() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(encoded.length);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            listWriter.writeValue(out, contracts);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
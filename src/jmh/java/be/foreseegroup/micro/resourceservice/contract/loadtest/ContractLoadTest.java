@@ -0,0 +1,187 @@
+package be.foreseegroup.micro.resourceservice.contract.loadtest;
+
+import be.foreseegroup.micro.resourceservice.contract.model.BulkItemResult;
+import be.foreseegroup.micro.resourceservice.contract.model.BulkOperation;
+import be.foreseegroup.micro.resourceservice.contract.model.BulkReport;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractDates;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the HTTP endpoints of a locally running contract service and reports latency percentiles
+ * and throughput per endpoint. Configured through system properties:
+ * <ul>
+ * <li>{@code baseUrl} (http://localhost:8080)</li>
+ * <li>{@code threads} (16), concurrent clients</li>
+ * <li>{@code warmupSeconds} (10) and {@code durationSeconds} (30)</li>
+ * <li>{@code contracts} (10000), contracts seeded through the bulk endpoint before the run, 0 to skip</li>
+ * </ul>
+ * Seeded contracts are deleted again after the run.
+ */
+public class ContractLoadTest {
+    private static final int CONSULTANTS = 1000;
+    private static final int UNITS = 50;
+    private static final byte[] BUFFER = new byte[8192];
+
+    private final String baseUrl = System.getProperty("baseUrl", "http://localhost:8080");
+    private final int threads = Integer.getInteger("threads", 16);
+    private final int warmupSeconds = Integer.getInteger("warmupSeconds", 10);
+    private final int durationSeconds = Integer.getInteger("durationSeconds", 30);
+    private final int contracts = Integer.getInteger("contracts", 10000);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+    private List<String> ids = new ArrayList<>();
+
+    private static class Endpoint {
+        final Histogram latencies = new ConcurrentHistogram(TimeUnit.SECONDS.toNanos(30), 3);
+        final AtomicLong errors = new AtomicLong();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new ContractLoadTest().run();
+    }
+
+    private void run() throws Exception {
+        endpoints.put("GET /contracts/{id}", new Endpoint());
+        endpoints.put("GET /contractsbycid/{consultantId}", new Endpoint());
+        endpoints.put("GET /contractsbyuid/{unitId}", new Endpoint());
+
+        if (contracts > 0)
+            seed();
+        System.out.printf("Warming up for %ds with %d threads against %s%n", warmupSeconds, threads, baseUrl);
+        drive(warmupSeconds);
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.latencies.reset();
+            endpoint.errors.set(0);
+        }
+        System.out.printf("Measuring for %ds%n", durationSeconds);
+        drive(durationSeconds);
+        report();
+        if (contracts > 0)
+            cleanUp();
+    }
+
+    private void drive(int seconds) throws InterruptedException {
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final List<String> names = new ArrayList<>(endpoints.keySet());
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < end) {
+                        String name = names.get(random.nextInt(names.size()));
+                        call(name, pathFor(name, random));
+                    }
+                    done.countDown();
+                }
+            }, "load-" + t).start();
+        }
+        done.await();
+    }
+
+    private String pathFor(String name, ThreadLocalRandom random) {
+        switch (name) {
+            case "GET /contracts/{id}":
+                return "/contracts/" + (ids.isEmpty() ? "unknown" : ids.get(random.nextInt(ids.size())));
+            case "GET /contractsbycid/{consultantId}":
+                return "/contractsbycid/consultant" + random.nextInt(CONSULTANTS);
+            default:
+                return "/contractsbyuid/unit" + random.nextInt(UNITS);
+        }
+    }
+
+    private void call(String name, String path) {
+        Endpoint endpoint = endpoints.get(name);
+        long start = System.nanoTime();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            int status = connection.getResponseCode();
+            // drain the body so the keep-alive connection can be reused
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (in != null)
+                    while (in.read(BUFFER) >= 0) ;
+            }
+            if (status >= 400)
+                endpoint.errors.incrementAndGet();
+        } catch (IOException e) {
+            endpoint.errors.incrementAndGet();
+        }
+        endpoint.latencies.recordValue(Math.min(System.nanoTime() - start, endpoint.latencies.getHighestTrackableValue()));
+    }
+
+    private void report() {
+        System.out.printf("%-36s %10s %10s %10s %10s %10s %10s %8s%n",
+                "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            Histogram latencies = entry.getValue().latencies;
+            System.out.printf("%-36s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %8d%n",
+                    entry.getKey(),
+                    latencies.getTotalCount(),
+                    latencies.getTotalCount() / (double) durationSeconds,
+                    millis(latencies.getValueAtPercentile(50)),
+                    millis(latencies.getValueAtPercentile(99)),
+                    millis(latencies.getValueAtPercentile(99.9)),
+                    millis(latencies.getMaxValue()),
+                    entry.getValue().errors.get());
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private void seed() throws IOException {
+        System.out.printf("Seeding %d contracts%n", contracts);
+        List<BulkOperation> operations = new ArrayList<>(contracts);
+        for (int i = 0; i < contracts; i++) {
+            Contract contract = new Contract("unit" + (i % UNITS), "consultant" + (i % CONSULTANTS),
+                    ContractDates.parse("2015-01-01"), ContractDates.parse("2016-12-31"), "loadtest");
+            operations.add(new BulkOperation(BulkOperation.UPSERT, null, contract));
+        }
+        for (BulkItemResult item : bulk(operations).getItems()) {
+            if (item.getStatus() == 201)
+                ids.add(item.getId());
+        }
+    }
+
+    private void cleanUp() throws IOException {
+        List<BulkOperation> operations = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            operations.add(new BulkOperation(BulkOperation.DELETE, id, null));
+        }
+        bulk(operations);
+    }
+
+    private BulkReport bulk(List<BulkOperation> operations) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/contracts/bulk").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setChunkedStreamingMode(64 * 1024);
+        try (OutputStream out = connection.getOutputStream()) {
+            mapper.writeValue(out, operations);
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return mapper.readValue(in, BulkReport.class);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package be.foreseegroup.micro.resourceservice.contract.model;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization and deserialization cost of a single {@link Contract} and of the list
+ * responses returned by the lookup endpoints.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContractJsonBenchmark {
+    @Param({"1", "100", "1000"})
+    public int listSize;
+
+    private ObjectWriter contractWriter;
+    private ObjectReader contractReader;
+    private ObjectWriter listWriter;
+    private ObjectReader listReader;
+
+    private Contract contract;
+    private List<Contract> contracts;
+    private byte[] contractJson;
+    private byte[] listJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        JavaType listType = mapper.getTypeFactory().constructCollectionType(List.class, Contract.class);
+        contractWriter = mapper.writerWithType(Contract.class);
+        contractReader = mapper.reader(Contract.class);
+        listWriter = mapper.writerWithType(listType);
+        listReader = mapper.reader(listType);
+
+        contracts = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            contracts.add(sample(i));
+        }
+        contract = contracts.get(0);
+        contractJson = contractWriter.writeValueAsBytes(contract);
+        listJson = listWriter.writeValueAsBytes(contracts);
+    }
+
+    static Contract sample(int i) {
+        Contract contract = new Contract("55f3e1a0c4d2a8b1e0f0" + String.format("%04x", i), "unit" + (i % 50),
+                "consultant" + (i % 500), ContractDates.parse("2015-01-01"), ContractDates.parse("2016-12-31"), "fixed");
+        contract.setVersion((long) i % 7);
+        return contract;
+    }
+
+    @Benchmark
+    public byte[] serializeContract() throws Exception {
+        return contractWriter.writeValueAsBytes(contract);
+    }
+
+    @Benchmark
+    public Contract deserializeContract() throws Exception {
+        return contractReader.readValue(contractJson);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws Exception {
+        return listWriter.writeValueAsBytes(contracts);
+    }
+
+    @Benchmark
+    public List<Contract> deserializeList() throws Exception {
+        return listReader.readValue(listJson);
+    }
+}
@@ -0,0 +1,60 @@
+package be.foreseegroup.micro.resourceservice.contract.replica;
+
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractDates;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency of the {@link ContractTable} of the in-memory replica, filled with {@code contracts}
+ * contracts over 500 units and 5000 consultants.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContractTableBenchmark {
+    private static final int UNITS = 500;
+    private static final int CONSULTANTS = 5000;
+
+    @Param({"10000", "100000"})
+    public int contracts;
+
+    private ContractTable table;
+    private List<String> ids;
+
+    @Setup
+    public void setUp() {
+        table = new ContractTable();
+        ids = new ArrayList<>(contracts);
+        for (int i = 0; i < contracts; i++) {
+            Contract contract = new Contract(String.format("55f3e1a0c4d2a8b1%08x", i), "unit" + (i % UNITS),
+                    "consultant" + (i % CONSULTANTS), ContractDates.parse("2015-01-01"), ContractDates.parse("2016-12-31"),
+                    i % 3 == 0 ? "fixed" : "freelance");
+            contract.setVersion(0L);
+            table.put(contract);
+            ids.add(contract.getId());
+        }
+    }
+
+    @Benchmark
+    public Contract findOne() {
+        return table.findOne(ids.get(ThreadLocalRandom.current().nextInt(contracts)));
+    }
+
+    @Benchmark
+    public List<Contract> findByConsultantId() {
+        return table.findByConsultantId("consultant" + ThreadLocalRandom.current().nextInt(CONSULTANTS));
+    }
+
+    @Benchmark
+    public List<Contract> findByUnitId() {
+        return table.findByUnitId("unit" + ThreadLocalRandom.current().nextInt(UNITS));
+    }
+}
@@ -0,0 +1,97 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.cache.ContractCache;
+import be.foreseegroup.micro.resourceservice.contract.cache.ContractCaches;
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractDates;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link ContractService} handlers wired by hand against the {@link InMemoryContractRepository},
+ * with and without the read-through cache. Measures the handler, cache and mapping overhead on top
+ * of the database round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContractServiceBenchmark {
+    private static final int CONTRACTS = 1000;
+    private static final int CONSULTANTS = 100;
+
+    @Param({"true", "false"})
+    public boolean cacheEnabled;
+
+    private ContractService service;
+    private List<String> ids;
+    private Contract update;
+
+    @Setup
+    public void setUp() {
+        InMemoryContractRepository repo = new InMemoryContractRepository();
+        ids = new ArrayList<>(CONTRACTS);
+        for (int i = 0; i < CONTRACTS; i++) {
+            Contract contract = repo.save(new Contract("unit" + (i % 10), "consultant" + (i % CONSULTANTS),
+                    ContractDates.parse("2015-01-01"), ContractDates.parse("2016-12-31"), "fixed"));
+            ids.add(contract.getId());
+        }
+
+        ContractProperties properties = new ContractProperties();
+        properties.getCache().setEnabled(cacheEnabled);
+        final ContractCache cache = ContractCaches.create(repo, properties);
+
+        service = new ContractService();
+        service.repo = repo;
+        service.cache = cache;
+        service.properties = properties;
+        service.streamWriter = new ContractStreamWriter(new ObjectMapper());
+        service.eventPublisher = new ApplicationEventPublisher() {
+            @Override
+            public void publishEvent(ApplicationEvent event) {
+                cache.onApplicationEvent((ContractChangedEvent) event);
+            }
+        };
+
+        update = new Contract("unit1", "consultant1", ContractDates.parse("2015-02-01"), ContractDates.parse("2017-01-31"), "fixed");
+    }
+
+    private String randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(CONTRACTS));
+    }
+
+    @Benchmark
+    public ResponseEntity<Contract> getById() {
+        return service.getById(randomId(), null);
+    }
+
+    @Benchmark
+    public ResponseEntity<Contract> getByIdNotModified() {
+        return service.getById(ids.get(0), "\"0\"");
+    }
+
+    @Benchmark
+    public ResponseEntity<Iterable<Contract>> getByConsultantId() {
+        return service.getByConsultantId("consultant" + ThreadLocalRandom.current().nextInt(CONSULTANTS),
+                new LinkedMultiValueMap<String, String>(), null);
+    }
+
+    @Benchmark
+    public ResponseEntity<Contract> update() {
+        // unconditional update, exercises the field mapping, event publishing and cache eviction
+        return service.update(randomId(), update, null);
+    }
+}
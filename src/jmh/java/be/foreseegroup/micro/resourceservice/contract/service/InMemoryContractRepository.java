@@ -0,0 +1,431 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import com.mongodb.DBObject;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.ObjectUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Map backed stand-in for the {@link ContractRepository} so the benchmarks measure the service
+ * code rather than Mongo. Secondary lookups and queries scan the map, keep the data set small.
+ */
+public class InMemoryContractRepository implements ContractRepository {
+    private final ConcurrentSkipListMap<String, Contract> contracts = new ConcurrentSkipListMap<>();
+
+    private static Contract copy(Contract contract) {
+        Contract copy = new Contract(contract.getId(), contract.getUnitId(), contract.getConsultantId(),
+                contract.getStartDate(), contract.getEndDate(), contract.getType());
+        copy.setVersion(contract.getVersion());
+        return copy;
+    }
+
+    @Override
+    public Iterable<Contract> findByConsultantId(String consultantId) {
+        List<Contract> found = new ArrayList<>();
+        for (Contract contract : contracts.values()) {
+            if (consultantId.equals(contract.getConsultantId()))
+                found.add(copy(contract));
+        }
+        return found;
+    }
+
+    @Override
+    public Iterable<Contract> findByUnitId(String unitId) {
+        List<Contract> found = new ArrayList<>();
+        for (Contract contract : contracts.values()) {
+            if (unitId.equals(contract.getUnitId()))
+                found.add(copy(contract));
+        }
+        return found;
+    }
+
+    @Override
+    public List<Contract> findByConsultantIdIn(Collection<String> consultantIds) {
+        List<Contract> found = new ArrayList<>();
+        for (Contract contract : contracts.values()) {
+            if (consultantIds.contains(contract.getConsultantId()))
+                found.add(copy(contract));
+        }
+        return found;
+    }
+
+    @Override
+    public List<Contract> findByUnitIdIn(Collection<String> unitIds) {
+        List<Contract> found = new ArrayList<>();
+        for (Contract contract : contracts.values()) {
+            if (unitIds.contains(contract.getUnitId()))
+                found.add(copy(contract));
+        }
+        return found;
+    }
+
+    @Override
+    public List<Contract> findPage(String afterId, int size) {
+        List<Contract> page = new ArrayList<>(size);
+        Map<String, Contract> tail = afterId == null ? contracts : contracts.tailMap(afterId, false);
+        for (Contract contract : tail.values()) {
+            if (page.size() == size)
+                break;
+            page.add(copy(contract));
+        }
+        return page;
+    }
+
+    @Override
+    public ContractCursor streamAll(int batchSize) {
+        return new InMemoryCursor(findAll().iterator());
+    }
+
+    @Override
+    public List<Contract> find(Query query) {
+        List<Contract> found = new ArrayList<>();
+        for (Contract contract : contracts.values()) {
+            if (matches(contract, query.getQueryObject()))
+                found.add(contract);
+        }
+        DBObject sort = query.getSortObject();
+        if (sort != null) {
+            List<Sort.Order> orders = new ArrayList<>();
+            for (String field : sort.keySet()) {
+                orders.add(new Sort.Order(((Number) sort.get(field)).intValue() < 0 ? Sort.Direction.DESC : Sort.Direction.ASC, field));
+            }
+            Collections.sort(found, comparator(orders));
+        }
+        int from = Math.min(query.getSkip(), found.size());
+        int to = query.getLimit() > 0 ? Math.min(from + query.getLimit(), found.size()) : found.size();
+        List<Contract> page = new ArrayList<>(to - from);
+        for (Contract contract : found.subList(from, to)) {
+            page.add(project(contract, query.getFieldsObject()));
+        }
+        return page;
+    }
+
+    @Override
+    public ContractCursor stream(Query query, int batchSize) {
+        return new InMemoryCursor(find(query).iterator());
+    }
+
+    @Override
+    public List<Contract> findRefsByConsultantId(String consultantId) {
+        return (List<Contract>) findByConsultantId(consultantId);
+    }
+
+    @Override
+    public List<Contract> findRefsByUnitId(String unitId) {
+        return (List<Contract>) findByUnitId(unitId);
+    }
+
+    @Override
+    public List<Contract> findActiveOn(Date day) {
+        List<Contract> found = new ArrayList<>();
+        for (Contract contract : contracts.values()) {
+            if (!contract.getStartDate().after(day) && (contract.getEndDate() == null || !contract.getEndDate().before(day)))
+                found.add(copy(contract));
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized Contract updateFields(String id, Contract fields, Long expectedVersion) {
+        Contract before = contracts.get(id);
+        if (before == null || (expectedVersion != null && expectedVersion != ContractEtags.versionOf(before)))
+            return null;
+        Contract after = new Contract(id, fields.getUnitId(), fields.getConsultantId(),
+                fields.getStartDate(), fields.getEndDate(), fields.getType());
+        after.setVersion(ContractEtags.versionOf(before) + 1);
+        contracts.put(id, after);
+        return copy(before);
+    }
+
+    @Override
+    public synchronized Contract removeById(String id, Long expectedVersion) {
+        Contract before = contracts.get(id);
+        if (before == null || (expectedVersion != null && expectedVersion != ContractEtags.versionOf(before)))
+            return null;
+        contracts.remove(id);
+        return before;
+    }
+
+    @Override
+    public <S extends Contract> S save(S contract) {
+        if (contract.getId() == null)
+            contract.setId(new ObjectId().toString());
+        contract.setVersion(contract.getVersion() == null ? 0 : contract.getVersion() + 1);
+        contracts.put(contract.getId(), copy(contract));
+        return contract;
+    }
+
+    @Override
+    public <S extends Contract> List<S> save(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        for (S contract : entities) {
+            saved.add(save(contract));
+        }
+        return saved;
+    }
+
+    @Override
+    public <S extends Contract> S insert(S contract) {
+        return save(contract);
+    }
+
+    @Override
+    public <S extends Contract> List<S> insert(Iterable<S> entities) {
+        return save(entities);
+    }
+
+    @Override
+    public Contract findOne(String id) {
+        Contract contract = contracts.get(id);
+        return contract == null ? null : copy(contract);
+    }
+
+    @Override
+    public boolean exists(String id) {
+        return contracts.containsKey(id);
+    }
+
+    @Override
+    public List<Contract> findAll() {
+        List<Contract> all = new ArrayList<>(contracts.size());
+        for (Contract contract : contracts.values()) {
+            all.add(copy(contract));
+        }
+        return all;
+    }
+
+    @Override
+    public List<Contract> findAll(Sort sort) {
+        List<Contract> all = findAll();
+        if (sort != null) {
+            List<Sort.Order> orders = new ArrayList<>();
+            for (Sort.Order order : sort) {
+                orders.add(order);
+            }
+            Collections.sort(all, comparator(orders));
+        }
+        return all;
+    }
+
+    @Override
+    public Page<Contract> findAll(Pageable pageable) {
+        List<Contract> all = findAll();
+        int from = Math.min(pageable.getOffset(), all.size());
+        int to = Math.min(from + pageable.getPageSize(), all.size());
+        return new PageImpl<>(all.subList(from, to), pageable, all.size());
+    }
+
+    @Override
+    public Iterable<Contract> findAll(Iterable<String> ids) {
+        List<Contract> found = new ArrayList<>();
+        for (String id : ids) {
+            Contract contract = findOne(id);
+            if (contract != null)
+                found.add(contract);
+        }
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return contracts.size();
+    }
+
+    @Override
+    public void delete(String id) {
+        contracts.remove(id);
+    }
+
+    @Override
+    public void delete(Contract contract) {
+        contracts.remove(contract.getId());
+    }
+
+    @Override
+    public void delete(Iterable<? extends Contract> entities) {
+        for (Contract contract : entities) {
+            delete(contract);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        contracts.clear();
+    }
+
+    /**
+     * Evaluates the operators {@link ContractQuery} and the endpoints produce: equality, {@code $in}, the date and id
+     * comparisons, {@code $and} and {@code $or}. A missing field equals null, like in Mongo. Ids are kept as strings,
+     * an ObjectId operand compares as its hex string.
+     */
+    private static boolean matches(Contract contract, DBObject query) {
+        for (String key : query.keySet()) {
+            Object condition = query.get(key);
+            if ("$and".equals(key)) {
+                for (Object part : (List<?>) condition) {
+                    if (!matches(contract, (DBObject) part))
+                        return false;
+                }
+                continue;
+            }
+            if ("$or".equals(key)) {
+                boolean any = false;
+                for (Object part : (List<?>) condition) {
+                    any |= matches(contract, (DBObject) part);
+                }
+                if (!any)
+                    return false;
+                continue;
+            }
+            Object value = value(contract, key);
+            if (!(condition instanceof DBObject)) {
+                if (!ObjectUtils.nullSafeEquals(value, condition))
+                    return false;
+                continue;
+            }
+            DBObject operators = (DBObject) condition;
+            for (String operator : operators.keySet()) {
+                Object operand = operators.get(operator);
+                if ("$in".equals(operator)) {
+                    if (!((Collection<?>) operand).contains(value))
+                        return false;
+                    continue;
+                }
+                if (value == null)
+                    return false;
+                int comparison = compare(value, operand);
+                switch (operator) {
+                    case "$gt":
+                        if (comparison <= 0)
+                            return false;
+                        break;
+                    case "$gte":
+                        if (comparison < 0)
+                            return false;
+                        break;
+                    case "$lt":
+                        if (comparison >= 0)
+                            return false;
+                        break;
+                    case "$lte":
+                        if (comparison > 0)
+                            return false;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Operator " + operator + " is not supported in memory");
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Orders like Mongo does, a missing field sorts before any value.
+     */
+    private static Comparator<Contract> comparator(final List<Sort.Order> orders) {
+        return new Comparator<Contract>() {
+            @Override
+            public int compare(Contract a, Contract b) {
+                for (Sort.Order order : orders) {
+                    Object left = value(a, order.getProperty());
+                    Object right = value(b, order.getProperty());
+                    int comparison = left == null ? (right == null ? 0 : -1) : right == null ? 1 : InMemoryContractRepository.compare(left, right);
+                    if (comparison != 0)
+                        return order.isAscending() ? comparison : -comparison;
+                }
+                return 0;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object left, Object right) {
+        if (right instanceof ObjectId)
+            right = right.toString();
+        return ((Comparable<Object>) left).compareTo(right);
+    }
+
+    private static Contract project(Contract contract, DBObject fields) {
+        if (fields == null || fields.keySet().isEmpty())
+            return copy(contract);
+        Contract projected = new Contract();
+        if (!Integer.valueOf(0).equals(fields.get("id")))
+            projected.setId(contract.getId());
+        if (fields.containsField("unitId"))
+            projected.setUnitId(contract.getUnitId());
+        if (fields.containsField("consultantId"))
+            projected.setConsultantId(contract.getConsultantId());
+        if (fields.containsField("startDate"))
+            projected.setStartDate(contract.getStartDate());
+        if (fields.containsField("endDate"))
+            projected.setEndDate(contract.getEndDate());
+        if (fields.containsField("type"))
+            projected.setType(contract.getType());
+        if (fields.containsField("version"))
+            projected.setVersion(contract.getVersion());
+        return projected;
+    }
+
+    private static Object value(Contract contract, String field) {
+        switch (field) {
+            case "id":
+            case "_id":
+                return contract.getId();
+            case "unitId":
+                return contract.getUnitId();
+            case "consultantId":
+                return contract.getConsultantId();
+            case "startDate":
+                return contract.getStartDate();
+            case "endDate":
+                return contract.getEndDate();
+            case "type":
+                return contract.getType();
+            case "version":
+                return contract.getVersion();
+            default:
+                throw new IllegalArgumentException("Unknown contract field " + field);
+        }
+    }
+
+    /**
+     * Cursor over contracts that are in memory already, it has nothing to close.
+     */
+    private static class InMemoryCursor extends ContractCursor {
+        private final Iterator<Contract> contracts;
+
+        InMemoryCursor(Iterator<Contract> contracts) {
+            super(null, null);
+            this.contracts = contracts;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return contracts.hasNext();
+        }
+
+        @Override
+        public Contract next() {
+            return contracts.next();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
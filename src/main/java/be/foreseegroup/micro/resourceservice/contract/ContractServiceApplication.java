@@ -1,7 +1,9 @@
 package be.foreseegroup.micro.resourceservice.contract;
 
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 
 /**
@@ -10,6 +12,7 @@ import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 
 @SpringBootApplication
 @EnableDiscoveryClient
+@EnableConfigurationProperties(ContractProperties.class)
 public class ContractServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(ContractServiceApplication.class, args);
@@ -0,0 +1,187 @@
+package be.foreseegroup.micro.resourceservice.contract.accesslog;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured access log of the contract endpoints, one line per sampled request:
+ * <pre>
+ * endpoint=getById key=55f6a1c2e4b0 status=200 count=1 micros=412
+ * </pre>
+ * Request threads only copy the fields into a preallocated ring buffer; formatting and logging happen on a
+ * single writer thread, which takes every entry that is ready, up to {@value #MAX_BATCH_LINES}, and logs them as
+ * one multi-line event, so the appender is called once per batch rather than once per request. Recording
+ * allocates nothing and never blocks: when the buffer is full the entry is dropped and counted instead.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contract.accessLog", name = "enabled", matchIfMissing = true)
+public class ContractAccessLog implements PublicMetrics {
+    private static final Logger LOG = LoggerFactory.getLogger(ContractAccessLog.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    static final int MAX_BATCH_LINES = 256;
+
+    @Autowired
+    ContractProperties properties;
+
+    private Entry[] entries;
+    private int mask;
+    private double sampleRate;
+    private long slowThresholdNanos;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long droppedReported;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    private static final class Entry {
+        volatile long sequence = -1;
+        String endpoint;
+        String key;
+        int status;
+        int count;
+        long latencyNanos;
+    }
+
+    @PostConstruct
+    public void start() {
+        ContractProperties.AccessLog config = properties.getAccessLog();
+        int capacity = Integer.highestOneBit(Math.max(config.getBufferSize(), 2) - 1) << 1;
+        entries = new Entry[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new Entry();
+        }
+        mask = capacity - 1;
+        sampleRate = config.getSampleRate();
+        slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowThresholdMillis());
+
+        running = true;
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "contract-access-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Records a request if it is sampled.
+     *
+     * @param endpoint name of the handler method
+     * @param key      the id the request was about, or null
+     * @param count    number of contracts in the response, or -1 when unknown
+     */
+    public void record(String endpoint, String key, int status, int count, long latencyNanos) {
+        if (status < 500 && latencyNanos < slowThresholdNanos && sampleRate < 1
+                && ThreadLocalRandom.current().nextDouble() >= sampleRate)
+            return;
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= entries.length) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        Entry entry = entries[(int) sequence & mask];
+        entry.endpoint = endpoint;
+        entry.key = key;
+        entry.status = status;
+        entry.count = count;
+        entry.latencyNanos = latencyNanos;
+        entry.sequence = sequence;
+    }
+
+    private void drain() {
+        StringBuilder batch = new StringBuilder(128 * MAX_BATCH_LINES);
+        long next = consumed.get();
+        while (true) {
+            int lines = 0;
+            Entry entry;
+            while (lines < MAX_BATCH_LINES && (entry = entries[(int) next & mask]).sequence == next) {
+                if (lines > 0)
+                    batch.append('\n');
+                append(batch, entry);
+                entry.endpoint = null;
+                entry.key = null;
+                consumed.lazySet(++next);
+                lines++;
+            }
+            if (lines > 0) {
+                LOG.info(batch.toString());
+                written.addAndGet(lines);
+                batch.setLength(0);
+                continue;
+            }
+            reportDropped();
+            if (!running && claimed.get() == next)
+                return;
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    private static void append(StringBuilder line, Entry entry) {
+        line.append("endpoint=").append(entry.endpoint)
+                .append(" key=").append(entry.key == null ? "-" : entry.key)
+                .append(" status=").append(entry.status)
+                .append(" count=");
+        if (entry.count < 0)
+            line.append('-');
+        else
+            line.append(entry.count);
+        line.append(" micros=").append(TimeUnit.NANOSECONDS.toMicros(entry.latencyNanos));
+    }
+
+    private void reportDropped() {
+        long total = dropped.get();
+        if (total != droppedReported) {
+            LOG.warn("Access log buffer full, {} entries dropped", total - droppedReported);
+            droppedReported = total;
+        }
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("accessLog.written", getWritten()));
+        metrics.add(new Metric<>("accessLog.dropped", getDropped()));
+        metrics.add(new Metric<>("accessLog.pending", claimed.get() - consumed.get()));
+        return metrics;
+    }
+}
@@ -0,0 +1,151 @@
+package be.foreseegroup.micro.resourceservice.contract.accesslog;
+
+import be.foreseegroup.micro.resourceservice.contract.ContractServiceApplication;
+import be.foreseegroup.micro.resourceservice.contract.metrics.ContractMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Feeds the contract endpoints into the {@link ContractAccessLog}. The key is the single path variable of the
+ * request, if any; the result count is taken from the response body, or from the
+ * {@link #RESULT_COUNT_ATTRIBUTE} request attribute for handlers that stream their response themselves.
+ * <p>
+ * The start time of a request is kept in a slot per thread rather than in a boxed request attribute, so timing
+ * a request allocates nothing either; only a request that continues asynchronously, on another thread, carries
+ * its start time as an attribute. A handler that starts asynchronous processing itself, like the asynchronous
+ * NDJSON stream, is logged when its response completes rather than when it returns, through an
+ * {@link AsyncListener}; a timeout or failure is logged as status 500.
+ */
+@ControllerAdvice
+@ConditionalOnProperty(prefix = "contract.accessLog", name = "enabled", matchIfMissing = true)
+public class ContractAccessLogInterceptor extends WebMvcConfigurerAdapter implements ResponseBodyAdvice<Object> {
+    public static final String RESULT_COUNT_ATTRIBUTE = ContractAccessLogInterceptor.class.getName() + ".resultCount";
+
+    private static final String BASE_PACKAGE = ContractServiceApplication.class.getPackage().getName();
+    private static final String START_ATTRIBUTE = ContractAccessLogInterceptor.class.getName() + ".start";
+    private static final ThreadLocal<long[]> START = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    @Autowired
+    ContractAccessLog accessLog;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptorAdapter() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                // an async dispatch keeps the start of the original request
+                if (request.getAttribute(START_ATTRIBUTE) == null)
+                    START.get()[0] = System.nanoTime();
+                return true;
+            }
+
+            @Override
+            public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                request.setAttribute(START_ATTRIBUTE, START.get()[0]);
+            }
+
+            @Override
+            public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response, Object handler, Exception ex) {
+                if (!(handler instanceof HandlerMethod))
+                    return;
+                Long asyncStart = (Long) request.getAttribute(START_ATTRIBUTE);
+                final long start = asyncStart != null ? asyncStart : START.get()[0];
+                HandlerMethod handlerMethod = (HandlerMethod) handler;
+                if (!isContractEndpoint(handlerMethod.getBeanType()))
+                    return;
+                final String endpoint = handlerMethod.getMethod().getName();
+                // a handler that started asynchronous processing itself is still writing its response
+                if (ex == null && request.isAsyncStarted()) {
+                    final String key = key(request);
+                    request.getAsyncContext().addListener(new AsyncListener() {
+                        private final AtomicBoolean recorded = new AtomicBoolean();
+
+                        @Override
+                        public void onComplete(AsyncEvent event) {
+                            record(response.getStatus());
+                        }
+
+                        @Override
+                        public void onTimeout(AsyncEvent event) {
+                            record(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                        }
+
+                        @Override
+                        public void onError(AsyncEvent event) {
+                            record(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                        }
+
+                        @Override
+                        public void onStartAsync(AsyncEvent event) {
+                        }
+
+                        private void record(int status) {
+                            if (recorded.compareAndSet(false, true))
+                                accessLog.record(endpoint, key, status, count(request), System.nanoTime() - start);
+                        }
+                    });
+                    return;
+                }
+                accessLog.record(endpoint, key(request),
+                        ex != null ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus(),
+                        count(request), System.nanoTime() - start);
+            }
+        });
+    }
+
+    private static int count(HttpServletRequest request) {
+        Integer count = (Integer) request.getAttribute(RESULT_COUNT_ATTRIBUTE);
+        return count == null ? -1 : count;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return isContractEndpoint(returnType.getContainingClass());
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body != null && request instanceof ServletServerHttpRequest)
+            ((ServletServerHttpRequest) request).getServletRequest().setAttribute(RESULT_COUNT_ATTRIBUTE, ContractMetrics.sizeOf(body));
+        return body;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String key(HttpServletRequest request) {
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables == null || variables.size() != 1)
+            return null;
+        return variables.values().iterator().next();
+    }
+
+    private static boolean isContractEndpoint(Class<?> type) {
+        return type.getName().startsWith(BASE_PACKAGE);
+    }
+}
@@ -0,0 +1,60 @@
+package be.foreseegroup.micro.resourceservice.contract.aggregate;
+
+import be.foreseegroup.micro.resourceservice.contract.model.ContractAggregate;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractDates;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contract counts for dashboards, so they no longer have to download all contracts to count them.
+ */
+@RestController
+@RequestMapping("/contracts/aggregates")
+public class ContractAggregateService {
+    @Autowired
+    ContractAggregates aggregates;
+
+    @RequestMapping(method = RequestMethod.GET, value = "/byunit")
+    public ResponseEntity<List<ContractAggregate>> getAllByUnit() {
+        return new ResponseEntity<>(aggregates.allUnits(), HttpStatus.OK);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/byunit/{unitId}")
+    public ResponseEntity<ContractAggregate> getByUnitId(@PathVariable String unitId) {
+        return new ResponseEntity<>(aggregates.forUnit(unitId), HttpStatus.OK);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/byconsultant")
+    public ResponseEntity<List<ContractAggregate>> getAllByConsultant() {
+        return new ResponseEntity<>(aggregates.allConsultants(), HttpStatus.OK);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/byconsultant/{consultantId}")
+    public ResponseEntity<ContractAggregate> getByConsultantId(@PathVariable String consultantId) {
+        return new ResponseEntity<>(aggregates.forConsultant(consultantId), HttpStatus.OK);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/activebyunit")
+    public ResponseEntity<Map<String, Long>> getActiveByUnit(@RequestParam(required = false) String on) {
+        Date day = on == null ? ContractDates.parse(ContractDates.format(new Date())) : ContractDates.parse(on);
+        if (day == null)
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        return new ResponseEntity<>(aggregates.activeByUnit(day), HttpStatus.OK);
+    }
+
+    @RequestMapping(method = RequestMethod.POST, value = "/rebuild")
+    public ResponseEntity<Void> rebuild() {
+        aggregates.rebuild();
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+}
@@ -0,0 +1,259 @@
+package be.foreseegroup.micro.resourceservice.contract.aggregate;
+
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractAggregate;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractCounter;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Per unit and per consultant contract counts by type. The counters are adjusted with {@code $inc} on
+ * every {@link ContractChangedEvent}, so reading an aggregate costs one indexed query over a handful of
+ * counters, whatever the size of the contract collection. Writes that bypass the service (e.g. direct
+ * database edits) are not counted until the next {@link #rebuild()}.
+ * <p>
+ * The deltas of one event are sent as one unordered bulk write. Writers that publish many events at once, such
+ * as a chunk of {@code /contracts/bulk}, wrap them in {@link #batch(Runnable)} so their deltas are summed per
+ * counter and sent as one bulk write as well.
+ * <p>
+ * Which contracts are active changes with the calendar rather than with writes, so active counts are
+ * computed by an aggregation pipeline over the {@code end_start} index instead.
+ */
+@Component
+public class ContractAggregates implements ApplicationListener<ContractChangedEvent> {
+    private static final Logger LOG = LoggerFactory.getLogger(ContractAggregates.class);
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    // deltas collected by batch() on this thread, null outside a batch
+    private final ThreadLocal<Map<ContractCounter.CounterId, ContractCounter>> batch = new ThreadLocal<>();
+
+    /**
+     * Counts the existing contracts when the service starts against a database without counters, or with counters
+     * under the former {@code dimension|key|type} string ids, which are removed first as they could collide. Instances
+     * starting together may all rebuild, which is harmless as the rebuild sets every counter to its count.
+     */
+    @PostConstruct
+    public void initialize() {
+        DBObject stringIds = new BasicDBObject("_id", new BasicDBObject("$type", 2));
+        if (counters().count(stringIds) > 0) {
+            LOG.info("Contract counters with string ids found, counting the existing contracts again");
+            counters().remove(stringIds);
+            rebuild();
+            return;
+        }
+        if (mongoTemplate.count(new Query(), ContractCounter.class) == 0 && mongoTemplate.count(new Query(), Contract.class) > 0) {
+            LOG.info("No contract counters found, counting the existing contracts");
+            rebuild();
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(ContractChangedEvent event) {
+        Map<ContractCounter.CounterId, ContractCounter> deltas = batch.get();
+        boolean batched = deltas != null;
+        if (!batched)
+            deltas = new LinkedHashMap<>();
+        addDeltas(deltas, event.getBefore(), -1);
+        addDeltas(deltas, event.getAfter(), 1);
+        if (!batched)
+            increment(deltas.values());
+    }
+
+    /**
+     * Runs {@code writes} and adjusts the counters for all events it publishes on this thread at once, when it
+     * returns or fails.
+     */
+    public void batch(Runnable writes) {
+        if (batch.get() != null) {
+            writes.run();
+            return;
+        }
+        Map<ContractCounter.CounterId, ContractCounter> deltas = new LinkedHashMap<>();
+        batch.set(deltas);
+        try {
+            writes.run();
+        } finally {
+            batch.remove();
+            increment(deltas.values());
+        }
+    }
+
+    private void increment(Collection<ContractCounter> deltas) {
+        BulkWriteOperation bulk = counters().initializeUnorderedBulkOperation();
+        int pending = 0;
+        for (ContractCounter delta : deltas) {
+            // an update that keeps unit, consultant and type cancels out
+            if (delta.getCount() == 0)
+                continue;
+            bulk.find(new BasicDBObject("_id", delta.getId().toDBObject())).upsert().updateOne(
+                    new BasicDBObject("$inc", new BasicDBObject("count", delta.getCount()))
+                            .append("$setOnInsert", fields(delta)));
+            pending++;
+        }
+        if (pending > 0)
+            bulk.execute();
+    }
+
+    public ContractAggregate forUnit(String unitId) {
+        return forKey(ContractCounter.UNIT, unitId);
+    }
+
+    public ContractAggregate forConsultant(String consultantId) {
+        return forKey(ContractCounter.CONSULTANT, consultantId);
+    }
+
+    public List<ContractAggregate> allUnits() {
+        return all(ContractCounter.UNIT);
+    }
+
+    public List<ContractAggregate> allConsultants() {
+        return all(ContractCounter.CONSULTANT);
+    }
+
+    /**
+     * @return the number of contracts active on the given day per unit, units without active contracts are left out
+     */
+    public Map<String, Long> activeByUnit(Date day) {
+        Criteria active = new Criteria().orOperator(where("endDate").gte(day), where("endDate").is(null))
+                .and("startDate").lte(day);
+        Aggregation aggregation = newAggregation(match(active), group("unitId").count().as("count"));
+        Map<String, Long> counts = new TreeMap<>();
+        for (DBObject result : mongoTemplate.aggregate(aggregation, Contract.class, DBObject.class)) {
+            Object unitId = result.get("_id");
+            if (unitId != null)
+                counts.put(unitId.toString(), ((Number) result.get("count")).longValue());
+        }
+        return counts;
+    }
+
+    /**
+     * Recounts all counters from the contracts with an aggregation pipeline, and sets each counter to its count
+     * with an upsert; counters of keys without contracts are set to zero. The counters are never removed, so
+     * readers and concurrent rebuilds always find them. A write made while the rebuild runs may still be counted
+     * twice or not at all, until the next rebuild.
+     */
+    public void rebuild() {
+        Map<ContractCounter.CounterId, ContractCounter> counted = new LinkedHashMap<>();
+        for (ContractCounter counter : count(ContractCounter.UNIT, "unitId")) {
+            counted.put(counter.getId(), counter);
+        }
+        for (ContractCounter counter : count(ContractCounter.CONSULTANT, "consultantId")) {
+            counted.put(counter.getId(), counter);
+        }
+        DBCollection collection = counters();
+        BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+        int pending = 0;
+        for (ContractCounter counter : counted.values()) {
+            bulk.find(new BasicDBObject("_id", counter.getId().toDBObject())).upsert().updateOne(
+                    new BasicDBObject("$set", fields(counter).append("count", counter.getCount())));
+            pending++;
+        }
+        Query stale = query(where("count").ne(0));
+        stale.fields().include("_id");
+        for (ContractCounter counter : mongoTemplate.find(stale, ContractCounter.class)) {
+            if (!counted.containsKey(counter.getId())) {
+                bulk.find(new BasicDBObject("_id", counter.getId().toDBObject())).updateOne(
+                        new BasicDBObject("$set", new BasicDBObject("count", 0)));
+                pending++;
+            }
+        }
+        if (pending > 0)
+            bulk.execute();
+    }
+
+    private DBCollection counters() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(ContractCounter.class));
+    }
+
+    private static BasicDBObject fields(ContractCounter counter) {
+        return new BasicDBObject("dimension", counter.getDimension())
+                .append("key", counter.getKey())
+                .append("type", counter.getType());
+    }
+
+    private List<ContractCounter> count(String dimension, String field) {
+        Aggregation aggregation = newAggregation(group(field, "type").count().as("count"));
+        List<ContractCounter> counters = new ArrayList<>();
+        for (DBObject result : mongoTemplate.aggregate(aggregation, Contract.class, DBObject.class)) {
+            DBObject id = (DBObject) result.get("_id");
+            Object key = id.get(field);
+            if (key != null)
+                counters.add(new ContractCounter(dimension, key.toString(), (String) id.get("type"),
+                        ((Number) result.get("count")).longValue()));
+        }
+        return counters;
+    }
+
+    private ContractAggregate forKey(String dimension, String key) {
+        ContractAggregate aggregate = new ContractAggregate(key);
+        for (ContractCounter counter : mongoTemplate.find(query(where("dimension").is(dimension).and("key").is(key)), ContractCounter.class)) {
+            aggregate.add(counter.getType(), counter.getCount());
+        }
+        return aggregate;
+    }
+
+    private List<ContractAggregate> all(String dimension) {
+        Query query = query(where("dimension").is(dimension)).with(new Sort("key"));
+        List<ContractAggregate> aggregates = new ArrayList<>();
+        ContractAggregate current = null;
+        for (ContractCounter counter : mongoTemplate.find(query, ContractCounter.class)) {
+            if (current == null || !current.getKey().equals(counter.getKey())) {
+                current = new ContractAggregate(counter.getKey());
+                aggregates.add(current);
+            }
+            current.add(counter.getType(), counter.getCount());
+        }
+        // keys whose contracts were all deleted or moved keep a zero counter
+        List<ContractAggregate> nonEmpty = new ArrayList<>(aggregates.size());
+        for (ContractAggregate aggregate : aggregates) {
+            if (aggregate.getTotal() > 0)
+                nonEmpty.add(aggregate);
+        }
+        return nonEmpty;
+    }
+
+    private static void addDeltas(Map<ContractCounter.CounterId, ContractCounter> deltas, Contract contract, long delta) {
+        if (contract == null)
+            return;
+        addDelta(deltas, ContractCounter.UNIT, contract.getUnitId(), contract.getType(), delta);
+        addDelta(deltas, ContractCounter.CONSULTANT, contract.getConsultantId(), contract.getType(), delta);
+    }
+
+    private static void addDelta(Map<ContractCounter.CounterId, ContractCounter> deltas, String dimension, String key, String type, long delta) {
+        if (key == null)
+            return;
+        ContractCounter.CounterId id = new ContractCounter.CounterId(dimension, key, type);
+        ContractCounter current = deltas.get(id);
+        deltas.put(id, new ContractCounter(dimension, key, type, current == null ? delta : current.getCount() + delta));
+    }
+}
@@ -0,0 +1,28 @@
+package be.foreseegroup.micro.resourceservice.contract.async;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executor of the {@link ContractAsyncService}. It is sized to the Mongo connection pool rather
+ * than to the number of concurrent clients and has a bounded queue, so a slow database results in
+ * rejected requests instead of an ever growing backlog.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "contract.async", name = "enabled", havingValue = "true")
+public class ContractAsyncConfiguration {
+
+    @Bean
+    public ThreadPoolTaskExecutor contractReadExecutor(ContractProperties properties) {
+        ContractProperties.Async config = properties.getAsync();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("contract-read-");
+        executor.setCorePoolSize(config.getThreads());
+        executor.setMaxPoolSize(config.getThreads());
+        executor.setQueueCapacity(config.getQueueCapacity());
+        return executor;
+    }
+}
@@ -0,0 +1,133 @@
+package be.foreseegroup.micro.resourceservice.contract.async;
+
+import be.foreseegroup.micro.resourceservice.contract.cache.ContractCache;
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractCursor;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractEtags;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractRepository;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractStreamWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Asynchronous variant of the read endpoints of the contract service, mounted under {@code /async}
+ * next to the synchronous ones when {@code contract.async.enabled} is set. Lookups run on the
+ * bounded {@code contractReadExecutor} instead of the servlet container thread, which is returned
+ * to the pool while Mongo works. When the executor is saturated requests are rejected with 503
+ * instead of queueing without bound.
+ */
+@RestController
+@RequestMapping("/async")
+@ConditionalOnProperty(prefix = "contract.async", name = "enabled", havingValue = "true")
+public class ContractAsyncService {
+    @Autowired
+    ContractRepository repo;
+
+    @Autowired
+    ContractCache cache;
+
+    @Autowired
+    ContractProperties properties;
+
+    @Autowired
+    @Qualifier("contractReadExecutor")
+    AsyncTaskExecutor executor;
+
+    private final ObjectWriter writer;
+
+    @Autowired
+    public ContractAsyncService(ObjectMapper mapper) {
+        this.writer = mapper.writerWithType(Contract.class);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/contracts/{id}")
+    public DeferredResult<ResponseEntity<Contract>> getById(@PathVariable final String id,
+                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch) {
+        return submit(new Callable<ResponseEntity<Contract>>() {
+            @Override
+            public ResponseEntity<Contract> call() {
+                Contract contract = cache.findOne(id);
+                if (contract == null)
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                return ContractEtags.respond(contract, ContractEtags.of(contract), ifNoneMatch);
+            }
+        });
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/contractsbycid/{consultantId}")
+    public DeferredResult<ResponseEntity<List<Contract>>> getByConsultantId(@PathVariable final String consultantId,
+                                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch) {
+        return submit(new Callable<ResponseEntity<List<Contract>>>() {
+            @Override
+            public ResponseEntity<List<Contract>> call() {
+                List<Contract> contracts = cache.findByConsultantId(consultantId);
+                return ContractEtags.respond(contracts, ContractEtags.of(contracts), ifNoneMatch);
+            }
+        });
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/contractsbyuid/{unitId}")
+    public DeferredResult<ResponseEntity<List<Contract>>> getByUnitId(@PathVariable final String unitId,
+                                                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch) {
+        return submit(new Callable<ResponseEntity<List<Contract>>>() {
+            @Override
+            public ResponseEntity<List<Contract>> call() {
+                List<Contract> contracts = cache.findByUnitId(unitId);
+                return ContractEtags.respond(contracts, ContractEtags.of(contracts), ifNoneMatch);
+            }
+        });
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/contracts/stream")
+    public void streamAll(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(ContractStreamWriter.NDJSON_VALUE + ";charset=UTF-8");
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(properties.getAsync().getStreamTimeoutMillis());
+        ServletOutputStream out = response.getOutputStream();
+        // opening the cursor does not touch Mongo yet, the pump reads it on the executor
+        int batchSize = properties.getPaging().getCursorBatchSize();
+        ContractCursor cursor = repo.streamAll(batchSize);
+        ContractStreamPump pump = new ContractStreamPump(asyncContext, out, cursor, writer, executor, batchSize);
+        asyncContext.addListener(pump);
+        out.setWriteListener(pump);
+    }
+
+    private <T> DeferredResult<ResponseEntity<T>> submit(final Callable<ResponseEntity<T>> read) {
+        final DeferredResult<ResponseEntity<T>> result = new DeferredResult<>(
+                properties.getAsync().getRequestTimeoutMillis(), new ResponseEntity<T>(HttpStatus.SERVICE_UNAVAILABLE));
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        result.setResult(read.call());
+                    } catch (Exception e) {
+                        result.setErrorResult(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.setResult(new ResponseEntity<T>(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,181 @@
+package be.foreseegroup.micro.resourceservice.contract.async;
+
+import be.foreseegroup.micro.resourceservice.contract.accesslog.ContractAccessLogInterceptor;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractCursor;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Writes a cursor as newline delimited JSON using non-blocking servlet IO. Batches are read from the cursor on
+ * the read executor, never on a container thread, and at most one batch is read ahead of the one being written,
+ * so a slow client holds neither a thread nor more than two batches in memory; the container calls back once the
+ * client has caught up, the executor once the next batch is ready.
+ * <p>
+ * The cursor is closed when the stream completes, times out or fails, whichever comes first. The number of
+ * contracts read from the cursor is left in the {@link ContractAccessLogInterceptor#RESULT_COUNT_ATTRIBUTE} request attribute
+ * when the stream completes.
+ */
+class ContractStreamPump implements WriteListener, AsyncListener {
+    private static final Logger LOG = LoggerFactory.getLogger(ContractStreamPump.class);
+    private static final byte NEWLINE = '\n';
+
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream out;
+    private final ContractCursor cursor;
+    private final ObjectWriter writer;
+    private final Executor executor;
+    private final int batchSize;
+
+    // guarded by this
+    private final Deque<byte[]> ready = new ArrayDeque<>();
+    private boolean fetching;
+    private boolean exhausted;
+    private boolean closed;
+    private int count;
+
+    ContractStreamPump(AsyncContext asyncContext, ServletOutputStream out, ContractCursor cursor, ObjectWriter writer,
+                       Executor executor, int batchSize) {
+        this.asyncContext = asyncContext;
+        this.out = out;
+        this.cursor = cursor;
+        this.writer = writer;
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        pump();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        LOG.warn("Contract stream aborted", t);
+        finish();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        LOG.warn("Contract stream timed out");
+        finish();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        LOG.warn("Contract stream aborted", event.getThrowable());
+        finish();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    /**
+     * Writes the batches that are ready for as long as the client accepts them without blocking. Runs on the
+     * container thread when the client caught up and on the read executor when a batch was read.
+     */
+    private synchronized void pump() throws IOException {
+        while (!closed && out.isReady()) {
+            byte[] batch = ready.poll();
+            if (batch == null) {
+                if (exhausted)
+                    finish();
+                else
+                    fetch();
+                return;
+            }
+            // the next batch is read while this one is written
+            fetch();
+            out.write(batch);
+        }
+    }
+
+    private synchronized void fetch() {
+        if (fetching || exhausted || closed || !ready.isEmpty())
+            return;
+        fetching = true;
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    read();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fetching = false;
+            LOG.warn("Contract stream aborted, no thread to read the next batch");
+            finish();
+        }
+    }
+
+    private void read() {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        int read;
+        boolean more;
+        try {
+            for (read = 0; read < batchSize && cursor.hasNext(); read++) {
+                batch.write(writer.writeValueAsBytes(cursor.next()));
+                batch.write(NEWLINE);
+            }
+            more = cursor.hasNext();
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                fetching = false;
+            }
+            onError(e);
+            return;
+        }
+        synchronized (this) {
+            fetching = false;
+            if (closed) {
+                // closing was left to this read, the cursor was in use
+                cursor.close();
+                return;
+            }
+            if (batch.size() > 0)
+                ready.add(batch.toByteArray());
+            count += read;
+            exhausted = !more;
+        }
+        try {
+            pump();
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    private synchronized void finish() {
+        if (closed)
+            return;
+        close();
+        asyncContext.getRequest().setAttribute(ContractAccessLogInterceptor.RESULT_COUNT_ATTRIBUTE, count);
+        asyncContext.complete();
+    }
+
+    private synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        ready.clear();
+        if (!fetching)
+            cursor.close();
+    }
+}
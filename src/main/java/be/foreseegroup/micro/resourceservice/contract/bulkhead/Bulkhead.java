@@ -0,0 +1,159 @@
+package be.foreseegroup.micro.resourceservice.contract.bulkhead;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the requests of one endpoint that are handled at the same time. Up to {@code queueSize} requests
+ * wait at most {@code maxWaitMillis} for a slot, any others are rejected right away.
+ * <p>
+ * When adaptive, the limit follows the latency of the endpoint, in the spirit of TCP congestion control:
+ * once per window of about {@code limit} requests, the average latency of the window is compared with the
+ * lowest window average seen recently. While it stays within {@code latencyTolerance} of it and the limit is
+ * actually used, the limit grows by its square root, up to the configured limit; beyond that the limit
+ * shrinks in proportion, by at most half per window, down to {@code minLimit}. The lowest average is
+ * forgotten every {@link #BASELINE_WINDOWS} windows, so a lasting change of the backend latency becomes the
+ * new normal.
+ */
+public class Bulkhead {
+    static final int MIN_WINDOW_SAMPLES = 10;
+    static final int BASELINE_WINDOWS = 100;
+
+    private final ContractProperties.Bulkhead config;
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private int limit;
+    private int inFlight;
+    private int waiting;
+    private long rejected;
+
+    private long baselineLatency = Long.MAX_VALUE;
+    private long windowLatency;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private int windows;
+
+    public Bulkhead(ContractProperties.Bulkhead config, int limit) {
+        this.config = config;
+        this.maxLimit = limit;
+        this.limit = limit;
+    }
+
+    /**
+     * @return true when the request may proceed, it must then {@link #release(long)} its slot when done
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight >= limit) {
+                if (waiting >= config.getQueueSize() || !await()) {
+                    rejected++;
+                    return false;
+                }
+            }
+            inFlight++;
+            windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean await() {
+        waiting++;
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMillis());
+            while (inFlight >= limit) {
+                if (remaining <= 0)
+                    return false;
+                remaining = released.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting--;
+        }
+    }
+
+    /**
+     * @param latencyNanos how long the request held its slot
+     */
+    public void release(long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            int before = limit;
+            if (config.isAdaptive())
+                adapt(latencyNanos);
+            if (limit > before)
+                released.signalAll();
+            else
+                released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adapt(long latencyNanos) {
+        windowLatency += latencyNanos;
+        windowSamples++;
+        if (windowSamples < Math.max(limit, MIN_WINDOW_SAMPLES))
+            return;
+        long average = windowLatency / windowSamples;
+        if (++windows % BASELINE_WINDOWS == 0 || average < baselineLatency)
+            baselineLatency = Math.max(average, 1);
+        double gradient = Math.max(0.5, Math.min(1.0, config.getLatencyTolerance() * baselineLatency / average));
+        int newLimit = limit;
+        if (gradient < 1.0)
+            newLimit = (int) (limit * gradient);
+        else if (windowMaxInFlight * 2 >= limit)
+            newLimit = limit + (int) Math.ceil(Math.sqrt(limit));
+        limit = Math.max(Math.min(config.getMinLimit(), maxLimit), Math.min(maxLimit, newLimit));
+        windowLatency = 0;
+        windowSamples = 0;
+        windowMaxInFlight = inFlight;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejected() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package be.foreseegroup.micro.resourceservice.contract.bulkhead;
+
+import be.foreseegroup.micro.resourceservice.contract.ContractServiceApplication;
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Gives every contract endpoint a {@link Bulkhead} of its own, so a slow scan like {@code getAll} can use up
+ * its own slots but not the threads of a cheap lookup like {@code getById}. Requests that find no slot are
+ * shed with 503 Service Unavailable and a Retry-After header. The actuator endpoints, health included, are
+ * never limited.
+ * <p>
+ * Limits are configured per handler method name in {@code contract.bulkhead.limits}, else
+ * {@code contract.bulkhead.limit}; handlers of different controllers with the same name get the same limit
+ * but separate bulkheads. Asynchronous requests hold their slot until the response is complete, whether Spring
+ * or the handler itself started the asynchronous processing. Exposes
+ * {@code bulkhead.<controller>.<method>.limit}, {@code .inFlight}, {@code .waiting} and {@code .rejected} on
+ * the actuator metrics endpoint.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contract.bulkhead", name = "enabled", matchIfMissing = true)
+public class ContractBulkheads extends WebMvcConfigurerAdapter implements PublicMetrics {
+    private static final String BASE_PACKAGE = ContractServiceApplication.class.getPackage().getName();
+    private static final String BULKHEAD_ATTRIBUTE = ContractBulkheads.class.getName() + ".bulkhead";
+    private static final String START_ATTRIBUTE = ContractBulkheads.class.getName() + ".start";
+
+    @Autowired
+    ContractProperties properties;
+
+    private final ConcurrentMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptorAdapter() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                // the dispatch that completes an asynchronous request already holds its slot
+                if (request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod))
+                    return true;
+                HandlerMethod handlerMethod = (HandlerMethod) handler;
+                if (!handlerMethod.getBeanType().getName().startsWith(BASE_PACKAGE))
+                    return true;
+                Bulkhead bulkhead = bulkhead(handlerMethod.getBeanType(), handlerMethod.getMethod());
+                if (!bulkhead.tryAcquire()) {
+                    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(properties.getBulkhead().getRetryAfterSeconds()));
+                    return false;
+                }
+                request.setAttribute(BULKHEAD_ATTRIBUTE, bulkhead);
+                request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+                final Bulkhead bulkhead = (Bulkhead) request.getAttribute(BULKHEAD_ATTRIBUTE);
+                if (bulkhead == null)
+                    return;
+                request.removeAttribute(BULKHEAD_ATTRIBUTE);
+                final long start = (Long) request.getAttribute(START_ATTRIBUTE);
+                // a handler that started asynchronous processing itself, like the NDJSON stream, is still writing
+                // its response; Spring only knows about the asynchronous requests it started
+                if (request.isAsyncStarted()) {
+                    request.getAsyncContext().addListener(new AsyncListener() {
+                        private final AtomicBoolean released = new AtomicBoolean();
+
+                        @Override
+                        public void onComplete(AsyncEvent event) {
+                            release();
+                        }
+
+                        @Override
+                        public void onTimeout(AsyncEvent event) {
+                            release();
+                        }
+
+                        @Override
+                        public void onError(AsyncEvent event) {
+                            release();
+                        }
+
+                        @Override
+                        public void onStartAsync(AsyncEvent event) {
+                        }
+
+                        private void release() {
+                            if (released.compareAndSet(false, true))
+                                bulkhead.release(System.nanoTime() - start);
+                        }
+                    });
+                    return;
+                }
+                bulkhead.release(System.nanoTime() - start);
+            }
+        });
+    }
+
+    /**
+     * @return the bulkhead of the handler, created on first use
+     */
+    public Bulkhead bulkhead(Class<?> controller, Method method) {
+        String name = StringUtils.uncapitalize(controller.getSimpleName()) + "." + method.getName();
+        Bulkhead bulkhead = bulkheads.get(name);
+        if (bulkhead == null) {
+            ContractProperties.Bulkhead config = properties.getBulkhead();
+            Integer limit = config.getLimits().get(method.getName());
+            bulkheads.putIfAbsent(name, new Bulkhead(config, limit != null ? limit : config.getLimit()));
+            bulkhead = bulkheads.get(name);
+        }
+        return bulkhead;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (Map.Entry<String, Bulkhead> entry : bulkheads.entrySet()) {
+            String prefix = "bulkhead." + entry.getKey();
+            Bulkhead bulkhead = entry.getValue();
+            metrics.add(new Metric<>(prefix + ".limit", bulkhead.getLimit()));
+            metrics.add(new Metric<>(prefix + ".inFlight", bulkhead.getInFlight()));
+            metrics.add(new Metric<>(prefix + ".waiting", bulkhead.getWaiting()));
+            metrics.add(new Metric<>(prefix + ".rejected", bulkhead.getRejected()));
+        }
+        return metrics;
+    }
+}
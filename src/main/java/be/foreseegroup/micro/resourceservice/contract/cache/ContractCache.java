@@ -0,0 +1,359 @@
+package be.foreseegroup.micro.resourceservice.contract.cache;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import be.foreseegroup.micro.resourceservice.contract.interval.ContractIntervalIndex;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.replica.ContractReplica;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractRepository;
+import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded read-through cache in front of the {@link ContractRepository} for the id, consultant
+ * and unit lookups. Entries are weighed by the number of contracts they hold, expire after the
+ * configured time to live and are invalidated exactly when a {@link ContractChangedEvent} touches
+ * them, including the old consultant and unit when those ids change.
+ *
+ * Cached contracts are shared between requests and must not be modified by callers. When the
+ * {@link ContractReplica} is enabled and loaded it serves the lookups instead.
+ */
+@Component
+public class ContractCache implements ApplicationListener<ContractChangedEvent> {
+    @Autowired
+    ContractRepository repo;
+
+    @Autowired
+    ContractProperties properties;
+
+    @Autowired(required = false)
+    ContractReplica replica;
+
+    @Autowired(required = false)
+    ContractIntervalIndex intervals;
+
+    private static final Function<Contract, String> CONSULTANT_ID = new Function<Contract, String>() {
+        @Override
+        public String apply(Contract contract) {
+            return contract.getConsultantId();
+        }
+    };
+    private static final Function<Contract, String> UNIT_ID = new Function<Contract, String>() {
+        @Override
+        public String apply(Contract contract) {
+            return contract.getUnitId();
+        }
+    };
+
+    // bumped on every invalidation, lets a load that raced with a write drop its possibly stale result
+    private final AtomicLong generation = new AtomicLong();
+
+    private Cache<String, Optional<Contract>> byId;
+    private Cache<String, List<Contract>> byConsultantId;
+    private Cache<String, List<Contract>> byUnitId;
+
+    @PostConstruct
+    public void init() {
+        ContractProperties.Cache config = properties.getCache();
+        byId = CacheBuilder.newBuilder()
+                .maximumSize(config.getMaxContracts())
+                .expireAfterWrite(config.getTimeToLiveSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        byConsultantId = newListCache(config);
+        byUnitId = newListCache(config);
+    }
+
+    private static Cache<String, List<Contract>> newListCache(ContractProperties.Cache config) {
+        return CacheBuilder.newBuilder()
+                .maximumWeight(config.getMaxContracts())
+                .weigher(new Weigher<String, List<Contract>>() {
+                    @Override
+                    public int weigh(String key, List<Contract> contracts) {
+                        return contracts.size() + 1;
+                    }
+                })
+                .expireAfterWrite(config.getTimeToLiveSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return properties.getCache().isEnabled();
+    }
+
+    /**
+     * @return true when lookups are served by the {@link ContractReplica}, which holds every contract
+     */
+    public boolean isReplicated() {
+        return replica != null && replica.isLoaded();
+    }
+
+    public Contract findOne(final String id) {
+        if (isReplicated())
+            return replica.findOne(id);
+        if (!isEnabled())
+            return repo.findOne(id);
+        return load(byId, id, new Callable<Optional<Contract>>() {
+            @Override
+            public Optional<Contract> call() {
+                return Optional.ofNullable(repo.findOne(id));
+            }
+        }).orElse(null);
+    }
+
+    public List<Contract> findByConsultantId(final String consultantId) {
+        if (isReplicated())
+            return replica.findByConsultantId(consultantId);
+        if (!isEnabled())
+            return ImmutableList.copyOf(repo.findByConsultantId(consultantId));
+        return load(byConsultantId, consultantId, new Callable<List<Contract>>() {
+            @Override
+            public List<Contract> call() {
+                return ImmutableList.copyOf(repo.findByConsultantId(consultantId));
+            }
+        });
+    }
+
+    public List<Contract> findByUnitId(final String unitId) {
+        if (isReplicated())
+            return replica.findByUnitId(unitId);
+        if (!isEnabled())
+            return ImmutableList.copyOf(repo.findByUnitId(unitId));
+        return load(byUnitId, unitId, new Callable<List<Contract>>() {
+            @Override
+            public List<Contract> call() {
+                return ImmutableList.copyOf(repo.findByUnitId(unitId));
+            }
+        });
+    }
+
+    /**
+     * Looks up the contracts of several consultants at once. Cached consultants are served from
+     * the cache, the others are fetched with a single query and cached. Every requested
+     * consultant is present in the result, in request order.
+     */
+    public Map<String, List<Contract>> findByConsultantIds(Collection<String> consultantIds) {
+        if (isReplicated()) {
+            Map<String, List<Contract>> contracts = new LinkedHashMap<>();
+            for (String consultantId : consultantIds) {
+                contracts.put(consultantId, replica.findByConsultantId(consultantId));
+            }
+            return contracts;
+        }
+        return loadGrouped(byConsultantId, consultantIds, new Function<Set<String>, Map<String, List<Contract>>>() {
+            @Override
+            public Map<String, List<Contract>> apply(Set<String> misses) {
+                return group(repo.findByConsultantIdIn(misses), misses, CONSULTANT_ID);
+            }
+        });
+    }
+
+    /**
+     * Looks up the contracts of several units at once, see {@link #findByConsultantIds(Collection)}.
+     */
+    public Map<String, List<Contract>> findByUnitIds(Collection<String> unitIds) {
+        if (isReplicated()) {
+            Map<String, List<Contract>> contracts = new LinkedHashMap<>();
+            for (String unitId : unitIds) {
+                contracts.put(unitId, replica.findByUnitId(unitId));
+            }
+            return contracts;
+        }
+        return loadGrouped(byUnitId, unitIds, new Function<Set<String>, Map<String, List<Contract>>>() {
+            @Override
+            public Map<String, List<Contract>> apply(Set<String> misses) {
+                return group(repo.findByUnitIdIn(misses), misses, UNIT_ID);
+            }
+        });
+    }
+
+    /**
+     * Looks up several contracts by id at once. Unknown ids are left out of the result.
+     */
+    public Map<String, Contract> findByIds(Collection<String> ids) {
+        if (isReplicated()) {
+            Map<String, Contract> contracts = new LinkedHashMap<>();
+            for (String id : ids) {
+                Contract contract = replica.findOne(id);
+                if (contract != null)
+                    contracts.put(id, contract);
+            }
+            return contracts;
+        }
+        Map<String, Optional<Contract>> found = loadGrouped(byId, ids, new Function<Set<String>, Map<String, Optional<Contract>>>() {
+            @Override
+            public Map<String, Optional<Contract>> apply(Set<String> misses) {
+                Map<String, Optional<Contract>> loaded = new HashMap<>();
+                for (String id : misses) {
+                    loaded.put(id, Optional.<Contract>empty());
+                }
+                for (Contract contract : repo.findAll(misses)) {
+                    loaded.put(contract.getId(), Optional.of(contract));
+                }
+                return loaded;
+            }
+        });
+        Map<String, Contract> contracts = new LinkedHashMap<>();
+        for (Map.Entry<String, Optional<Contract>> entry : found.entrySet()) {
+            if (entry.getValue().isPresent())
+                contracts.put(entry.getKey(), entry.getValue().get());
+        }
+        return contracts;
+    }
+
+    private <V> Map<String, V> loadGrouped(Cache<String, V> cache, Collection<String> keys,
+                                           Function<Set<String>, Map<String, V>> loader) {
+        Set<String> requested = new LinkedHashSet<>(keys);
+        Map<String, V> hits = isEnabled() ? cache.getAllPresent(requested) : Collections.<String, V>emptyMap();
+        Set<String> misses = new HashSet<>(requested);
+        misses.removeAll(hits.keySet());
+
+        Map<String, V> loaded = Collections.emptyMap();
+        if (!misses.isEmpty()) {
+            long loadGeneration = generation.get();
+            loaded = loader.apply(misses);
+            // a write during the load may have made the result stale, serve it but do not cache it
+            if (isEnabled() && generation.get() == loadGeneration)
+                cache.putAll(loaded);
+        }
+
+        Map<String, V> result = new LinkedHashMap<>();
+        for (String key : requested) {
+            result.put(key, hits.containsKey(key) ? hits.get(key) : loaded.get(key));
+        }
+        return result;
+    }
+
+    private static Map<String, List<Contract>> group(List<Contract> contracts, Set<String> keys,
+                                                     Function<Contract, String> keyOf) {
+        Map<String, ImmutableList.Builder<Contract>> builders = new HashMap<>();
+        for (String key : keys) {
+            builders.put(key, ImmutableList.<Contract>builder());
+        }
+        for (Contract contract : contracts) {
+            ImmutableList.Builder<Contract> builder = builders.get(keyOf.apply(contract));
+            if (builder != null)
+                builder.add(contract);
+        }
+        Map<String, List<Contract>> grouped = new HashMap<>();
+        for (Map.Entry<String, ImmutableList.Builder<Contract>> entry : builders.entrySet()) {
+            grouped.put(entry.getKey(), entry.getValue().build());
+        }
+        return grouped;
+    }
+
+    private <V> V load(Cache<String, V> cache, String key, Callable<V> loader) {
+        long loadGeneration = generation.get();
+        try {
+            V value = cache.get(key, loader);
+            if (generation.get() != loadGeneration)
+                cache.invalidate(key);
+            return value;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(ContractChangedEvent event) {
+        evict(event.getBefore());
+        evict(event.getAfter());
+    }
+
+    private void evict(Contract contract) {
+        if (contract == null)
+            return;
+        generation.incrementAndGet();
+        if (contract.getId() != null)
+            byId.invalidate(contract.getId());
+        if (contract.getConsultantId() != null)
+            byConsultantId.invalidate(contract.getConsultantId());
+        if (contract.getUnitId() != null)
+            byUnitId.invalidate(contract.getUnitId());
+    }
+
+    /**
+     * Evicts the given keys, used to apply writes made on other instances.
+     */
+    public void evict(Collection<String> ids, Collection<String> consultantIds, Collection<String> unitIds) {
+        if (replica != null)
+            replica.refresh(ids);
+        if (intervals != null)
+            intervals.refresh(ids);
+        generation.incrementAndGet();
+        byId.invalidateAll(ids);
+        byConsultantId.invalidateAll(consultantIds);
+        byUnitId.invalidateAll(unitIds);
+    }
+
+    /**
+     * Drops every entry and reads the replica and interval index again, used after the collection was written
+     * without events.
+     */
+    public void reload() {
+        if (replica != null)
+            replica.load();
+        if (intervals != null)
+            intervals.rebuild();
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        byId.invalidateAll();
+        byConsultantId.invalidateAll();
+        byUnitId.invalidateAll();
+    }
+
+    public CacheStats getByIdStats() {
+        return byId.stats();
+    }
+
+    public CacheStats getByConsultantIdStats() {
+        return byConsultantId.stats();
+    }
+
+    public CacheStats getByUnitIdStats() {
+        return byUnitId.stats();
+    }
+
+    public long getByIdSize() {
+        return byId.size();
+    }
+
+    public long getByConsultantIdSize() {
+        return byConsultantId.size();
+    }
+
+    public long getByUnitIdSize() {
+        return byUnitId.size();
+    }
+}
@@ -0,0 +1,38 @@
+package be.foreseegroup.micro.resourceservice.contract.cache;
+
+import com.google.common.cache.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Exposes the hit/miss statistics of the {@link ContractCache} on the actuator metrics endpoint.
+ */
+@Component
+public class ContractCacheMetrics implements PublicMetrics {
+    @Autowired
+    ContractCache cache;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        add(metrics, "cache.contract.byId", cache.getByIdStats(), cache.getByIdSize());
+        add(metrics, "cache.contract.byConsultantId", cache.getByConsultantIdStats(), cache.getByConsultantIdSize());
+        add(metrics, "cache.contract.byUnitId", cache.getByUnitIdStats(), cache.getByUnitIdSize());
+        return metrics;
+    }
+
+    private static void add(List<Metric<?>> metrics, String prefix, CacheStats stats, long size) {
+        metrics.add(new Metric<>(prefix + ".size", size));
+        metrics.add(new Metric<>(prefix + ".hits", stats.hitCount()));
+        metrics.add(new Metric<>(prefix + ".misses", stats.missCount()));
+        metrics.add(new Metric<>(prefix + ".hitRatio", stats.hitRate()));
+        metrics.add(new Metric<>(prefix + ".evictions", stats.evictionCount()));
+        metrics.add(new Metric<>(prefix + ".loadTimeMillis", stats.totalLoadTime() / 1000000));
+    }
+}
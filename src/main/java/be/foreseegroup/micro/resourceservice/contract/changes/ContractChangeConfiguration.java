@@ -0,0 +1,34 @@
+package be.foreseegroup.micro.resourceservice.contract.changes;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Selects how the change log is pushed to consumers: {@code contract.changes.transport} {@code rabbit}
+ * (default) publishes on a durable topic exchange, {@code none} leaves only the HTTP feed.
+ */
+@Configuration
+public class ContractChangeConfiguration {
+
+    @Configuration
+    @ConditionalOnProperty(prefix = "contract.changes", name = "transport", havingValue = "rabbit", matchIfMissing = true)
+    static class Rabbit {
+        @Bean
+        public TopicExchange contractChangeExchange(ContractProperties properties) {
+            return new TopicExchange(properties.getChanges().getExchange(), true, false);
+        }
+
+        @Bean
+        public RabbitContractChangePublisher contractChangePublisher(ConnectionFactory connectionFactory,
+                                                                     ContractProperties properties) {
+            return new RabbitContractChangePublisher(new RabbitTemplate(connectionFactory),
+                    new Jackson2JsonMessageConverter(), properties.getChanges().getExchange());
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package be.foreseegroup.micro.resourceservice.contract.changes;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractChange;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Ordered log of contract mutations, appended to on every {@link ContractChangedEvent}.
+ * <p>
+ * Sequence numbers come from a counter document shared by all instances, so they increase across the
+ * cluster but can reach the log out of order, and a sequence number is lost for good if its writer dies
+ * before inserting it. {@link #since(long, int)} therefore stops at a gap until it is older than
+ * {@code contract.changes.gapGraceMillis}; consumers that resume from the last sequence they received
+ * see every change exactly once.
+ * <p>
+ * A sequence number is taken after the contract was written, so two concurrent writes of one contract can be
+ * logged in the reverse of the order in which they were written. Every change carries the version of the
+ * contract; consumers apply a change only when its version is later than the one they hold, the way the
+ * {@link be.foreseegroup.micro.resourceservice.contract.replica.ContractTable} does.
+ * <p>
+ * Writers that publish many events at once, such as a chunk of {@code /contracts/bulk}, wrap them in
+ * {@link #batch(Runnable)}, so their changes take one block of sequence numbers and are inserted with one
+ * write. Old changes are pruned every {@code contract.changes.pruneIntervalSeconds} on a thread of the log.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contract.changes", name = "enabled", matchIfMissing = true)
+public class ContractChangeLog implements ApplicationListener<ContractChangedEvent> {
+    private static final Logger LOG = LoggerFactory.getLogger(ContractChangeLog.class);
+
+    static final String SEQUENCE_COLLECTION = "contract_sequence";
+    static final String SEQUENCE_ID = "change";
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    ContractProperties properties;
+
+    @Autowired(required = false)
+    ContractChangePublisher publisher;
+
+    // changes collected by batch() on this thread, null outside a batch
+    private final ThreadLocal<List<ContractChange>> batch = new ThreadLocal<>();
+    private ScheduledExecutorService pruner;
+
+    @PostConstruct
+    public void start() {
+        pruner = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "contract-change-pruner");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long interval = properties.getChanges().getPruneIntervalSeconds();
+        pruner.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    prune();
+                } catch (RuntimeException e) {
+                    LOG.warn("Could not prune the contract change log", e);
+                }
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pruner.shutdownNow();
+    }
+
+    @Override
+    public void onApplicationEvent(ContractChangedEvent event) {
+        Contract contract = event.getAfter() != null ? event.getAfter() : event.getBefore();
+        ContractChange change = new ContractChange(0, typeOf(event), event.getContractId(), contract, new Date());
+        List<ContractChange> changes = batch.get();
+        if (changes != null)
+            changes.add(change);
+        else
+            append(Collections.singletonList(change));
+    }
+
+    /**
+     * Runs {@code writes} and logs all changes it publishes on this thread at once, when it returns or fails.
+     */
+    public void batch(Runnable writes) {
+        if (batch.get() != null) {
+            writes.run();
+            return;
+        }
+        List<ContractChange> changes = new ArrayList<>();
+        batch.set(changes);
+        try {
+            writes.run();
+        } finally {
+            batch.remove();
+            append(changes);
+        }
+    }
+
+    private void append(List<ContractChange> changes) {
+        if (changes.isEmpty())
+            return;
+        try {
+            long sequence = reserve(changes.size()) - changes.size();
+            for (ContractChange change : changes) {
+                change.setSequence(++sequence);
+            }
+            mongoTemplate.insert(changes, ContractChange.class);
+        } catch (RuntimeException e) {
+            // the contracts themselves are written already, failing the request would only invite a retry
+            LOG.error("Could not log the changes of {} contracts, first {}", changes.size(), changes.get(0).getContractId(), e);
+            return;
+        }
+        if (publisher == null)
+            return;
+        for (ContractChange change : changes) {
+            try {
+                publisher.publish(change);
+            } catch (RuntimeException e) {
+                LOG.warn("Could not publish change {} of contract {}", change.getSequence(), change.getContractId(), e);
+            }
+        }
+    }
+
+    /**
+     * @return the last sequence number handed out, consumers starting from scratch resume from here
+     */
+    public long head() {
+        DBObject counter = sequences().findOne(new BasicDBObject("_id", SEQUENCE_ID));
+        return counter == null ? 0 : ((Number) counter.get("value")).longValue();
+    }
+
+    /**
+     * @return the last sequence number that was pruned, changes up to it are no longer available
+     */
+    public long prunedThrough() {
+        DBObject counter = sequences().findOne(new BasicDBObject("_id", SEQUENCE_ID));
+        return counter == null || counter.get("pruned") == null ? 0 : ((Number) counter.get("pruned")).longValue();
+    }
+
+    /**
+     * @return up to {@code limit} changes following {@code since}, in order and without gaps younger than
+     * the grace period
+     */
+    public List<ContractChange> since(long since, int limit) {
+        Query query = query(where("_id").gt(since)).with(new Sort(Sort.Direction.ASC, "_id")).limit(limit);
+        long graceStart = System.currentTimeMillis() - properties.getChanges().getGapGraceMillis();
+        List<ContractChange> changes = new ArrayList<>();
+        long expected = since + 1;
+        for (ContractChange change : mongoTemplate.find(query, ContractChange.class)) {
+            if (change.getSequence() != expected && change.getTimestamp().getTime() > graceStart)
+                break;
+            changes.add(change);
+            expected = change.getSequence() + 1;
+        }
+        return changes;
+    }
+
+    /**
+     * Removes changes older than the retention period. The pruned mark is raised before the changes are
+     * removed, so a reader never mistakes a pruned range for an empty one.
+     */
+    public void prune() {
+        Date cutoff = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(properties.getChanges().getRetentionHours()));
+        Query newestExpired = query(where("timestamp").lt(cutoff)).with(new Sort(Sort.Direction.DESC, "_id")).limit(1);
+        ContractChange last = mongoTemplate.findOne(newestExpired, ContractChange.class);
+        if (last == null)
+            return;
+        sequences().update(new BasicDBObject("_id", SEQUENCE_ID),
+                new BasicDBObject("$max", new BasicDBObject("pruned", last.getSequence())));
+        mongoTemplate.remove(query(where("_id").lte(last.getSequence())), ContractChange.class);
+    }
+
+    /**
+     * Takes {@code count} sequence numbers with one update of the counter.
+     *
+     * @return the last of them
+     */
+    private long reserve(int count) {
+        DBObject counter = sequences().findAndModify(new BasicDBObject("_id", SEQUENCE_ID), null, null, false,
+                new BasicDBObject("$inc", new BasicDBObject("value", (long) count)), true, true);
+        return ((Number) counter.get("value")).longValue();
+    }
+
+    private DBCollection sequences() {
+        return mongoTemplate.getCollection(SEQUENCE_COLLECTION);
+    }
+
+    private static String typeOf(ContractChangedEvent event) {
+        switch (event.getType()) {
+            case CREATED:
+                return ContractChange.CREATED;
+            case DELETED:
+                return ContractChange.DELETED;
+            default:
+                return ContractChange.UPDATED;
+        }
+    }
+}
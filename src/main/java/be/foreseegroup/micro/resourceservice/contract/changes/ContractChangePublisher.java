@@ -0,0 +1,10 @@
+package be.foreseegroup.micro.resourceservice.contract.changes;
+
+import be.foreseegroup.micro.resourceservice.contract.model.ContractChange;
+
+/**
+ * Pushes logged changes to consumers, in addition to the pull based HTTP feed.
+ */
+public interface ContractChangePublisher {
+    void publish(ContractChange change);
+}
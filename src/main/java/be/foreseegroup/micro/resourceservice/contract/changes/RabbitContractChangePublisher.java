@@ -0,0 +1,30 @@
+package be.foreseegroup.micro.resourceservice.contract.changes;
+
+import be.foreseegroup.micro.resourceservice.contract.model.ContractChange;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+/**
+ * Publishes changes as persistent JSON messages on a topic exchange with routing key
+ * {@code contract.<type>}. Messages from different instances may interleave, consumers order them by
+ * sequence number and fill gaps from the HTTP feed.
+ */
+public class RabbitContractChangePublisher implements ContractChangePublisher {
+    private final RabbitTemplate template;
+    private final MessageConverter converter;
+    private final String exchange;
+
+    public RabbitContractChangePublisher(RabbitTemplate template, MessageConverter converter, String exchange) {
+        this.template = template;
+        this.converter = converter;
+        this.exchange = exchange;
+    }
+
+    @Override
+    public void publish(ContractChange change) {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setMessageId(Long.toString(change.getSequence()));
+        template.send(exchange, "contract." + change.getType(), converter.toMessage(change, messageProperties));
+    }
+}
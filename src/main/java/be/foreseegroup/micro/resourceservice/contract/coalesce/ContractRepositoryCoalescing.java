@@ -0,0 +1,110 @@
+package be.foreseegroup.micro.resourceservice.contract.coalesce;
+
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractCursor;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractRepository;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Wraps the {@link ContractRepository} so that concurrent calls of the same {@code find} method with equal
+ * arguments share one query, see {@link SingleFlight}. Cursors are never shared. A
+ * {@link ContractChangedEvent} detaches the queries in flight, so a read that starts after a write never
+ * joins a query that started before it.
+ * <p>
+ * Exposes {@code coalescing.<method>.calls}, {@code .coalesced} and {@code .inFlight} on the actuator
+ * metrics endpoint. Applied outside of the {@link be.foreseegroup.micro.resourceservice.contract.metrics.ContractRepositoryMetrics},
+ * so the repository timers only count the queries that reach Mongo.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contract.coalescing", name = "enabled", matchIfMissing = true)
+public class ContractRepositoryCoalescing implements BeanPostProcessor, MethodInterceptor, Ordered, PublicMetrics,
+        ApplicationListener<ContractChangedEvent> {
+    private final ConcurrentMap<String, SingleFlight<List<Object>, Object>> flights = new ConcurrentHashMap<>();
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (!(bean instanceof ContractRepository))
+            return bean;
+        ProxyFactory proxy = new ProxyFactory(bean);
+        proxy.addAdvice(this);
+        return proxy.getProxy();
+    }
+
+    @Override
+    public Object invoke(final MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        if (!method.getName().startsWith("find") || ContractCursor.class.isAssignableFrom(method.getReturnType()))
+            return invocation.proceed();
+        SingleFlight<List<Object>, Object> flight = flights.get(method.getName());
+        if (flight == null) {
+            flights.putIfAbsent(method.getName(), new SingleFlight<List<Object>, Object>());
+            flight = flights.get(method.getName());
+        }
+        List<Object> key = new ArrayList<>();
+        key.add(method);
+        key.addAll(Arrays.asList(invocation.getArguments()));
+        return flight.execute(key, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                try {
+                    return invocation.proceed();
+                } catch (Exception | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new UndeclaredThrowableException(e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onApplicationEvent(ContractChangedEvent event) {
+        for (SingleFlight<List<Object>, Object> flight : flights.values()) {
+            flight.forgetAll();
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (Map.Entry<String, SingleFlight<List<Object>, Object>> entry : flights.entrySet()) {
+            String prefix = "coalescing." + entry.getKey();
+            SingleFlight<List<Object>, Object> flight = entry.getValue();
+            metrics.add(new Metric<>(prefix + ".calls", flight.getCalls()));
+            metrics.add(new Metric<>(prefix + ".coalesced", flight.getCoalesced()));
+            metrics.add(new Metric<>(prefix + ".inFlight", flight.getInFlight()));
+        }
+        return metrics;
+    }
+}
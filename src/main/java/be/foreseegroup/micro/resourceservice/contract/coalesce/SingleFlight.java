@@ -0,0 +1,69 @@
+package be.foreseegroup.micro.resourceservice.contract.coalesce;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs at most one load per key at a time: callers asking for a key that is being loaded wait for that
+ * load and share its result or exception instead of starting their own. The bookkeeping is a single
+ * {@link ConcurrentHashMap} of in-flight loads, no lock is held while loading.
+ * <p>
+ * Nothing is kept once a load completes, this is not a cache. Results are shared between callers and must
+ * not be modified.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, FutureTask<V>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public V execute(K key, Callable<V> loader) throws Exception {
+        calls.incrementAndGet();
+        FutureTask<V> flight = new FutureTask<>(loader);
+        FutureTask<V> inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            coalesced.incrementAndGet();
+            return await(inFlight);
+        }
+        try {
+            flight.run();
+        } finally {
+            flights.remove(key, flight);
+        }
+        return await(flight);
+    }
+
+    /**
+     * Lets later callers start new loads instead of joining the ones in flight, for instance after a write
+     * that the loads in flight may have missed. Callers that joined already still get the older result.
+     */
+    public void forgetAll() {
+        flights.clear();
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public int getInFlight() {
+        return flights.size();
+    }
+
+    private static <V> V await(FutureTask<V> flight) throws Exception {
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            throw (Error) cause;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package be.foreseegroup.micro.resourceservice.contract.coherence;
+
+import be.foreseegroup.micro.resourceservice.contract.cache.ContractCache;
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.BatchingRabbitTemplate;
+import org.springframework.amqp.rabbit.core.support.SimpleBatchingStrategy;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Keeps the caches of all instances coherent. {@code contract.coherence.transport} selects how
+ * invalidations travel: {@code rabbit} (default) over a fanout exchange with one anonymous queue
+ * per instance, {@code memory} through an in-process stand-in for tests, or {@code none}.
+ */
+@Configuration
+public class ContractCoherenceConfiguration {
+
+    @Configuration
+    @ConditionalOnProperty(prefix = "contract.coherence", name = "transport", havingValue = "rabbit", matchIfMissing = true)
+    static class Rabbit {
+        @Bean
+        public FanoutExchange contractInvalidationExchange(ContractProperties properties) {
+            return new FanoutExchange(properties.getCoherence().getExchange(), false, false);
+        }
+
+        @Bean
+        public Queue contractInvalidationQueue() {
+            return new AnonymousQueue();
+        }
+
+        @Bean
+        public Binding contractInvalidationBinding(FanoutExchange contractInvalidationExchange, Queue contractInvalidationQueue) {
+            return BindingBuilder.bind(contractInvalidationQueue).to(contractInvalidationExchange);
+        }
+
+        @Bean
+        public ThreadPoolTaskScheduler contractInvalidationScheduler() {
+            ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+            scheduler.setThreadNamePrefix("contract-invalidation-");
+            return scheduler;
+        }
+
+        @Bean
+        public RabbitContractInvalidationTransport contractInvalidationTransport(ConnectionFactory connectionFactory,
+                                                                                ContractProperties properties,
+                                                                                ThreadPoolTaskScheduler contractInvalidationScheduler) {
+            ContractProperties.Coherence config = properties.getCoherence();
+            SimpleBatchingStrategy batching = new SimpleBatchingStrategy(config.getBatchSize(),
+                    config.getBatchBufferLimit(), config.getBatchTimeoutMillis());
+            BatchingRabbitTemplate template = new BatchingRabbitTemplate(batching, contractInvalidationScheduler);
+            template.setConnectionFactory(connectionFactory);
+            return new RabbitContractInvalidationTransport(template, new Jackson2JsonMessageConverter(), config.getExchange());
+        }
+
+        @Bean
+        public ContractInvalidationPublisher contractInvalidationPublisher(ContractInvalidationTransport transport) {
+            return new ContractInvalidationPublisher(transport);
+        }
+
+        @Bean
+        public ContractInvalidationReceiver contractInvalidationReceiver(ContractCache cache,
+                                                                         ContractInvalidationPublisher publisher,
+                                                                         RabbitContractInvalidationTransport transport) {
+            ContractInvalidationReceiver receiver = new ContractInvalidationReceiver(cache, publisher);
+            transport.setReceiver(receiver);
+            return receiver;
+        }
+
+        @Bean
+        public SimpleMessageListenerContainer contractInvalidationListenerContainer(ConnectionFactory connectionFactory,
+                                                                                    Queue contractInvalidationQueue,
+                                                                                    RabbitContractInvalidationTransport transport) {
+            SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
+            container.setQueues(contractInvalidationQueue);
+            container.setMessageListener(transport);
+            return container;
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = "contract.coherence", name = "transport", havingValue = "memory")
+    static class InMemory {
+        @Bean
+        public InMemoryContractInvalidationTransport contractInvalidationTransport() {
+            return new InMemoryContractInvalidationTransport();
+        }
+
+        @Bean
+        public ContractInvalidationPublisher contractInvalidationPublisher(ContractInvalidationTransport transport) {
+            return new ContractInvalidationPublisher(transport);
+        }
+
+        @Bean
+        public ContractInvalidationReceiver contractInvalidationReceiver(ContractCache cache,
+                                                                         ContractInvalidationPublisher publisher,
+                                                                         InMemoryContractInvalidationTransport transport) {
+            ContractInvalidationReceiver receiver = new ContractInvalidationReceiver(cache, publisher);
+            transport.register(receiver);
+            return receiver;
+        }
+    }
+}
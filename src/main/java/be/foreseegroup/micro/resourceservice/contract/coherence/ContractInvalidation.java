@@ -0,0 +1,64 @@
+package be.foreseegroup.micro.resourceservice.contract.coherence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact description of the cache entries a write on one instance made stale. It only carries
+ * the keys to evict, the other instances reload the data from Mongo on their next lookup. When
+ * {@link #isAll()} is set the keys are empty and everything derived from the collection is stale.
+ */
+public class ContractInvalidation {
+    private String origin;
+    private boolean all;
+    private List<String> ids = new ArrayList<>();
+    private List<String> consultantIds = new ArrayList<>();
+    private List<String> unitIds = new ArrayList<>();
+
+    public ContractInvalidation() {
+    }
+
+    public ContractInvalidation(String origin) {
+        this.origin = origin;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public boolean isAll() {
+        return all;
+    }
+
+    public void setAll(boolean all) {
+        this.all = all;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<String> ids) {
+        this.ids = ids;
+    }
+
+    public List<String> getConsultantIds() {
+        return consultantIds;
+    }
+
+    public void setConsultantIds(List<String> consultantIds) {
+        this.consultantIds = consultantIds;
+    }
+
+    public List<String> getUnitIds() {
+        return unitIds;
+    }
+
+    public void setUnitIds(List<String> unitIds) {
+        this.unitIds = unitIds;
+    }
+}
@@ -0,0 +1,69 @@
+package be.foreseegroup.micro.resourceservice.contract.coherence;
+
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Turns every local {@link ContractChangedEvent} into a {@link ContractInvalidation} for the other
+ * instances. A failing transport is logged but never fails the write itself, the cache time to
+ * live bounds how long other instances can serve stale data in that case.
+ */
+public class ContractInvalidationPublisher implements ApplicationListener<ContractChangedEvent> {
+    private static final Logger LOG = LoggerFactory.getLogger(ContractInvalidationPublisher.class);
+
+    private final String origin = UUID.randomUUID().toString();
+    private final ContractInvalidationTransport transport;
+
+    public ContractInvalidationPublisher(ContractInvalidationTransport transport) {
+        this.transport = transport;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    @Override
+    public void onApplicationEvent(ContractChangedEvent event) {
+        ContractInvalidation invalidation = new ContractInvalidation(origin);
+        add(invalidation, event.getBefore());
+        add(invalidation, event.getAfter());
+        try {
+            transport.send(invalidation);
+        } catch (RuntimeException e) {
+            LOG.warn("Could not publish invalidation of contract {}", event.getContractId(), e);
+        }
+    }
+
+    /**
+     * Tells the other instances that the collection was written without events, such as by a snapshot import,
+     * so they have to drop and reload everything they derived from it.
+     */
+    public void publishAll() {
+        ContractInvalidation invalidation = new ContractInvalidation(origin);
+        invalidation.setAll(true);
+        try {
+            transport.send(invalidation);
+        } catch (RuntimeException e) {
+            LOG.warn("Could not publish invalidation of all contracts", e);
+        }
+    }
+
+    private static void add(ContractInvalidation invalidation, Contract contract) {
+        if (contract == null)
+            return;
+        addDistinct(invalidation.getIds(), contract.getId());
+        addDistinct(invalidation.getConsultantIds(), contract.getConsultantId());
+        addDistinct(invalidation.getUnitIds(), contract.getUnitId());
+    }
+
+    private static void addDistinct(List<String> keys, String key) {
+        if (key != null && !keys.contains(key))
+            keys.add(key);
+    }
+}
@@ -0,0 +1,27 @@
+package be.foreseegroup.micro.resourceservice.contract.coherence;
+
+import be.foreseegroup.micro.resourceservice.contract.cache.ContractCache;
+
+/**
+ * Applies the {@link ContractInvalidation}s published by other instances to the local cache.
+ * Invalidations of this instance itself are skipped, the local cache already evicted those
+ * entries synchronously with the write.
+ */
+public class ContractInvalidationReceiver {
+    private final ContractCache cache;
+    private final ContractInvalidationPublisher publisher;
+
+    public ContractInvalidationReceiver(ContractCache cache, ContractInvalidationPublisher publisher) {
+        this.cache = cache;
+        this.publisher = publisher;
+    }
+
+    public void receive(ContractInvalidation invalidation) {
+        if (publisher.getOrigin().equals(invalidation.getOrigin()))
+            return;
+        if (invalidation.isAll())
+            cache.reload();
+        else
+            cache.evict(invalidation.getIds(), invalidation.getConsultantIds(), invalidation.getUnitIds());
+    }
+}
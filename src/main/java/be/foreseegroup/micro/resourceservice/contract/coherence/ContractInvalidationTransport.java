@@ -0,0 +1,8 @@
+package be.foreseegroup.micro.resourceservice.contract.coherence;
+
+/**
+ * Carries {@link ContractInvalidation}s from the instance that wrote to every instance of the service.
+ */
+public interface ContractInvalidationTransport {
+    void send(ContractInvalidation invalidation);
+}
@@ -0,0 +1,27 @@
+package be.foreseegroup.micro.resourceservice.contract.coherence;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Broker stand-in that delivers invalidations synchronously to every registered receiver. Tests
+ * register extra receivers to play the part of other instances.
+ */
+public class InMemoryContractInvalidationTransport implements ContractInvalidationTransport {
+    private final List<ContractInvalidationReceiver> receivers = new CopyOnWriteArrayList<>();
+
+    public void register(ContractInvalidationReceiver receiver) {
+        receivers.add(receiver);
+    }
+
+    public void unregister(ContractInvalidationReceiver receiver) {
+        receivers.remove(receiver);
+    }
+
+    @Override
+    public void send(ContractInvalidation invalidation) {
+        for (ContractInvalidationReceiver receiver : receivers) {
+            receiver.receive(invalidation);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package be.foreseegroup.micro.resourceservice.contract.coherence;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+/**
+ * Publishes invalidations on a fanout exchange and applies the ones delivered to this instance's
+ * own queue. The template batches several invalidations into one AMQP message, the listener
+ * container splits them up again before they reach {@link #onMessage(Message)}.
+ */
+public class RabbitContractInvalidationTransport implements ContractInvalidationTransport, MessageListener {
+    private final RabbitTemplate template;
+    private final MessageConverter converter;
+    private final String exchange;
+    private ContractInvalidationReceiver receiver;
+
+    public RabbitContractInvalidationTransport(RabbitTemplate template, MessageConverter converter, String exchange) {
+        this.template = template;
+        this.converter = converter;
+        this.exchange = exchange;
+    }
+
+    public void setReceiver(ContractInvalidationReceiver receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public void send(ContractInvalidation invalidation) {
+        template.send(exchange, "", converter.toMessage(invalidation, new MessageProperties()));
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        if (receiver != null)
+            receiver.receive((ContractInvalidation) converter.fromMessage(message));
+    }
+}
@@ -0,0 +1,691 @@
+package be.foreseegroup.micro.resourceservice.contract.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tunables for the contract service, bound from the {@code contract.*} properties.
+ */
+@ConfigurationProperties(prefix = "contract")
+public class ContractProperties {
+    private final Paging paging = new Paging();
+    private final Indexes indexes = new Indexes();
+    private final Cache cache = new Cache();
+    private final Coherence coherence = new Coherence();
+    private final Bulk bulk = new Bulk();
+    private final Async async = new Async();
+    private final Metrics metrics = new Metrics();
+    private final AccessLog accessLog = new AccessLog();
+    private final Changes changes = new Changes();
+    private final WarmUp warmUp = new WarmUp();
+    private final Coalescing coalescing = new Coalescing();
+    private final Bulkhead bulkhead = new Bulkhead();
+    private final Replica replica = new Replica();
+    private final GroupCommit groupCommit = new GroupCommit();
+    private final Intervals intervals = new Intervals();
+    private final Snapshot snapshot = new Snapshot();
+
+    public Paging getPaging() {
+        return paging;
+    }
+
+    public Indexes getIndexes() {
+        return indexes;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Coherence getCoherence() {
+        return coherence;
+    }
+
+    public Bulk getBulk() {
+        return bulk;
+    }
+
+    public Async getAsync() {
+        return async;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public AccessLog getAccessLog() {
+        return accessLog;
+    }
+
+    public Changes getChanges() {
+        return changes;
+    }
+
+    public WarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    public Coalescing getCoalescing() {
+        return coalescing;
+    }
+
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    public Replica getReplica() {
+        return replica;
+    }
+
+    public GroupCommit getGroupCommit() {
+        return groupCommit;
+    }
+
+    public Intervals getIntervals() {
+        return intervals;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public static class Paging {
+        /** Upper bound on the page size a client may request. */
+        private int maxSize = 1000;
+        /** Number of documents fetched per round trip when streaming from a cursor. */
+        private int cursorBatchSize = 500;
+        /** Upper bound on the number of keys in one batch lookup. */
+        private int maxLookupKeys = 1000;
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getCursorBatchSize() {
+            return cursorBatchSize;
+        }
+
+        public void setCursorBatchSize(int cursorBatchSize) {
+            this.cursorBatchSize = cursorBatchSize;
+        }
+
+        public int getMaxLookupKeys() {
+            return maxLookupKeys;
+        }
+
+        public void setMaxLookupKeys(int maxLookupKeys) {
+            this.maxLookupKeys = maxLookupKeys;
+        }
+    }
+
+    public static class Indexes {
+        /** Abort the startup instead of logging a warning when a declared index is missing. */
+        private boolean failOnMissing = false;
+
+        public boolean isFailOnMissing() {
+            return failOnMissing;
+        }
+
+        public void setFailOnMissing(boolean failOnMissing) {
+            this.failOnMissing = failOnMissing;
+        }
+    }
+
+    public static class Cache {
+        /** Serve the id, consultant and unit lookups through the in-process cache. */
+        private boolean enabled = true;
+        /** Maximum number of contracts held by each of the id, consultant and unit caches. */
+        private long maxContracts = 100000;
+        /** Time after which a cached entry is reloaded even without a write invalidating it. */
+        private long timeToLiveSeconds = 300;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxContracts() {
+            return maxContracts;
+        }
+
+        public void setMaxContracts(long maxContracts) {
+            this.maxContracts = maxContracts;
+        }
+
+        public long getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
+
+    public static class Coherence {
+        /** How invalidations reach the other instances: rabbit, memory or none. */
+        private String transport = "rabbit";
+        /** Fanout exchange the invalidations are published on. */
+        private String exchange = "contract.invalidation";
+        /** Number of invalidations batched into one AMQP message. */
+        private int batchSize = 50;
+        /** Maximum size in bytes of one batched AMQP message. */
+        private int batchBufferLimit = 64 * 1024;
+        /** Time after which a partial batch is sent anyway. */
+        private long batchTimeoutMillis = 50;
+
+        public String getTransport() {
+            return transport;
+        }
+
+        public void setTransport(String transport) {
+            this.transport = transport;
+        }
+
+        public String getExchange() {
+            return exchange;
+        }
+
+        public void setExchange(String exchange) {
+            this.exchange = exchange;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getBatchBufferLimit() {
+            return batchBufferLimit;
+        }
+
+        public void setBatchBufferLimit(int batchBufferLimit) {
+            this.batchBufferLimit = batchBufferLimit;
+        }
+
+        public long getBatchTimeoutMillis() {
+            return batchTimeoutMillis;
+        }
+
+        public void setBatchTimeoutMillis(long batchTimeoutMillis) {
+            this.batchTimeoutMillis = batchTimeoutMillis;
+        }
+    }
+
+    public static class Bulk {
+        /** Number of operations sent to Mongo in one unordered bulk write. */
+        private int chunkSize = 1000;
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+    }
+
+    public static class Async {
+        /** Expose the asynchronous read endpoints under /async. */
+        private boolean enabled = false;
+        /** Threads executing asynchronous lookups, best kept close to the Mongo connection pool size. */
+        private int threads = 16;
+        /** Lookups waiting for a thread before new ones are rejected with 503. */
+        private int queueCapacity = 200;
+        /** Time after which a pending asynchronous lookup is answered with 503. */
+        private long requestTimeoutMillis = 10000;
+        /** Time after which an asynchronous stream is aborted. */
+        private long streamTimeoutMillis = 600000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getRequestTimeoutMillis() {
+            return requestTimeoutMillis;
+        }
+
+        public void setRequestTimeoutMillis(long requestTimeoutMillis) {
+            this.requestTimeoutMillis = requestTimeoutMillis;
+        }
+
+        public long getStreamTimeoutMillis() {
+            return streamTimeoutMillis;
+        }
+
+        public void setStreamTimeoutMillis(long streamTimeoutMillis) {
+            this.streamTimeoutMillis = streamTimeoutMillis;
+        }
+    }
+
+    public static class Metrics {
+        /** Record endpoint and repository latency histograms, result sizes and error counts. */
+        private boolean enabled = true;
+        /** Percentiles are computed over windows of this length rather than since startup. */
+        private int windowSeconds = 60;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getWindowSeconds() {
+            return windowSeconds;
+        }
+
+        public void setWindowSeconds(int windowSeconds) {
+            this.windowSeconds = windowSeconds;
+        }
+    }
+
+    public static class AccessLog {
+        /** Write an access log line per sampled request to the ContractAccessLog logger, off the request thread. */
+        private boolean enabled = true;
+        /** Fraction of requests logged, failed and slow requests are always logged. */
+        private double sampleRate = 1.0;
+        /** Requests taking at least this long are logged regardless of the sample rate. */
+        private long slowThresholdMillis = 1000;
+        /** Entries buffered for the writer thread, rounded up to a power of two; entries beyond it are dropped and counted. */
+        private int bufferSize = 8192;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public long getSlowThresholdMillis() {
+            return slowThresholdMillis;
+        }
+
+        public void setSlowThresholdMillis(long slowThresholdMillis) {
+            this.slowThresholdMillis = slowThresholdMillis;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+    }
+
+    public static class Changes {
+        /** Whether contract writes are recorded in the change log and its feed is served. */
+        private boolean enabled = true;
+        /** How changes are published besides the HTTP feed: rabbit (default, topic exchange) or none. */
+        private String transport = "rabbit";
+        /** Topic exchange receiving the changes, routed by contract.created, contract.updated and contract.deleted. */
+        private String exchange = "contract.changes";
+        /** Changes older than this are pruned, consumers further behind get 410 Gone and have to resync. */
+        private int retentionHours = 168;
+        /** Time a missing sequence number may still be in flight; the feed stops before such a gap until it is older. */
+        private long gapGraceMillis = 5000;
+        /** Interval at which changes older than the retention period are pruned. */
+        private int pruneIntervalSeconds = 60;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getTransport() {
+            return transport;
+        }
+
+        public void setTransport(String transport) {
+            this.transport = transport;
+        }
+
+        public String getExchange() {
+            return exchange;
+        }
+
+        public void setExchange(String exchange) {
+            this.exchange = exchange;
+        }
+
+        public int getRetentionHours() {
+            return retentionHours;
+        }
+
+        public void setRetentionHours(int retentionHours) {
+            this.retentionHours = retentionHours;
+        }
+
+        public long getGapGraceMillis() {
+            return gapGraceMillis;
+        }
+
+        public void setGapGraceMillis(long gapGraceMillis) {
+            this.gapGraceMillis = gapGraceMillis;
+        }
+
+        public int getPruneIntervalSeconds() {
+            return pruneIntervalSeconds;
+        }
+
+        public void setPruneIntervalSeconds(int pruneIntervalSeconds) {
+            this.pruneIntervalSeconds = pruneIntervalSeconds;
+        }
+    }
+
+    public static class WarmUp {
+        /** Whether the instance warms up before it registers with Eureka as UP */
+        private boolean enabled = true;
+        /** Number of Mongo connections opened up front */
+        private int connections = 10;
+        /** Number of synthetic requests sent to each hot endpoint */
+        private int iterations = 200;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getConnections() {
+            return connections;
+        }
+
+        public void setConnections(int connections) {
+            this.connections = connections;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public void setIterations(int iterations) {
+            this.iterations = iterations;
+        }
+    }
+
+    public static class Coalescing {
+        /** Whether concurrent identical repository reads share one query */
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Bulkhead {
+        /** Whether the contract endpoints are limited to a number of concurrent requests each */
+        private boolean enabled = true;
+        /** Concurrent requests per endpoint, unless overridden in limits */
+        private int limit = 64;
+        /** Concurrent requests of specific endpoints by handler method name, e.g. getAll */
+        private Map<String, Integer> limits = new HashMap<>();
+        /** Requests per endpoint that may wait for a slot, others are shed right away */
+        private int queueSize = 16;
+        /** Longest time a request waits for a slot before it is shed */
+        private long maxWaitMillis = 50;
+        /** Whether the limits are lowered while the latency of an endpoint rises */
+        private boolean adaptive = true;
+        /** Lowest limit the adaptive limit goes down to */
+        private int minLimit = 2;
+        /** Latency, relative to the lowest recently seen, that an endpoint tolerates before its limit is lowered */
+        private double latencyTolerance = 2.0;
+        /** Retry-After of shed requests */
+        private int retryAfterSeconds = 1;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public void setLimit(int limit) {
+            this.limit = limit;
+        }
+
+        public Map<String, Integer> getLimits() {
+            return limits;
+        }
+
+        public void setLimits(Map<String, Integer> limits) {
+            this.limits = limits;
+        }
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public void setQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+        }
+
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        public void setMaxWaitMillis(long maxWaitMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        public boolean isAdaptive() {
+            return adaptive;
+        }
+
+        public void setAdaptive(boolean adaptive) {
+            this.adaptive = adaptive;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public double getLatencyTolerance() {
+            return latencyTolerance;
+        }
+
+        public void setLatencyTolerance(double latencyTolerance) {
+            this.latencyTolerance = latencyTolerance;
+        }
+
+        public int getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        public void setRetryAfterSeconds(int retryAfterSeconds) {
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+
+    public static class Replica {
+        /** Whether lookups are served from a full in-memory copy of the contracts, see ContractReplica */
+        private boolean enabled = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class GroupCommit {
+        /** Whether POST /contracts queues its inserts and writes them to Mongo in batches, see ContractGroupCommit */
+        private boolean enabled = false;
+        /** Most inserts written in one batch */
+        private int batchSize = 100;
+        /** Longest time the first insert of a batch waits for others to join it */
+        private long windowMillis = 2;
+        /** Most inserts waiting for a batch, further creates wait for room */
+        private int queueCapacity = 1000;
+        /** Longest time a create waits for room in a full queue before it is shed with 503 */
+        private long enqueueWaitMillis = 100;
+        /** Longest time a queued create waits for its batch to be written before it is answered with 503; the contract may still be written */
+        private long commitTimeoutMillis = 5000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getWindowMillis() {
+            return windowMillis;
+        }
+
+        public void setWindowMillis(long windowMillis) {
+            this.windowMillis = windowMillis;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getEnqueueWaitMillis() {
+            return enqueueWaitMillis;
+        }
+
+        public void setEnqueueWaitMillis(long enqueueWaitMillis) {
+            this.enqueueWaitMillis = enqueueWaitMillis;
+        }
+
+        public long getCommitTimeoutMillis() {
+            return commitTimeoutMillis;
+        }
+
+        public void setCommitTimeoutMillis(long commitTimeoutMillis) {
+            this.commitTimeoutMillis = commitTimeoutMillis;
+        }
+    }
+
+    public static class Intervals {
+        /** Whether contract periods are indexed for the availability and overlap endpoints, see ContractIntervalIndex */
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Snapshot {
+        /** Snapshot file the whole collection is written to at startup, see ContractSnapshots */
+        private String exportTo;
+        /** Snapshot file whose contracts are inserted at startup, see ContractSnapshots */
+        private String importFrom;
+        /** Number of documents per cursor round trip on export and per bulk insert on import */
+        private int batchSize = 1000;
+        /** Size in bytes of the buffer export writes through */
+        private int bufferSize = 1048576;
+
+        public String getExportTo() {
+            return exportTo;
+        }
+
+        public void setExportTo(String exportTo) {
+            this.exportTo = exportTo;
+        }
+
+        public String getImportFrom() {
+            return importFrom;
+        }
+
+        public void setImportFrom(String importFrom) {
+            this.importFrom = importFrom;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+    }
+}
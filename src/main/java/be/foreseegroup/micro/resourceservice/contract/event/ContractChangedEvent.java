@@ -0,0 +1,49 @@
+package be.foreseegroup.micro.resourceservice.contract.event;
+
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by the contract service after a contract was created, updated or deleted.
+ * Carries the state before and after the write so listeners can tell exactly which
+ * consultant and unit were affected; {@code before} is {@code null} for a create and
+ * {@code after} is {@code null} for a delete.
+ */
+public class ContractChangedEvent extends ApplicationEvent {
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final Contract before;
+    private final Contract after;
+
+    public ContractChangedEvent(Object source, Contract before, Contract after) {
+        super(source);
+        if (before == null && after == null)
+            throw new IllegalArgumentException("Either the before or the after state is required");
+        this.before = before;
+        this.after = after;
+    }
+
+    public Contract getBefore() {
+        return before;
+    }
+
+    public Contract getAfter() {
+        return after;
+    }
+
+    public Type getType() {
+        if (before == null)
+            return Type.CREATED;
+        if (after == null)
+            return Type.DELETED;
+        return Type.UPDATED;
+    }
+
+    public String getContractId() {
+        return after != null ? after.getId() : before.getId();
+    }
+}
@@ -0,0 +1,16 @@
+package be.foreseegroup.micro.resourceservice.contract.format;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+/**
+ * Reads and writes request and response bodies with an {@link ObjectMapper} backed by a binary Jackson
+ * format such as Smile or CBOR.
+ */
+public class BinaryJacksonHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public BinaryJacksonHttpMessageConverter(ObjectMapper mapper, MediaType mediaType) {
+        super(mapper, mediaType);
+    }
+}
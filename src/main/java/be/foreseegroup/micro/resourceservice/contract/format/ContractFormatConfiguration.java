@@ -0,0 +1,24 @@
+package be.foreseegroup.micro.resourceservice.contract.format;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import java.util.List;
+
+/**
+ * Adds the Smile and CBOR converters behind the default ones, so they are only chosen when a client
+ * asks for them and {@code Accept: *}{@code /*} keeps resolving to JSON.
+ */
+@Configuration
+public class ContractFormatConfiguration extends WebMvcConfigurerAdapter {
+    @Autowired
+    ContractFormats formats;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new BinaryJacksonHttpMessageConverter(formats.getSmileMapper(), ContractFormats.SMILE));
+        converters.add(new BinaryJacksonHttpMessageConverter(formats.getCborMapper(), ContractFormats.CBOR));
+    }
+}
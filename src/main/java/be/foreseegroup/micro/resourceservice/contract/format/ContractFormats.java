@@ -0,0 +1,87 @@
+package be.foreseegroup.micro.resourceservice.contract.format;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The wire formats the contract endpoints speak besides JSON: Smile and CBOR, binary encodings of the same
+ * Jackson data model. They drop the quoting and repeated field names of JSON (Smile also back-references
+ * repeated names and short strings), so they are smaller and cheaper to parse, while every client that
+ * does not ask for them keeps getting JSON.
+ */
+@Component
+public class ContractFormats {
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType SMILE = MediaType.valueOf(SMILE_VALUE);
+    public static final String CBOR_VALUE = "application/cbor";
+    public static final MediaType CBOR = MediaType.valueOf(CBOR_VALUE);
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+    private final ObjectMapper cborMapper;
+
+    /**
+     * @param builder the builder Boot configures the JSON mapper with, so all formats share its settings
+     */
+    @Autowired
+    public ContractFormats(ObjectMapper jsonMapper, Jackson2ObjectMapperBuilder builder) {
+        this.jsonMapper = jsonMapper;
+        this.smileMapper = new ObjectMapper(new SmileFactory());
+        builder.configure(smileMapper);
+        this.cborMapper = new ObjectMapper(new CBORFactory());
+        builder.configure(cborMapper);
+    }
+
+    public ObjectMapper getSmileMapper() {
+        return smileMapper;
+    }
+
+    public ObjectMapper getCborMapper() {
+        return cborMapper;
+    }
+
+    /**
+     * @return the mapper for the preferred format in an Accept header, JSON unless Smile or CBOR is
+     * preferred over it
+     */
+    public ObjectMapper negotiate(String accept) {
+        if (accept == null)
+            return jsonMapper;
+        List<MediaType> acceptable;
+        try {
+            acceptable = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return jsonMapper;
+        }
+        MediaType.sortBySpecificityAndQuality(acceptable);
+        for (MediaType type : acceptable) {
+            if (type.includes(MediaType.APPLICATION_JSON))
+                return jsonMapper;
+            if (type.includes(SMILE))
+                return smileMapper;
+            if (type.includes(CBOR))
+                return cborMapper;
+        }
+        return jsonMapper;
+    }
+
+    /**
+     * @return the content type of the documents a mapper returned by {@link #negotiate(String)} writes
+     */
+    public MediaType contentType(ObjectMapper mapper) {
+        if (mapper == smileMapper)
+            return SMILE;
+        if (mapper == cborMapper)
+            return CBOR;
+        return new MediaType("application", "json", StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,263 @@
+package be.foreseegroup.micro.resourceservice.contract.interval;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.replica.Tombstones;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractCursor;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Periods of all contracts in a {@link ContractIntervalTree}, and of the contracts of each consultant in a tree of
+ * their own, so which consultants are under contract in a period, and which contracts of a consultant overlap a
+ * period, are answered in logarithmic time instead of by scanning all contracts.
+ * <p>
+ * Built from the contract collection at startup and maintained from the {@link ContractChangedEvent}s of this
+ * instance; contracts written by other instances are read again when their coherence invalidation arrives.
+ * Periods include both their start and end day, a contract without end date runs indefinitely.
+ * <p>
+ * Events of concurrent writes can arrive out of order, so an event only applies when it carries a later version
+ * than the indexed one, and a removal leaves a tombstone in {@link Tombstones}, like in the
+ * {@link be.foreseegroup.micro.resourceservice.contract.replica.ContractTable} of the replica. A refused event makes
+ * the index read the contract again from Mongo, outside the lock.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contract.intervals", name = "enabled", matchIfMissing = true)
+public class ContractIntervalIndex implements ApplicationListener<ContractChangedEvent>, PublicMetrics {
+    private static final long NO_VERSION = Long.MIN_VALUE;
+
+    @Autowired
+    ContractRepository repo;
+
+    @Autowired
+    ContractProperties properties;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private ContractIntervalTree all = new ContractIntervalTree();
+    private Map<String, ContractIntervalTree> byConsultant = new HashMap<>();
+    private Map<String, ContractIntervalTree.Node> byId = new HashMap<>();
+    private final Tombstones tombstones = new Tombstones();
+
+    /**
+     * Reads the periods of all contracts again, writes wait until it is done.
+     */
+    @PostConstruct
+    public void rebuild() {
+        Query query = new Query();
+        query.fields().include("consultantId").include("startDate").include("endDate").include("version");
+        lock.writeLock().lock();
+        try (ContractCursor cursor = repo.stream(query, properties.getPaging().getCursorBatchSize())) {
+            all = new ContractIntervalTree();
+            byConsultant = new HashMap<>();
+            byId = new HashMap<>();
+            while (cursor.hasNext()) {
+                add(cursor.next());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the ids of the contracts running at some day of {@code [from, to]}, by consultant in consultant order
+     */
+    public Map<String, List<String>> underContract(Date from, Date to) {
+        List<ContractIntervalTree.Node> nodes = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            all.overlapping(from.getTime(), to.getTime(), nodes);
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<String, List<String>> contracts = new TreeMap<>();
+        for (ContractIntervalTree.Node node : nodes) {
+            if (node.consultantId == null)
+                continue;
+            List<String> ids = contracts.get(node.consultantId);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                contracts.put(node.consultantId, ids);
+            }
+            ids.add(node.contractId);
+        }
+        return contracts;
+    }
+
+    /**
+     * @param end the last day, or null for a period without end
+     * @return the ids of the contracts of the consultant running at some day of the period, in start order
+     */
+    public List<String> overlapping(String consultantId, Date start, Date end) {
+        List<ContractIntervalTree.Node> nodes = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            ContractIntervalTree tree = byConsultant.get(consultantId);
+            if (tree != null)
+                tree.overlapping(start.getTime(), end == null ? Long.MAX_VALUE : end.getTime(), nodes);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<String> ids = new ArrayList<>(nodes.size());
+        for (ContractIntervalTree.Node node : nodes) {
+            ids.add(node.contractId);
+        }
+        return ids;
+    }
+
+    @Override
+    public void onApplicationEvent(ContractChangedEvent event) {
+        boolean applied;
+        lock.writeLock().lock();
+        try {
+            if (event.getAfter() == null) {
+                remove(event.getContractId());
+                return;
+            }
+            applied = put(event.getAfter());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!applied)
+            refresh(Collections.singleton(event.getContractId()));
+    }
+
+    /**
+     * Reads the periods of contracts written by another instance again. Mongo is read before the lock is taken, a
+     * contract removed while it was read stays removed.
+     */
+    public void refresh(Collection<String> ids) {
+        if (ids.isEmpty())
+            return;
+        Map<String, Tombstones.Removal> removals = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (String id : ids) {
+                removals.put(id, tombstones.get(id));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Set<String> missing = new HashSet<>(ids);
+        Iterable<Contract> contracts = repo.findAll(ids);
+        lock.writeLock().lock();
+        try {
+            for (Contract contract : contracts) {
+                missing.remove(contract.getId());
+                if (!tombstones.admitRead(contract.getId(), removals.get(contract.getId())))
+                    continue;
+                ContractIntervalTree.Node node = byId.get(contract.getId());
+                if (node != null && !isLater(contract, node))
+                    continue;
+                unindex(contract.getId());
+                add(contract);
+            }
+            for (String id : missing) {
+                remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return all.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("intervals.contracts", size()));
+        return metrics;
+    }
+
+    /**
+     * Indexes the contract of an event, unless the index holds a later version of it or removed it at this version
+     * or a later one. Contracts without a version always replace the indexed one, but never a removed one.
+     *
+     * @return false when the event was refused
+     */
+    private boolean put(Contract contract) {
+        if (!tombstones.admit(contract.getId(), contract.getVersion()))
+            return false;
+        ContractIntervalTree.Node node = byId.get(contract.getId());
+        if (node != null && !isLater(contract, node))
+            return false;
+        unindex(contract.getId());
+        add(contract);
+        return true;
+    }
+
+    private static boolean isLater(Contract contract, ContractIntervalTree.Node node) {
+        return version(contract) == NO_VERSION || node.version == NO_VERSION || version(contract) >= node.version;
+    }
+
+    private void add(Contract contract) {
+        long start = contract.getStartDate() == null ? Long.MIN_VALUE : contract.getStartDate().getTime();
+        long end = contract.getEndDate() == null ? Long.MAX_VALUE : contract.getEndDate().getTime();
+        long version = version(contract);
+        ContractIntervalTree.Node node = new ContractIntervalTree.Node(contract.getId(), contract.getConsultantId(), start, end, version);
+        all.insert(node);
+        byId.put(contract.getId(), node);
+        if (contract.getConsultantId() == null)
+            return;
+        ContractIntervalTree tree = byConsultant.get(contract.getConsultantId());
+        if (tree == null) {
+            tree = new ContractIntervalTree();
+            byConsultant.put(contract.getConsultantId(), tree);
+        }
+        // the trees link their nodes, the consultant tree needs nodes of its own
+        tree.insert(new ContractIntervalTree.Node(contract.getId(), contract.getConsultantId(), start, end, version));
+    }
+
+    /**
+     * Removes the contract and leaves a tombstone of the removed version.
+     */
+    private void remove(String id) {
+        ContractIntervalTree.Node node = unindex(id);
+        tombstones.remove(id, node == null || node.version == NO_VERSION ? null : node.version);
+    }
+
+    private ContractIntervalTree.Node unindex(String id) {
+        ContractIntervalTree.Node node = byId.remove(id);
+        if (node == null)
+            return null;
+        all.remove(node.start, id);
+        if (node.consultantId == null)
+            return node;
+        ContractIntervalTree tree = byConsultant.get(node.consultantId);
+        tree.remove(node.start, id);
+        if (tree.size() == 0)
+            byConsultant.remove(node.consultantId);
+        return node;
+    }
+
+    private static long version(Contract contract) {
+        return contract.getVersion() == null ? NO_VERSION : contract.getVersion();
+    }
+}
@@ -0,0 +1,62 @@
+package be.foreseegroup.micro.resourceservice.contract.interval;
+
+import be.foreseegroup.micro.resourceservice.contract.cache.ContractCache;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractDates;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Availability and overlap checks for staffing tools, answered from the {@link ContractIntervalIndex}.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "contract.intervals", name = "enabled", matchIfMissing = true)
+public class ContractIntervalService {
+    @Autowired
+    ContractIntervalIndex index;
+
+    @Autowired
+    ContractCache cache;
+
+    /**
+     * Consultants under contract at some day of {@code [from, to]}, with the ids of those contracts; consultants that
+     * are not listed are available for the whole period.
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "/contracts/availability")
+    public ResponseEntity<Map<String, List<String>>> getUnderContract(@RequestParam String from, @RequestParam String to) {
+        Date first = ContractDates.parse(from);
+        Date last = ContractDates.parse(to);
+        if (first == null || last == null || first.after(last))
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        return new ResponseEntity<>(index.underContract(first, last), HttpStatus.OK);
+    }
+
+    /**
+     * Contracts of the consultant that overlap the period of a new contract, from {@code start} up to {@code end} or
+     * indefinitely. A contract being updated passes its own id as {@code exclude}.
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "/contractsbycid/{consultantId}/overlaps")
+    public ResponseEntity<List<Contract>> getOverlapping(@PathVariable String consultantId, @RequestParam String start,
+                                                         @RequestParam(required = false) String end,
+                                                         @RequestParam(required = false) String exclude) {
+        Date first = ContractDates.parse(start);
+        Date last = ContractDates.parse(end);
+        if (first == null || (end != null && (last == null || first.after(last))))
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        List<String> ids = index.overlapping(consultantId, first, last);
+        ids.remove(exclude);
+        return new ResponseEntity<List<Contract>>(new ArrayList<>(cache.findByIds(ids).values()), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,169 @@
+package be.foreseegroup.micro.resourceservice.contract.interval;
+
+import java.util.List;
+
+/**
+ * AVL tree of contract periods ordered by start and contract id, where every node also holds the latest end of
+ * its subtree. A search skips every subtree that ends before the searched period or starts after it, so finding
+ * the k overlapping periods of n takes O(log n + k). Not thread-safe.
+ */
+final class ContractIntervalTree {
+    static final class Node {
+        final String contractId;
+        final String consultantId;
+        final long start;
+        final long end;
+        final long version;
+        long maxEnd;
+        int height = 1;
+        Node left;
+        Node right;
+
+        Node(String contractId, String consultantId, long start, long end, long version) {
+            this.contractId = contractId;
+            this.consultantId = consultantId;
+            this.start = start;
+            this.end = end;
+            this.version = version;
+            this.maxEnd = end;
+        }
+    }
+
+    private Node root;
+    private int size;
+    private boolean removed;
+
+    void insert(Node node) {
+        root = insert(root, node);
+        size++;
+    }
+
+    /**
+     * @return true when the period was in the tree
+     */
+    boolean remove(long start, String contractId) {
+        removed = false;
+        root = remove(root, start, contractId);
+        if (removed)
+            size--;
+        return removed;
+    }
+
+    /**
+     * Adds the periods that share at least one day with {@code [from, to]}, both inclusive, in start order.
+     */
+    void overlapping(long from, long to, List<Node> result) {
+        overlapping(root, from, to, result);
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static void overlapping(Node node, long from, long to, List<Node> result) {
+        if (node == null || node.maxEnd < from)
+            return;
+        overlapping(node.left, from, to, result);
+        // the right subtree only starts later
+        if (node.start > to)
+            return;
+        if (node.end >= from)
+            result.add(node);
+        overlapping(node.right, from, to, result);
+    }
+
+    private static Node insert(Node node, Node inserted) {
+        if (node == null)
+            return inserted;
+        if (compare(inserted.start, inserted.contractId, node) < 0)
+            node.left = insert(node.left, inserted);
+        else
+            node.right = insert(node.right, inserted);
+        return balance(node);
+    }
+
+    private Node remove(Node node, long start, String contractId) {
+        if (node == null)
+            return null;
+        int comparison = compare(start, contractId, node);
+        if (comparison < 0) {
+            node.left = remove(node.left, start, contractId);
+        } else if (comparison > 0) {
+            node.right = remove(node.right, start, contractId);
+        } else {
+            removed = true;
+            if (node.left == null)
+                return node.right;
+            if (node.right == null)
+                return node.left;
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeFirst(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return balance(node);
+    }
+
+    private static Node removeFirst(Node node) {
+        if (node.left == null)
+            return node.right;
+        node.left = removeFirst(node.left);
+        return balance(node);
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right))
+                node.left = rotateLeft(node.left);
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left))
+                node.right = rotateRight(node.right);
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null)
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        if (node.right != null)
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        node.maxEnd = maxEnd;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int compare(long start, String contractId, Node node) {
+        int comparison = Long.compare(start, node.start);
+        return comparison != 0 ? comparison : contractId.compareTo(node.contractId);
+    }
+}
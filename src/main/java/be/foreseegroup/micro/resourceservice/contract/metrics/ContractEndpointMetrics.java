@@ -0,0 +1,142 @@
+package be.foreseegroup.micro.resourceservice.contract.metrics;
+
+import be.foreseegroup.micro.resourceservice.contract.ContractServiceApplication;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records latency, result size and errors of the contract endpoints as {@code endpoint.<controller>.<method>}
+ * operations of {@link ContractMetrics}. Latency runs from the first dispatch of a request until its
+ * completion, so asynchronous requests are measured end to end, whether Spring or the handler itself started
+ * the asynchronous processing; 4xx responses count as client errors, 5xx responses, unhandled exceptions and
+ * asynchronous requests that time out or fail as errors.
+ */
+@ControllerAdvice
+@ConditionalOnProperty(prefix = "contract.metrics", name = "enabled", matchIfMissing = true)
+public class ContractEndpointMetrics extends WebMvcConfigurerAdapter implements ResponseBodyAdvice<Object> {
+    private static final String BASE_PACKAGE = ContractServiceApplication.class.getPackage().getName();
+    private static final String START_ATTRIBUTE = ContractEndpointMetrics.class.getName() + ".start";
+
+    @Autowired
+    ContractMetrics metrics;
+
+    private final ConcurrentMap<Method, ContractMetrics.Operation> operations = new ConcurrentHashMap<>();
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptorAdapter() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                if (request.getAttribute(START_ATTRIBUTE) == null)
+                    request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response, Object handler, Exception ex) {
+                final Long start = (Long) request.getAttribute(START_ATTRIBUTE);
+                final ContractMetrics.Operation operation = operation(handler);
+                if (start == null || operation == null)
+                    return;
+                // a handler that started asynchronous processing itself, like the NDJSON stream, is still writing
+                // its response; Spring only knows about the asynchronous requests it started
+                if (ex == null && request.isAsyncStarted()) {
+                    request.getAsyncContext().addListener(new AsyncListener() {
+                        private final AtomicBoolean recorded = new AtomicBoolean();
+
+                        @Override
+                        public void onComplete(AsyncEvent event) {
+                            record(false);
+                        }
+
+                        @Override
+                        public void onTimeout(AsyncEvent event) {
+                            record(true);
+                        }
+
+                        @Override
+                        public void onError(AsyncEvent event) {
+                            record(true);
+                        }
+
+                        @Override
+                        public void onStartAsync(AsyncEvent event) {
+                        }
+
+                        private void record(boolean failed) {
+                            if (recorded.compareAndSet(false, true))
+                                ContractEndpointMetrics.record(operation, start, response.getStatus(), failed);
+                        }
+                    });
+                    return;
+                }
+                record(operation, start, response.getStatus(), ex != null);
+            }
+        });
+    }
+
+    private static void record(ContractMetrics.Operation operation, long start, int status, boolean failed) {
+        operation.latency(System.nanoTime() - start);
+        if (failed || status >= 500)
+            operation.error();
+        else if (status >= 400)
+            operation.clientError();
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return returnType.getMethod() != null && isContractEndpoint(returnType.getContainingClass());
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body != null)
+            operation(returnType.getMethod(), returnType.getContainingClass()).result(body);
+        return body;
+    }
+
+    private ContractMetrics.Operation operation(Object handler) {
+        if (!(handler instanceof HandlerMethod))
+            return null;
+        HandlerMethod handlerMethod = (HandlerMethod) handler;
+        if (!isContractEndpoint(handlerMethod.getBeanType()))
+            return null;
+        return operation(handlerMethod.getMethod(), handlerMethod.getBeanType());
+    }
+
+    private ContractMetrics.Operation operation(Method method, Class<?> controller) {
+        ContractMetrics.Operation operation = operations.get(method);
+        if (operation == null) {
+            operation = metrics.operation("endpoint." + StringUtils.uncapitalize(controller.getSimpleName()) + "." + method.getName());
+            operations.put(method, operation);
+        }
+        return operation;
+    }
+
+    private static boolean isContractEndpoint(Class<?> type) {
+        return type.getName().startsWith(BASE_PACKAGE);
+    }
+}
@@ -0,0 +1,111 @@
+package be.foreseegroup.micro.resourceservice.contract.metrics;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the latency, result size and error metrics of the contract service in the Dropwizard
+ * {@link MetricRegistry}, from where Boot exposes them on the actuator metrics endpoint. For an operation
+ * named {@code endpoint.contractService.getById} these are
+ * <ul>
+ * <li>{@code timer.contract.endpoint.contractService.getById.*}, call rate and latency percentiles in milliseconds</li>
+ * <li>{@code histogram.contract.endpoint.contractService.getById.resultSize.*}, number of contracts returned</li>
+ * <li>{@code counter.contract.endpoint.contractService.getById.errors}, failed calls</li>
+ * <li>{@code counter.contract.endpoint.contractService.getById.clientErrors}, rejected calls (endpoints only)</li>
+ * </ul>
+ */
+@Component
+@ConditionalOnProperty(prefix = "contract.metrics", name = "enabled", matchIfMissing = true)
+public class ContractMetrics {
+    @Autowired
+    MetricRegistry registry;
+
+    @Autowired
+    ContractProperties properties;
+
+    private final ConcurrentMap<String, Operation> operations = new ConcurrentHashMap<>();
+
+    public Operation operation(String name) {
+        Operation operation = operations.get(name);
+        if (operation == null) {
+            operations.putIfAbsent(name, new Operation(name));
+            operation = operations.get(name);
+        }
+        return operation;
+    }
+
+    /**
+     * @return the number of contracts in a result, or -1 when it cannot be told without consuming the result
+     */
+    public static int sizeOf(Object result) {
+        if (result == null)
+            return 0;
+        if (result instanceof Contract)
+            return 1;
+        if (result instanceof Collection)
+            return ((Collection<?>) result).size();
+        if (result instanceof Map)
+            return ((Map<?, ?>) result).size();
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Metric> T register(String name, T metric) {
+        try {
+            return registry.register(name, metric);
+        } catch (IllegalArgumentException e) {
+            // registered concurrently or by an earlier context sharing the registry
+            return (T) registry.getMetrics().get(name);
+        }
+    }
+
+    public class Operation {
+        private final Timer latency;
+        private final Histogram resultSize;
+        private final Counter errors;
+        private final Counter clientErrors;
+
+        Operation(String name) {
+            long window = properties.getMetrics().getWindowSeconds();
+            this.latency = register("timer.contract." + name, new Timer(new HdrHistogramReservoir(window, TimeUnit.SECONDS)));
+            this.resultSize = register("histogram.contract." + name + ".resultSize", new Histogram(new HdrHistogramReservoir(window, TimeUnit.SECONDS)));
+            this.errors = register("counter.contract." + name + ".errors", new Counter());
+            this.clientErrors = register("counter.contract." + name + ".clientErrors", new Counter());
+        }
+
+        public void latency(long nanos) {
+            latency.update(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Records the size of a result, ignoring results whose size is unknown.
+         */
+        public void result(Object result) {
+            int size = sizeOf(result);
+            if (size >= 0)
+                resultSize.update(size);
+        }
+
+        public void error() {
+            errors.inc();
+        }
+
+        public void clientError() {
+            clientErrors.inc();
+        }
+    }
+}
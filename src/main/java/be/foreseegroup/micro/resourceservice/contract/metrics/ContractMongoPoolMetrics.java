@@ -0,0 +1,51 @@
+package be.foreseegroup.micro.resourceservice.contract.metrics;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Exposes the Mongo connection pool gauges on the actuator metrics endpoint, summed over the pools of all
+ * servers. The driver publishes its pool statistics as MBeans only, so they are read from the platform
+ * MBean server.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contract.metrics", name = "enabled", matchIfMissing = true)
+public class ContractMongoPoolMetrics implements PublicMetrics {
+    private static final String POOL_PATTERN = "org.mongodb.driver:type=ConnectionPool,*";
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long size = 0;
+        long checkedOut = 0;
+        long waitQueueSize = 0;
+        long maxSize = 0;
+        try {
+            for (ObjectName pool : server.queryNames(new ObjectName(POOL_PATTERN), null)) {
+                size += (Integer) server.getAttribute(pool, "Size");
+                checkedOut += (Integer) server.getAttribute(pool, "CheckedOutCount");
+                waitQueueSize += (Integer) server.getAttribute(pool, "WaitQueueSize");
+                maxSize += (Integer) server.getAttribute(pool, "MaxSize");
+            }
+        } catch (JMException e) {
+            // a pool closed while it was being read, report what was collected
+        }
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("mongo.pool.size", size));
+        metrics.add(new Metric<>("mongo.pool.checkedOut", checkedOut));
+        metrics.add(new Metric<>("mongo.pool.waitQueueSize", waitQueueSize));
+        metrics.add(new Metric<>("mongo.pool.maxSize", maxSize));
+        return metrics;
+    }
+}
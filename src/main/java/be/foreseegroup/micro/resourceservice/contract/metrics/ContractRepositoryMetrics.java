@@ -0,0 +1,76 @@
+package be.foreseegroup.micro.resourceservice.contract.metrics;
+
+import be.foreseegroup.micro.resourceservice.contract.service.ContractRepository;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Wraps the {@link ContractRepository} to record latency, result size and errors per repository method, as
+ * {@code repository.<method>} operations of {@link ContractMetrics}. Cursors returned by
+ * {@link ContractRepository#streamAll(int)} are timed until they are opened, not until they are drained.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contract.metrics", name = "enabled", matchIfMissing = true)
+public class ContractRepositoryMetrics implements BeanPostProcessor, MethodInterceptor, Ordered {
+    @Autowired
+    ContractMetrics metrics;
+
+    private final ConcurrentMap<Method, ContractMetrics.Operation> operations = new ConcurrentHashMap<>();
+
+    /**
+     * Wraps the repository before the {@link be.foreseegroup.micro.resourceservice.contract.coalesce.ContractRepositoryCoalescing}
+     * does, coalesced calls are not timed as queries.
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (!(bean instanceof ContractRepository))
+            return bean;
+        ProxyFactory proxy = new ProxyFactory(bean);
+        proxy.addAdvice(this);
+        return proxy.getProxy();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        if (method.getDeclaringClass() == Object.class)
+            return invocation.proceed();
+        ContractMetrics.Operation operation = operations.get(method);
+        if (operation == null) {
+            operation = metrics.operation("repository." + method.getName());
+            operations.put(method, operation);
+        }
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            operation.result(result);
+            return result;
+        } catch (Throwable e) {
+            operation.error();
+            throw e;
+        } finally {
+            operation.latency(System.nanoTime() - start);
+        }
+    }
+}
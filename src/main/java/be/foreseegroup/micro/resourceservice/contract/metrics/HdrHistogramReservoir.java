@@ -0,0 +1,74 @@
+package be.foreseegroup.micro.resourceservice.contract.metrics;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Reservoir} backed by an HdrHistogram {@link Recorder}: updates are wait-free and allocation-free,
+ * and percentiles are exact to three significant digits instead of being estimated from a random sample.
+ * <p>
+ * Snapshots cover the previous window plus the current, partial one, so a value stops influencing the
+ * percentiles one to two windows after it was recorded. Windows follow the clock rather than the reads: the
+ * first update or snapshot after a window ended moves the recorded values into the previous window, or drops
+ * them when that window ended too, so an update only takes the lock once per window.
+ */
+public class HdrHistogramReservoir implements Reservoir {
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final long windowNanos;
+
+    // guarded by this, windowStart is read without the lock to tell when the window ended
+    private Histogram interval;
+    private Histogram current = new Histogram(SIGNIFICANT_DIGITS);
+    private Histogram previous = new Histogram(SIGNIFICANT_DIGITS);
+    private volatile long windowStart = System.nanoTime();
+
+    public HdrHistogramReservoir(long window, TimeUnit unit) {
+        this.windowNanos = unit.toNanos(window);
+    }
+
+    @Override
+    public int size() {
+        return getSnapshot().size();
+    }
+
+    @Override
+    public void update(long value) {
+        // rotated before recording, so the value is not counted in the window that ended
+        long now = System.nanoTime();
+        if (now - windowStart >= windowNanos)
+            rotate(now);
+        recorder.recordValue(Math.max(value, 0));
+    }
+
+    @Override
+    public synchronized Snapshot getSnapshot() {
+        rotate(System.nanoTime());
+        Histogram snapshot = previous.copy();
+        snapshot.add(current);
+        return new HdrHistogramSnapshot(snapshot);
+    }
+
+    private synchronized void rotate(long now) {
+        interval = recorder.getIntervalHistogram(interval);
+        current.add(interval);
+        long windows = (now - windowStart) / windowNanos;
+        if (windows == 0)
+            return;
+        // every value of the current window was recorded before it ended, as the first update after it rotates
+        if (windows == 1) {
+            Histogram recycled = previous;
+            previous = current;
+            current = recycled;
+        } else {
+            previous.reset();
+        }
+        current.reset();
+        windowStart += windows * windowNanos;
+    }
+}
@@ -0,0 +1,65 @@
+package be.foreseegroup.micro.resourceservice.contract.model;
+
+/**
+ * Outcome of one {@link BulkOperation}, {@link #index} is its position in the request. The status
+ * follows the single item endpoints: 200 updated, 201 created, 204 deleted, 400 invalid or unknown
+ * id, 500 rejected by the database.
+ */
+public class BulkItemResult {
+    private int index;
+    private String op;
+    private String id;
+    private int status;
+    private String error;
+
+    public BulkItemResult() {
+    }
+
+    public BulkItemResult(int index, String op, String id, int status, String error) {
+        this.index = index;
+        this.op = op;
+        this.id = id;
+        this.status = status;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,47 @@
+package be.foreseegroup.micro.resourceservice.contract.model;
+
+/**
+ * One entry of a bulk request: an {@code upsert} of {@link #contract}, inserted when it has no id,
+ * or a {@code delete} of the contract with {@link #id}.
+ */
+public class BulkOperation {
+    public static final String UPSERT = "upsert";
+    public static final String DELETE = "delete";
+
+    private String op;
+    private String id;
+    private Contract contract;
+
+    public BulkOperation() {
+    }
+
+    public BulkOperation(String op, String id, Contract contract) {
+        this.op = op;
+        this.id = id;
+        this.contract = contract;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Contract getContract() {
+        return contract;
+    }
+
+    public void setContract(Contract contract) {
+        this.contract = contract;
+    }
+}
@@ -0,0 +1,52 @@
+package be.foreseegroup.micro.resourceservice.contract.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of a bulk request with the result of every operation in request order.
+ */
+public class BulkReport {
+    private int created;
+    private int updated;
+    private int deleted;
+    private int failed;
+    private List<BulkItemResult> items = new ArrayList<>();
+
+    public void add(BulkItemResult item) {
+        switch (item.getStatus()) {
+            case 200:
+                updated++;
+                break;
+            case 201:
+                created++;
+                break;
+            case 204:
+                deleted++;
+                break;
+            default:
+                failed++;
+        }
+        items.add(item);
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public List<BulkItemResult> getItems() {
+        return items;
+    }
+}
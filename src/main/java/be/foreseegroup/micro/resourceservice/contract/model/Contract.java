@@ -1,28 +1,51 @@
 package be.foreseegroup.micro.resourceservice.contract.model;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
 
 /**
  * Created by Kaj on 24/09/15.
  */
+@Document(collection = "contract")
+@CompoundIndexes({
+        // leading key serves the plain consultantId/unitId lookups, the trailing keys let
+        // the ref queries be answered from the index alone
+        @CompoundIndex(name = Contract.CONSULTANT_START_INDEX, def = "{'consultantId': 1, 'startDate': 1, '_id': 1}"),
+        @CompoundIndex(name = Contract.UNIT_START_INDEX, def = "{'unitId': 1, 'startDate': 1, '_id': 1}"),
+        // range queries on the end date (active on a day, expiring before a day)
+        @CompoundIndex(name = Contract.END_START_INDEX, def = "{'endDate': 1, 'startDate': 1}")
+})
 public class Contract {
+    public static final String CONSULTANT_START_INDEX = "consultant_start";
+    public static final String UNIT_START_INDEX = "unit_start";
+    public static final String END_START_INDEX = "end_start";
+
     @Id
     private String id;
 
     private String unitId;
     private String consultantId;
 
-    private String startDate;
-    private String endDate;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = ContractDates.PATTERN, timezone = ContractDates.TIME_ZONE)
+    private Date startDate;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = ContractDates.PATTERN, timezone = ContractDates.TIME_ZONE)
+    private Date endDate;
 
     private String type;
 
+    @Version
+    private Long version;
+
     public Contract() {
     }
 
-    public Contract(String unitId, String consultantId, String startDate, String endDate, String type) {
+    public Contract(String unitId, String consultantId, Date startDate, Date endDate, String type) {
         this.unitId = unitId;
         this.consultantId = consultantId;
         this.startDate = startDate;
@@ -30,7 +53,7 @@ public class Contract {
         this.type = type;
     }
 
-    public Contract(String id, String unitId, String consultantId, String startDate, String endDate, String type) {
+    public Contract(String id, String unitId, String consultantId, Date startDate, Date endDate, String type) {
         this.id = id;
         this.unitId = unitId;
         this.consultantId = consultantId;
@@ -63,19 +86,19 @@ public class Contract {
         this.consultantId = consultantId;
     }
 
-    public String getStartDate() {
+    public Date getStartDate() {
         return startDate;
     }
 
-    public void setStartDate(String startDate) {
+    public void setStartDate(Date startDate) {
         this.startDate = startDate;
     }
 
-    public String getEndDate() {
+    public Date getEndDate() {
         return endDate;
     }
 
-    public void setEndDate(String endDate) {
+    public void setEndDate(Date endDate) {
         this.endDate = endDate;
     }
 
@@ -86,4 +109,12 @@ public class Contract {
     public void setType(String type) {
         this.type = type;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,54 @@
+package be.foreseegroup.micro.resourceservice.contract.model;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Contract counts of one unit or consultant, in total and per contract type. Contracts without a type
+ * are counted under the empty string.
+ */
+public class ContractAggregate {
+    private String key;
+    private long total;
+    private Map<String, Long> byType = new TreeMap<>();
+
+    public ContractAggregate() {
+    }
+
+    public ContractAggregate(String key) {
+        this.key = key;
+    }
+
+    public void add(String type, long count) {
+        if (count <= 0)
+            return;
+        String typeKey = type == null ? "" : type;
+        Long current = byType.get(typeKey);
+        byType.put(typeKey, current == null ? count : current + count);
+        total += count;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public Map<String, Long> getByType() {
+        return byType;
+    }
+
+    public void setByType(Map<String, Long> byType) {
+        this.byType = byType;
+    }
+}
@@ -0,0 +1,91 @@
+package be.foreseegroup.micro.resourceservice.contract.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * One entry of the contract change log. Sequence numbers are assigned in increasing order across all
+ * instances; {@link #contract} holds the state after the change, or the last known state for a delete.
+ * {@link #version} is the version of that state, changes of one contract are ordered by it rather than by
+ * their sequence numbers; a delete carries the version it removed and comes after the change of that version.
+ */
+@Document(collection = "contract_change")
+public class ContractChange {
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+
+    @Id
+    private long sequence;
+    private String type;
+    private String contractId;
+    private Long version;
+    private Contract contract;
+    @Indexed
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSX", timezone = ContractDates.TIME_ZONE)
+    private Date timestamp;
+
+    public ContractChange() {
+    }
+
+    public ContractChange(long sequence, String type, String contractId, Contract contract, Date timestamp) {
+        this.sequence = sequence;
+        this.type = type;
+        this.contractId = contractId;
+        this.version = contract == null ? null : contract.getVersion();
+        this.contract = contract;
+        this.timestamp = timestamp;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getContractId() {
+        return contractId;
+    }
+
+    public void setContractId(String contractId) {
+        this.contractId = contractId;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Contract getContract() {
+        return contract;
+    }
+
+    public void setContract(Contract contract) {
+        this.contract = contract;
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Date timestamp) {
+        this.timestamp = timestamp;
+    }
+}
@@ -0,0 +1,96 @@
+package be.foreseegroup.micro.resourceservice.contract.model;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Objects;
+
+/**
+ * Number of contracts of one type for one unit or consultant, kept up to date on every write so
+ * aggregates can be read without scanning the contracts. The id is a {@code {dimension, key, type}}
+ * subdocument, so no unit, consultant or type, whatever characters it holds, shares a counter with another.
+ */
+@Document(collection = "contract_counter")
+@CompoundIndex(name = "dimension_key", def = "{'dimension': 1, 'key': 1}")
+public class ContractCounter {
+    public static final String UNIT = "unit";
+    public static final String CONSULTANT = "consultant";
+
+    @Id
+    private CounterId id;
+    private String dimension;
+    private String key;
+    private String type;
+    private long count;
+
+    public ContractCounter() {
+    }
+
+    public ContractCounter(String dimension, String key, String type, long count) {
+        this.id = new CounterId(dimension, key, type);
+        this.dimension = dimension;
+        this.key = key;
+        this.type = type;
+        this.count = count;
+    }
+
+    public CounterId getId() {
+        return id;
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Id of a counter, stored as a subdocument with the fields in this order.
+     */
+    public static class CounterId {
+        private String dimension;
+        private String key;
+        private String type;
+
+        public CounterId() {
+        }
+
+        public CounterId(String dimension, String key, String type) {
+            this.dimension = dimension;
+            this.key = key;
+            this.type = type;
+        }
+
+        public DBObject toDBObject() {
+            return new BasicDBObject("dimension", dimension).append("key", key).append("type", type);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof CounterId))
+                return false;
+            CounterId other = (CounterId) o;
+            return Objects.equals(dimension, other.dimension) && Objects.equals(key, other.key) && Objects.equals(type, other.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dimension, key, type);
+        }
+    }
+}
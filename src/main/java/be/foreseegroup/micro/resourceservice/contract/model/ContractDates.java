@@ -0,0 +1,41 @@
+package be.foreseegroup.micro.resourceservice.contract.model;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Wire format of the contract start and end dates. Dates are calendar days, stored as UTC midnight.
+ */
+public final class ContractDates {
+    public static final String PATTERN = "yyyy-MM-dd";
+    public static final String TIME_ZONE = "UTC";
+
+    private ContractDates() {
+    }
+
+    /**
+     * Parses a {@link #PATTERN} formatted day, or returns {@code null} when the value is not a valid day or holds
+     * anything after it.
+     */
+    public static Date parse(String value) {
+        if (value == null)
+            return null;
+        ParsePosition position = new ParsePosition(0);
+        Date date = newFormat().parse(value, position);
+        return position.getIndex() == value.length() ? date : null;
+    }
+
+    public static String format(Date date) {
+        return date == null ? null : newFormat().format(date);
+    }
+
+    private static SimpleDateFormat newFormat() {
+        // SimpleDateFormat is not thread safe, so every call gets its own instance
+        SimpleDateFormat format = new SimpleDateFormat(PATTERN);
+        format.setTimeZone(TimeZone.getTimeZone(TIME_ZONE));
+        format.setLenient(false);
+        return format;
+    }
+}
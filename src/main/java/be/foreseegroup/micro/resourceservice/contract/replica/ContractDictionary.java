@@ -0,0 +1,55 @@
+package be.foreseegroup.micro.resourceservice.contract.replica;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense int codes for the values of one column, assigned in order of first appearance. Every distinct value
+ * is stored once, however many contracts share it. Codes are never reused, a value that no contract uses
+ * any more keeps its code. Not thread-safe.
+ */
+final class ContractDictionary {
+    static final int NONE = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private long characters;
+
+    int encode(String value) {
+        if (value == null)
+            return NONE;
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            values.add(value);
+            codes.put(value, code);
+            characters += value.length();
+        }
+        return code;
+    }
+
+    /**
+     * @return the code of the value, or {@link #NONE} when no contract ever had it
+     */
+    int find(String value) {
+        Integer code = value == null ? null : codes.get(value);
+        return code == null ? NONE : code;
+    }
+
+    String decode(int code) {
+        return code == NONE ? null : values.get(code);
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    /**
+     * Rough heap usage: the strings, their map entries and boxed codes, and the list slot.
+     */
+    long estimatedBytes() {
+        return values.size() * (40L + 48 + 16 + 4) + characters * 2;
+    }
+}
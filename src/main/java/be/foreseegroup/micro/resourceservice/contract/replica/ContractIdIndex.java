@@ -0,0 +1,86 @@
+package be.foreseegroup.micro.resourceservice.contract.replica;
+
+/**
+ * Open addressing map from contract id to row, with linear probing and backward shift deletion, so lookups
+ * never box and never leave tombstones behind. Not thread-safe.
+ */
+final class ContractIdIndex {
+    static final int MISSING = -1;
+
+    private String[] keys = new String[16];
+    private int[] rows = new int[16];
+    private int size;
+
+    int get(String id) {
+        int mask = keys.length - 1;
+        for (int slot = home(id, mask); keys[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot].equals(id))
+                return rows[slot];
+        }
+        return MISSING;
+    }
+
+    void put(String id, int row) {
+        if ((size + 1) * 4 > keys.length * 3)
+            resize(keys.length * 2);
+        int mask = keys.length - 1;
+        int slot = home(id, mask);
+        while (keys[slot] != null) {
+            if (keys[slot].equals(id)) {
+                rows[slot] = row;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = id;
+        rows[slot] = row;
+        size++;
+    }
+
+    void remove(String id) {
+        int mask = keys.length - 1;
+        int slot = home(id, mask);
+        while (keys[slot] != null && !keys[slot].equals(id)) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == null)
+            return;
+        keys[slot] = null;
+        size--;
+        // move later entries of the probe sequence back into the hole, lookups stop at the first empty slot
+        for (int next = (slot + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+            int home = home(keys[next], mask);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                rows[slot] = rows[next];
+                keys[next] = null;
+                slot = next;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long estimatedBytes() {
+        return 32 + keys.length * 8L;
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldRows = rows;
+        keys = new String[capacity];
+        rows = new int[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null)
+                put(oldKeys[i], oldRows[i]);
+        }
+    }
+
+    private static int home(String id, int mask) {
+        int hash = id.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
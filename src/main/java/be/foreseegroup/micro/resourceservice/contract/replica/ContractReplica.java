@@ -0,0 +1,143 @@
+package be.foreseegroup.micro.resourceservice.contract.replica;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractCursor;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Full in-memory copy of the contract collection in a {@link ContractTable}, serving the id, consultant and
+ * unit lookups of the {@link be.foreseegroup.micro.resourceservice.contract.cache.ContractCache} once loaded.
+ * <p>
+ * The copy is loaded at startup and follows the {@link ContractChangedEvent}s of this instance. Writes of other
+ * instances arrive as coherence invalidations, whose contracts are read again from Mongo. A contract that is
+ * written while the copy loads is kept at its latest version, a contract deleted meanwhile is not loaded.
+ * <p>
+ * Events of concurrent writes can arrive out of order. The table refuses a contract it holds a later version of,
+ * or removed at its version or later; such a contract is read again from Mongo, so a late event cannot bring back
+ * a deleted contract, while a contract created again under the id of a deleted one still shows up.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contract.replica", name = "enabled")
+public class ContractReplica implements ApplicationListener<ContractChangedEvent>, PublicMetrics {
+    private static final Logger LOG = LoggerFactory.getLogger(ContractReplica.class);
+
+    @Autowired
+    ContractRepository repo;
+
+    @Autowired
+    ContractProperties properties;
+
+    private final ContractTable table = new ContractTable();
+    private final Set<String> deletedWhileLoading = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean loading;
+    private volatile boolean loaded;
+
+    @PostConstruct
+    public void load() {
+        long start = System.currentTimeMillis();
+        loading = true;
+        try (ContractCursor cursor = repo.streamAll(properties.getPaging().getCursorBatchSize())) {
+            while (cursor.hasNext()) {
+                Contract contract = cursor.next();
+                if (!deletedWhileLoading.contains(contract.getId()))
+                    table.putRead(contract, table.removal(contract.getId()));
+            }
+        } finally {
+            loading = false;
+            deletedWhileLoading.clear();
+        }
+        loaded = true;
+        LOG.info("Loaded {} contracts in {} ms, about {} KB", table.size(), System.currentTimeMillis() - start,
+                table.estimatedBytes() / 1024);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public Contract findOne(String id) {
+        return table.findOne(id);
+    }
+
+    public List<Contract> findByConsultantId(String consultantId) {
+        return table.findByConsultantId(consultantId);
+    }
+
+    public List<Contract> findByUnitId(String unitId) {
+        return table.findByUnitId(unitId);
+    }
+
+    @Override
+    public void onApplicationEvent(ContractChangedEvent event) {
+        if (event.getAfter() != null) {
+            if (!table.put(event.getAfter()))
+                reread(event.getContractId());
+            return;
+        }
+        if (loading)
+            deletedWhileLoading.add(event.getContractId());
+        table.remove(event.getContractId());
+    }
+
+    /**
+     * Reads the contracts written by another instance again.
+     */
+    public void refresh(Collection<String> ids) {
+        if (ids.isEmpty())
+            return;
+        Map<String, Tombstones.Removal> removals = new HashMap<>();
+        for (String id : ids) {
+            removals.put(id, table.removal(id));
+        }
+        Set<String> missing = new HashSet<>(ids);
+        for (Contract contract : repo.findAll(ids)) {
+            missing.remove(contract.getId());
+            table.putRead(contract, removals.get(contract.getId()));
+        }
+        for (String id : missing) {
+            if (loading)
+                deletedWhileLoading.add(id);
+            table.remove(id);
+        }
+    }
+
+    /**
+     * Applies the state in Mongo of a contract whose event the table refused, unless the contract is removed
+     * meanwhile.
+     */
+    private void reread(String id) {
+        Tombstones.Removal removal = table.removal(id);
+        Contract contract = repo.findOne(id);
+        if (contract != null)
+            table.putRead(contract, removal);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("replica.contracts", table.size()));
+        metrics.add(new Metric<>("replica.bytes", table.estimatedBytes()));
+        return metrics;
+    }
+}
@@ -0,0 +1,61 @@
+package be.foreseegroup.micro.resourceservice.contract.replica;
+
+import java.util.Arrays;
+
+/**
+ * Rows by dictionary code. Codes are dense, so the index is an array of row lists indexed by code rather than
+ * a map, without any boxing. Rows of a code keep the order in which they were added. Not thread-safe.
+ */
+final class ContractRowIndex {
+    private static final int[] EMPTY = new int[0];
+
+    private int[][] rows = new int[16][];
+    private int[] sizes = new int[16];
+    private long entries;
+
+    void add(int code, int row) {
+        if (code == ContractDictionary.NONE)
+            return;
+        if (code >= rows.length) {
+            int capacity = Math.max(rows.length * 2, code + 1);
+            rows = Arrays.copyOf(rows, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+        int[] list = rows[code];
+        if (list == null)
+            list = rows[code] = new int[2];
+        else if (sizes[code] == list.length)
+            list = rows[code] = Arrays.copyOf(list, list.length * 2);
+        list[sizes[code]++] = row;
+        entries++;
+    }
+
+    void remove(int code, int row) {
+        if (code == ContractDictionary.NONE || code >= rows.length || rows[code] == null)
+            return;
+        int[] list = rows[code];
+        for (int i = 0; i < sizes[code]; i++) {
+            if (list[i] == row) {
+                System.arraycopy(list, i + 1, list, i, sizes[code] - i - 1);
+                sizes[code]--;
+                entries--;
+                return;
+            }
+        }
+    }
+
+    int[] rows(int code) {
+        if (code == ContractDictionary.NONE || code >= rows.length || rows[code] == null)
+            return EMPTY;
+        return Arrays.copyOf(rows[code], sizes[code]);
+    }
+
+    long estimatedBytes() {
+        long bytes = 16 + rows.length * 8L;
+        for (int[] list : rows) {
+            if (list != null)
+                bytes += 16 + list.length * 4L;
+        }
+        return bytes;
+    }
+}
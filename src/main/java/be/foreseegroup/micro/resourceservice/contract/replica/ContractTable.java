@@ -0,0 +1,233 @@
+package be.foreseegroup.micro.resourceservice.contract.replica;
+
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import com.google.common.collect.ImmutableList;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compact in-memory copy of the contracts. Instead of one {@link Contract} per document, every field is a
+ * column: primitive arrays holding the dates as epoch millis and the unit, consultant and type as codes of a
+ * {@link ContractDictionary}, so each distinct value is stored once. Secondary indexes by consultant and
+ * unit are {@link ContractRowIndex}es on those codes, the id index is a {@link ContractIdIndex}. Rows freed
+ * by a removal are reused.
+ * <p>
+ * A removal leaves a tombstone in {@link Tombstones}, so an event of an earlier write that arrives after the removal
+ * cannot bring the contract back.
+ * <p>
+ * Reads share a lock and build a new {@link Contract} per result, writes take the lock exclusively.
+ */
+public class ContractTable {
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final long NO_VERSION = Long.MIN_VALUE;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ContractDictionary units = new ContractDictionary();
+    private final ContractDictionary consultants = new ContractDictionary();
+    private final ContractDictionary types = new ContractDictionary();
+    private final ContractIdIndex byId = new ContractIdIndex();
+    private final ContractRowIndex byUnit = new ContractRowIndex();
+    private final ContractRowIndex byConsultant = new ContractRowIndex();
+
+    private String[] ids = new String[16];
+    private int[] unitCodes = new int[16];
+    private int[] consultantCodes = new int[16];
+    private int[] typeCodes = new int[16];
+    private long[] startDates = new long[16];
+    private long[] endDates = new long[16];
+    private long[] versions = new long[16];
+    private int rows;
+    private int[] freeRows = new int[16];
+    private int freeCount;
+    private long idCharacters;
+    private final Tombstones tombstones = new Tombstones();
+
+    /**
+     * Stores the contract, unless a later version of it is stored already or it was removed at this version or a
+     * later one. Contracts without a version always replace the stored one, but never a removed one.
+     *
+     * @return true when the contract was stored
+     */
+    public boolean put(Contract contract) {
+        lock.writeLock().lock();
+        try {
+            if (!tombstones.admit(contract.getId(), contract.getVersion()))
+                return false;
+            return store(contract);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stores a contract read from Mongo, which is authoritative even when {@link #put(Contract)} refused an event
+     * of it, unless the contract was removed again after {@code removal} was taken with {@link #removal(String)}.
+     *
+     * @return true when the contract was stored
+     */
+    public boolean putRead(Contract contract, Tombstones.Removal removal) {
+        lock.writeLock().lock();
+        try {
+            if (!tombstones.admitRead(contract.getId(), removal))
+                return false;
+            return store(contract);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the latest removal of the contract, to pass to {@link #putRead(Contract, Tombstones.Removal)}, or null
+     */
+    public Tombstones.Removal removal(String id) {
+        lock.readLock().lock();
+        try {
+            return tombstones.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean store(Contract contract) {
+        int row = byId.get(contract.getId());
+        long version = contract.getVersion() == null ? NO_VERSION : contract.getVersion();
+        if (row == ContractIdIndex.MISSING) {
+            row = allocate();
+            ids[row] = contract.getId();
+            idCharacters += contract.getId().length();
+            byId.put(contract.getId(), row);
+        } else {
+            if (version != NO_VERSION && versions[row] != NO_VERSION && version < versions[row])
+                return false;
+            byUnit.remove(unitCodes[row], row);
+            byConsultant.remove(consultantCodes[row], row);
+        }
+        unitCodes[row] = units.encode(contract.getUnitId());
+        consultantCodes[row] = consultants.encode(contract.getConsultantId());
+        typeCodes[row] = types.encode(contract.getType());
+        startDates[row] = millis(contract.getStartDate());
+        endDates[row] = millis(contract.getEndDate());
+        versions[row] = version;
+        byUnit.add(unitCodes[row], row);
+        byConsultant.add(consultantCodes[row], row);
+        return true;
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            int row = byId.get(id);
+            tombstones.remove(id, row == ContractIdIndex.MISSING || versions[row] == NO_VERSION ? null : versions[row]);
+            if (row == ContractIdIndex.MISSING)
+                return;
+            byId.remove(id);
+            byUnit.remove(unitCodes[row], row);
+            byConsultant.remove(consultantCodes[row], row);
+            idCharacters -= id.length();
+            ids[row] = null;
+            if (freeCount == freeRows.length)
+                freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+            freeRows[freeCount++] = row;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Contract findOne(String id) {
+        lock.readLock().lock();
+        try {
+            int row = byId.get(id);
+            return row == ContractIdIndex.MISSING ? null : contract(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Contract> findByConsultantId(String consultantId) {
+        lock.readLock().lock();
+        try {
+            return contracts(byConsultant.rows(consultants.find(consultantId)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Contract> findByUnitId(String unitId) {
+        lock.readLock().lock();
+        try {
+            return contracts(byUnit.rows(units.find(unitId)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rough heap usage of the table, for comparison with the about 300 bytes of a {@link Contract} read from
+     * Mongo with its own strings and dates.
+     */
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            long columns = ids.length * (8L + 4 * 3 + 8 * 3) + freeRows.length * 4L;
+            long idStrings = byId.size() * 40L + idCharacters * 2;
+            long removed = tombstones.size() * 160L;
+            return columns + idStrings + removed + byId.estimatedBytes() + byUnit.estimatedBytes() + byConsultant.estimatedBytes()
+                    + units.estimatedBytes() + consultants.estimatedBytes() + types.estimatedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int allocate() {
+        if (freeCount > 0)
+            return freeRows[--freeCount];
+        if (rows == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            unitCodes = Arrays.copyOf(unitCodes, capacity);
+            consultantCodes = Arrays.copyOf(consultantCodes, capacity);
+            typeCodes = Arrays.copyOf(typeCodes, capacity);
+            startDates = Arrays.copyOf(startDates, capacity);
+            endDates = Arrays.copyOf(endDates, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+        }
+        return rows++;
+    }
+
+    private List<Contract> contracts(int[] rows) {
+        ImmutableList.Builder<Contract> contracts = ImmutableList.builder();
+        for (int row : rows) {
+            contracts.add(contract(row));
+        }
+        return contracts.build();
+    }
+
+    private Contract contract(int row) {
+        Contract contract = new Contract(ids[row], units.decode(unitCodes[row]), consultants.decode(consultantCodes[row]),
+                date(startDates[row]), date(endDates[row]), types.decode(typeCodes[row]));
+        contract.setVersion(versions[row] == NO_VERSION ? null : versions[row]);
+        return contract;
+    }
+
+    private static long millis(Date date) {
+        return date == null ? NO_DATE : date.getTime();
+    }
+
+    private static Date date(long millis) {
+        return millis == NO_DATE ? null : new Date(millis);
+    }
+}
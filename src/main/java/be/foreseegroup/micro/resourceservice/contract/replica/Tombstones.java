@@ -0,0 +1,92 @@
+package be.foreseegroup.micro.resourceservice.contract.replica;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Removed versions of contracts, for in-memory copies maintained from events that can arrive out of order: an event
+ * of an earlier write that arrives after the removal must not bring the contract back. Every removal leaves a new
+ * {@link Removal}, so a contract read from Mongo after {@link #get(String)} can be refused when it was removed again
+ * meanwhile. Only the most recent {@value #CAPACITY} removals are kept, events are late by milliseconds rather than
+ * by thousands of removals.
+ * <p>
+ * Not thread safe, the owner guards it with its own lock.
+ */
+public class Tombstones {
+    public static final int CAPACITY = 10000;
+
+    // in removal order
+    private final Map<String, Removal> removals = new LinkedHashMap<String, Removal>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Removal> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    /**
+     * Records the removal of the contract.
+     *
+     * @param version the removed version, or null when it is not known, which refuses every later event
+     */
+    public Removal remove(String id, Long version) {
+        Removal removal = new Removal(version == null ? Long.MAX_VALUE : version);
+        // removed first so the tombstone moves to the end of the removal order
+        removals.remove(id);
+        removals.put(id, removal);
+        return removal;
+    }
+
+    /**
+     * @return the latest removal of the contract, or null
+     */
+    public Removal get(String id) {
+        return removals.get(id);
+    }
+
+    /**
+     * Tells whether an event of the contract may be applied: when it was not removed, or removed at an earlier
+     * version. Contracts without a version never replace a removed one. An admitted contract loses its tombstone.
+     */
+    public boolean admit(String id, Long version) {
+        Removal removal = removals.get(id);
+        if (removal == null)
+            return true;
+        if (version == null || version <= removal.getVersion())
+            return false;
+        removals.remove(id);
+        return true;
+    }
+
+    /**
+     * Tells whether a contract read from Mongo, which is authoritative, may be applied: when it was not removed again
+     * since {@code removal} was taken with {@link #get(String)}. An admitted contract loses its tombstone.
+     */
+    public boolean admitRead(String id, Removal removal) {
+        if (removals.get(id) != removal)
+            return false;
+        removals.remove(id);
+        return true;
+    }
+
+    public int size() {
+        return removals.size();
+    }
+
+    /**
+     * One removal of a contract. Removals are told apart by identity, two removals of the same version are distinct.
+     */
+    public static final class Removal {
+        private final long version;
+
+        private Removal(long version) {
+            this.version = version;
+        }
+
+        /**
+         * @return the removed version, Long.MAX_VALUE when it was not known
+         */
+        public long getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import be.foreseegroup.micro.resourceservice.contract.model.BulkItemResult;
+import be.foreseegroup.micro.resourceservice.contract.model.BulkOperation;
+import be.foreseegroup.micro.resourceservice.contract.model.BulkReport;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies a JSON array of {@link BulkOperation}s while it is being parsed. Operations are sent to
+ * Mongo as unordered bulk writes of {@code contract.bulk.chunkSize} operations, so only one chunk
+ * is held in memory. Before each chunk the current state of the touched contracts is fetched with
+ * one {@code $in} query, so a {@link ContractChangedEvent} with the exact before state can be
+ * published for every applied operation. An operation on a contract an earlier operation of the same
+ * request touched is rejected with 400, as its before state would not be known; only the ids of the
+ * request are kept for that, not the operations.
+ */
+@Component
+public class ContractBulkWriter {
+    private static final String DUPLICATE = "Contract is already written by an earlier operation of the request";
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    ObjectMapper mapper;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    ContractProperties properties;
+
+    @Autowired
+    ContractEventBatch eventBatch;
+
+    /**
+     * Parses and applies the operations. Throws {@link com.fasterxml.jackson.core.JsonProcessingException}
+     * when the body is not a JSON array of operations; chunks applied before the malformed part stay applied.
+     */
+    public BulkReport apply(InputStream body) throws IOException {
+        int chunkSize = properties.getBulk().getChunkSize();
+        BulkReport report = new BulkReport();
+        Set<String> touched = new HashSet<>();
+        List<BulkOperation> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY)
+                throw new JsonParseException("Expected an array of operations", parser.getCurrentLocation());
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                chunk.add(mapper.readValue(parser, BulkOperation.class));
+                if (chunk.size() == chunkSize) {
+                    applyChunk(chunk, index, touched, report);
+                    index += chunk.size();
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty())
+            applyChunk(chunk, index, touched, report);
+        return report;
+    }
+
+    private void applyChunk(List<BulkOperation> chunk, int offset, Set<String> touched, final BulkReport report) {
+        DBCollection collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Contract.class));
+        final Map<String, Contract> current = findCurrent(chunk);
+
+        final BulkItemResult[] results = new BulkItemResult[chunk.size()];
+        final Contract[] afterStates = new Contract[chunk.size()];
+        // position in the chunk of every operation that was added to the bulk write, by bulk index
+        int[] sentOperations = new int[chunk.size()];
+        int sent = 0;
+        BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+        for (int i = 0; i < chunk.size(); i++) {
+            BulkOperation operation = chunk.get(i);
+            int index = offset + i;
+            if (BulkOperation.UPSERT.equals(operation.getOp())) {
+                Contract contract = operation.getContract();
+                if (contract == null) {
+                    results[i] = new BulkItemResult(index, operation.getOp(), operation.getId(), 400, "An upsert requires a contract");
+                    continue;
+                }
+                String id = contract.getId() != null ? contract.getId() : operation.getId();
+                if (id == null) {
+                    contract.setId(new ObjectId().toString());
+                    contract.setVersion(0L);
+                    DBObject document = new BasicDBObject();
+                    mongoTemplate.getConverter().write(contract, document);
+                    bulk.insert(document);
+                    results[i] = new BulkItemResult(index, operation.getOp(), contract.getId(), 201, null);
+                } else if (!touched.add(id)) {
+                    results[i] = new BulkItemResult(index, operation.getOp(), id, 400, DUPLICATE);
+                    continue;
+                } else {
+                    contract.setId(id);
+                    Contract before = current.get(id);
+                    contract.setVersion(before == null ? 1 : ContractEtags.versionOf(before) + 1);
+                    bulk.find(byId(id)).upsert().updateOne(fieldsUpdate(contract));
+                    results[i] = new BulkItemResult(index, operation.getOp(), id, before == null ? 201 : 200, null);
+                }
+                afterStates[i] = contract;
+            } else if (BulkOperation.DELETE.equals(operation.getOp())) {
+                String id = operation.getId();
+                if (id != null && !touched.add(id)) {
+                    results[i] = new BulkItemResult(index, operation.getOp(), id, 400, DUPLICATE);
+                    continue;
+                }
+                if (id == null || !current.containsKey(id)) {
+                    results[i] = new BulkItemResult(index, operation.getOp(), id, 400, "Unknown contract id");
+                    continue;
+                }
+                bulk.find(byId(id)).removeOne();
+                results[i] = new BulkItemResult(index, operation.getOp(), id, 204, null);
+            } else {
+                results[i] = new BulkItemResult(index, operation.getOp(), operation.getId(), 400, "Unknown operation, expected upsert or delete");
+                continue;
+            }
+            sentOperations[sent++] = i;
+        }
+
+        if (sent > 0) {
+            try {
+                bulk.execute();
+            } catch (BulkWriteException e) {
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    BulkItemResult result = results[sentOperations[error.getIndex()]];
+                    result.setStatus(500);
+                    result.setError(error.getMessage());
+                }
+            }
+        }
+
+        // the counters and the change log of the whole chunk are written in one go
+        eventBatch.run(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < results.length; i++) {
+                    BulkItemResult result = results[i];
+                    report.add(result);
+                    if (result.getStatus() < 300)
+                        eventPublisher.publishEvent(new ContractChangedEvent(ContractBulkWriter.this, current.get(result.getId()), afterStates[i]));
+                }
+            }
+        });
+    }
+
+    private Map<String, Contract> findCurrent(List<BulkOperation> chunk) {
+        Set<String> ids = new HashSet<>();
+        for (BulkOperation operation : chunk) {
+            if (operation.getId() != null)
+                ids.add(operation.getId());
+            if (operation.getContract() != null && operation.getContract().getId() != null)
+                ids.add(operation.getContract().getId());
+        }
+        Map<String, Contract> current = new HashMap<>();
+        if (ids.isEmpty())
+            return current;
+        for (Contract contract : mongoTemplate.find(Query.query(Criteria.where("id").in(ids)), Contract.class)) {
+            current.put(contract.getId(), contract);
+        }
+        return current;
+    }
+
+    private static DBObject byId(String id) {
+        // same id mapping as Spring Data: valid hex strings are stored as ObjectIds
+        return new BasicDBObject("_id", ObjectId.isValid(id) ? new ObjectId(id) : id);
+    }
+
+    private static DBObject fieldsUpdate(Contract contract) {
+        BasicDBObject set = new BasicDBObject();
+        BasicDBObject unset = new BasicDBObject();
+        setOrUnset(set, unset, "unitId", contract.getUnitId());
+        setOrUnset(set, unset, "consultantId", contract.getConsultantId());
+        setOrUnset(set, unset, "startDate", contract.getStartDate());
+        setOrUnset(set, unset, "endDate", contract.getEndDate());
+        setOrUnset(set, unset, "type", contract.getType());
+        BasicDBObject update = new BasicDBObject("$inc", new BasicDBObject("version", 1));
+        if (!set.isEmpty())
+            update.append("$set", set);
+        if (!unset.isEmpty())
+            update.append("$unset", unset);
+        return update;
+    }
+
+    private static void setOrUnset(BasicDBObject set, BasicDBObject unset, String key, Object value) {
+        if (value == null)
+            unset.append(key, "");
+        else
+            set.append(key, value);
+    }
+}
@@ -0,0 +1,40 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import com.mongodb.DBCursor;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily maps the documents of an open Mongo cursor to {@link Contract}s, one batch at a time.
+ * Only the current batch is held in memory; the cursor must be closed once the caller is done.
+ */
+public class ContractCursor implements Iterator<Contract>, Closeable {
+    private final DBCursor cursor;
+    private final MongoConverter converter;
+
+    public ContractCursor(DBCursor cursor, MongoConverter converter) {
+        this.cursor = cursor;
+        this.converter = converter;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor.hasNext();
+    }
+
+    @Override
+    public Contract next() {
+        if (!cursor.hasNext())
+            throw new NoSuchElementException();
+        return converter.read(Contract.class, cursor.next());
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+}
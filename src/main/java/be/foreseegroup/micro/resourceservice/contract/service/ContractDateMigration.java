@@ -0,0 +1,121 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractDates;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * One-off migration of contracts that still store their start and end date as free-form strings.
+ * Values in one of the known day formats are converted to dates, anything else is moved to a
+ * {@code legacyStartDate}/{@code legacyEndDate} field so it is kept for manual review without
+ * breaking the mapping of the document. The migration is idempotent and only runs when
+ * {@code contract.migration.dates} is set.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contract.migration", name = "dates", havingValue = "true")
+public class ContractDateMigration implements CommandLineRunner {
+    private static final Logger LOG = LoggerFactory.getLogger(ContractDateMigration.class);
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int BSON_STRING = 2;
+    private static final String[] LEGACY_PATTERNS = {ContractDates.PATTERN, "dd/MM/yyyy", "dd-MM-yyyy"};
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(String... args) {
+        DBCollection collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Contract.class));
+        DBObject stringDates = new BasicDBObject("$or", Arrays.asList(
+                new BasicDBObject("startDate", new BasicDBObject("$type", BSON_STRING)),
+                new BasicDBObject("endDate", new BasicDBObject("$type", BSON_STRING))));
+        DBObject fields = new BasicDBObject("startDate", 1).append("endDate", 1);
+
+        int migrated = 0;
+        int legacy = 0;
+        BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+        int pending = 0;
+        try (DBCursor cursor = collection.find(stringDates, fields).batchSize(BATCH_SIZE)) {
+            while (cursor.hasNext()) {
+                DBObject document = cursor.next();
+                BasicDBObject set = new BasicDBObject();
+                BasicDBObject unset = new BasicDBObject();
+                legacy += migrateField(document, "startDate", "legacyStartDate", set, unset);
+                legacy += migrateField(document, "endDate", "legacyEndDate", set, unset);
+
+                BasicDBObject update = new BasicDBObject();
+                if (!set.isEmpty())
+                    update.append("$set", set);
+                if (!unset.isEmpty())
+                    update.append("$unset", unset);
+                bulk.find(new BasicDBObject("_id", document.get("_id"))).updateOne(update);
+                migrated++;
+                if (++pending == BATCH_SIZE) {
+                    bulk.execute();
+                    bulk = collection.initializeUnorderedBulkOperation();
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0)
+            bulk.execute();
+        LOG.info("Contract date migration done, {} documents migrated, {} unparseable values moved to legacy fields", migrated, legacy);
+    }
+
+    /**
+     * Adds the update of one date field to {@code set}/{@code unset} and returns 1 when the
+     * value could not be parsed and was moved to the legacy field.
+     */
+    private static int migrateField(DBObject document, String field, String legacyField, BasicDBObject set, BasicDBObject unset) {
+        Object value = document.get(field);
+        if (!(value instanceof String))
+            return 0;
+        String raw = ((String) value).trim();
+        if (raw.isEmpty()) {
+            unset.append(field, "");
+            return 0;
+        }
+        Date date = parseLegacy(raw);
+        if (date != null) {
+            set.append(field, date);
+            return 0;
+        }
+        set.append(legacyField, raw);
+        unset.append(field, "");
+        return 1;
+    }
+
+    static Date parseLegacy(String raw) {
+        // ISO date-times are truncated to their day
+        if (raw.length() > 10 && raw.charAt(10) == 'T')
+            raw = raw.substring(0, 10);
+        for (String pattern : LEGACY_PATTERNS) {
+            SimpleDateFormat format = new SimpleDateFormat(pattern);
+            format.setTimeZone(TimeZone.getTimeZone(ContractDates.TIME_ZONE));
+            format.setLenient(false);
+            try {
+                return format.parse(raw);
+            } catch (ParseException e) {
+                // try the next pattern
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,88 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Entity tags for contracts and lists of contracts, derived from the ids and versions only so
+ * they are cheap to compute and a matching {@code If-None-Match} avoids serializing the body.
+ * The tags do not depend on the negotiated format, so responses carrying one vary by
+ * {@code Accept}, and a shared cache does not hand a JSON client the Smile or CBOR body.
+ */
+public final class ContractEtags {
+    private ContractEtags() {
+    }
+
+    public static String of(Contract contract) {
+        return "\"" + versionOf(contract) + "\"";
+    }
+
+    public static String of(Iterable<Contract> contracts) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (Contract contract : contracts) {
+            hasher.putString(contract.getId(), StandardCharsets.UTF_8).putLong(versionOf(contract));
+        }
+        return "W/\"" + hasher.hash() + "\"";
+    }
+
+    public static long versionOf(Contract contract) {
+        // contracts written before versioning was introduced count as version 0
+        return contract.getVersion() == null ? 0 : contract.getVersion();
+    }
+
+    /**
+     * Parses the version out of an {@code If-Match} header. Returns {@code null} for a missing
+     * header or {@code *}, throws {@link IllegalArgumentException} for a tag that is not a version.
+     */
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*"))
+            return null;
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/"))
+            tag = tag.substring(2);
+        tag = tag.replace("\"", "");
+        try {
+            return Long.valueOf(tag);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a contract version: " + ifMatch, e);
+        }
+    }
+
+    /**
+     * Returns whether one of the tags of an {@code If-None-Match} header matches {@code etag}.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null)
+            return false;
+        String opaque = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaque(tag).equals(opaque))
+                return true;
+        }
+        return false;
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * Returns the body with its entity tag, or an empty 304 when the client already has it.
+     * Both vary by {@code Accept}, as the body is encoded in the negotiated format.
+     */
+    public static <T> ResponseEntity<T> respond(T body, String etag, String ifNoneMatch) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (matches(ifNoneMatch, etag))
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+}
@@ -0,0 +1,37 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.aggregate.ContractAggregates;
+import be.foreseegroup.micro.resourceservice.contract.changes.ContractChangeLog;
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Batches the Mongo writes of the {@link ContractChangedEvent} listeners for writers that publish many events at
+ * once, such as a chunk of {@code /contracts/bulk} or a group commit: the aggregate counters are adjusted with one
+ * bulk write and the changes are logged with one insert, instead of one of each per event.
+ */
+@Component
+class ContractEventBatch {
+    @Autowired
+    ContractAggregates aggregates;
+
+    @Autowired(required = false)
+    ContractChangeLog changeLog;
+
+    /**
+     * Runs {@code publish}, which publishes the events of the batch on this thread.
+     */
+    void run(final Runnable publish) {
+        if (changeLog == null) {
+            aggregates.batch(publish);
+            return;
+        }
+        aggregates.batch(new Runnable() {
+            @Override
+            public void run() {
+                changeLog.batch(publish);
+            }
+        });
+    }
+}
@@ -0,0 +1,259 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import be.foreseegroup.micro.resourceservice.contract.metrics.ContractMetrics;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import com.google.common.util.concurrent.SettableFuture;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Group commit of the creates of {@code POST /contracts}: callers queue their contract and wait, a single
+ * writer thread takes up to {@code contract.groupCommit.batchSize} queued contracts, or what arrived within
+ * {@code windowMillis} of the first one, and inserts them with one unordered bulk write. Ids are assigned
+ * before queueing, so every caller gets its own contract, or its own failure, back.
+ * <p>
+ * The writer thread publishes the {@link ContractChangedEvent}s of the contracts it wrote, before their callers
+ * are released, and batches the Mongo writes of the listeners through {@link ContractEventBatch} like a chunk of
+ * {@code /contracts/bulk}.
+ * <p>
+ * The queue holds at most {@code queueCapacity} contracts; a create that finds no room within
+ * {@code enqueueWaitMillis}, or whose batch is not written within {@code commitTimeoutMillis}, is rejected, as
+ * are creates once the service is stopping. A create rejected after it was queued may still be written, and its
+ * event is published all the same; the contract keeps the id it was given, so a retry under that id cannot
+ * create it twice.
+ * <p>
+ * With {@link ContractMetrics} enabled, the batch sizes are recorded as
+ * {@code histogram.contract.groupCommit.flush.resultSize} and the time spent queued as
+ * {@code timer.contract.groupCommit.queueWait}; {@code groupCommit.queued} and {@code groupCommit.rejected} are
+ * exposed as well.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contract.groupCommit", name = "enabled")
+public class ContractGroupCommit implements PublicMetrics {
+    private static final Logger LOG = LoggerFactory.getLogger(ContractGroupCommit.class);
+    private static final int DUPLICATE_KEY = 11000;
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    ContractProperties properties;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    ContractEventBatch eventBatch;
+
+    @Autowired(required = false)
+    ContractMetrics metrics;
+
+    private BlockingQueue<PendingInsert> queue;
+    private final AtomicLong rejected = new AtomicLong();
+    private final MongoExceptionTranslator exceptionTranslator = new MongoExceptionTranslator();
+    private ContractMetrics.Operation flushMetrics;
+    private ContractMetrics.Operation queueWaitMetrics;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(properties.getGroupCommit().getQueueCapacity());
+        if (metrics != null) {
+            flushMetrics = metrics.operation("groupCommit.flush");
+            queueWaitMetrics = metrics.operation("groupCommit.queueWait");
+        }
+        running = true;
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeBatches();
+            }
+        }, "contract-group-commit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Flushes what is queued still.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Inserts the contract with the next batch and waits until that batch is written and its events are published.
+     * The id of the contract is assigned before it is queued, so it is known even when the insert is rejected.
+     *
+     * @return the contract with its id and version assigned
+     * @throws DuplicateKeyException when a contract with the same id exists
+     * @throws RejectedExecutionException when the group commit is stopped, the queue stayed full, the batch was not
+     *                                    written in time, or the caller was interrupted
+     */
+    public Contract insert(Contract contract) {
+        if (!running) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Group commit is stopped");
+        }
+        if (contract.getId() == null)
+            contract.setId(new ObjectId().toString());
+        contract.setVersion(0L);
+        PendingInsert insert = new PendingInsert(contract);
+        ContractProperties.GroupCommit config = properties.getGroupCommit();
+        try {
+            if (!queue.offer(insert, config.getEnqueueWaitMillis(), TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException("Group commit queue is full");
+            }
+            // also bounds the wait of an insert queued just after the writer stopped
+            return insert.result.get(config.getCommitTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the group commit", e);
+        } catch (TimeoutException e) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Group commit did not write the contract in time", e);
+        } catch (ExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private void writeBatches() {
+        ContractProperties.GroupCommit config = properties.getGroupCommit();
+        List<PendingInsert> batch = new ArrayList<>(config.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingInsert first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                long deadline = first.queued + TimeUnit.MILLISECONDS.toNanos(config.getWindowMillis());
+                while (batch.size() < config.getBatchSize()) {
+                    PendingInsert next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop() lets the writer finish on its own, nothing else interrupts it
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(final List<PendingInsert> batch) {
+        long start = System.nanoTime();
+        List<Contract> contracts = new ArrayList<>(batch.size());
+        RuntimeException[] failures = new RuntimeException[batch.size()];
+        try {
+            DBCollection collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Contract.class));
+            BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+            for (PendingInsert insert : batch) {
+                if (queueWaitMetrics != null)
+                    queueWaitMetrics.latency(start - insert.queued);
+                DBObject document = new BasicDBObject();
+                mongoTemplate.getConverter().write(insert.contract, document);
+                bulk.insert(document);
+                contracts.add(insert.contract);
+            }
+            bulk.execute();
+        } catch (BulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                failures[error.getIndex()] = error.getCode() == DUPLICATE_KEY
+                        ? new DuplicateKeyException(error.getMessage())
+                        : new DataIntegrityViolationException(error.getMessage());
+            }
+        } catch (RuntimeException e) {
+            // every caller of the batch gets the failure, none of them may be left waiting
+            LOG.warn("Could not write a batch of {} contracts", batch.size(), e);
+            DataAccessException translated = exceptionTranslator.translateExceptionIfPossible(e);
+            for (int i = 0; i < failures.length; i++) {
+                failures[i] = translated != null ? translated : e;
+            }
+            if (flushMetrics != null)
+                flushMetrics.error();
+        }
+        if (flushMetrics != null) {
+            flushMetrics.latency(System.nanoTime() - start);
+            flushMetrics.result(contracts);
+        }
+        // published here rather than by the callers, which may have given up waiting already
+        final RuntimeException[] written = failures;
+        try {
+            eventBatch.run(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (written[i] == null)
+                            eventPublisher.publishEvent(new ContractChangedEvent(ContractGroupCommit.this, null, batch.get(i).contract));
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // the contracts are written, the callers get them even when a listener failed
+            LOG.error("Could not publish the events of a batch of {} contracts", batch.size(), e);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (failures[i] != null)
+                batch.get(i).result.setException(failures[i]);
+            else
+                batch.get(i).result.set(batch.get(i).contract);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("groupCommit.queued", queue.size()));
+        metrics.add(new Metric<>("groupCommit.rejected", rejected.get()));
+        return metrics;
+    }
+
+    private static class PendingInsert {
+        final Contract contract;
+        final long queued = System.nanoTime();
+        final SettableFuture<Contract> result = SettableFuture.create();
+
+        PendingInsert(Contract contract) {
+            this.contract = contract;
+        }
+    }
+}
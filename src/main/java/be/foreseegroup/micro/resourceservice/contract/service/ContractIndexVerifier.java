@@ -0,0 +1,79 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks at startup that every index declared on {@link Contract} exists in the collection.
+ * Spring Data creates the declared indexes when the mapping context starts, so a missing index
+ * usually means it was dropped by hand or failed to build. Depending on
+ * {@code contract.indexes.failOnMissing} a missing index is logged or aborts the startup.
+ */
+@Component
+public class ContractIndexVerifier implements ApplicationListener<ContextRefreshedEvent> {
+    private static final Logger LOG = LoggerFactory.getLogger(ContractIndexVerifier.class);
+
+    @Autowired
+    ApplicationContext applicationContext;
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    ContractProperties properties;
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // refreshes of child contexts (e.g. the management context) are propagated here as well
+        if (event.getApplicationContext() != applicationContext)
+            return;
+        List<String> missing = findMissingIndexes();
+        if (missing.isEmpty()) {
+            LOG.info("All expected contract indexes are present");
+            return;
+        }
+        if (properties.getIndexes().isFailOnMissing())
+            throw new IllegalStateException("Missing indexes on contract collection: " + missing);
+        LOG.warn("Missing indexes on contract collection, lookups will scan the collection: {}", missing);
+    }
+
+    public List<String> findMissingIndexes() {
+        Set<String> present = new HashSet<>();
+        for (IndexInfo info : mongoTemplate.indexOps(Contract.class).getIndexInfo()) {
+            present.add(info.getName());
+        }
+        List<String> missing = new ArrayList<>();
+        for (String name : expectedIndexes()) {
+            if (!present.contains(name))
+                missing.add(name);
+        }
+        return missing;
+    }
+
+    static List<String> expectedIndexes() {
+        List<String> names = new ArrayList<>();
+        CompoundIndexes indexes = Contract.class.getAnnotation(CompoundIndexes.class);
+        if (indexes != null) {
+            for (CompoundIndex index : indexes.value()) {
+                names.add(index.name());
+            }
+        }
+        return names;
+    }
+}
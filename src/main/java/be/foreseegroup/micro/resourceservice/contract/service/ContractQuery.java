@@ -0,0 +1,235 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.model.ContractDates;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Filter, sort order and field projection of a list request, parsed from its query parameters:
+ * <ul>
+ * <li>{@code <field>=a,b} keeps contracts whose field equals one of the values, for
+ * {@code id}, {@code unitId}, {@code consultantId}, {@code type}, {@code startDate} and {@code endDate}</li>
+ * <li>{@code startDate.gte=2015-01-01}, likewise {@code gt}, {@code lte} and {@code lt}, compares dates</li>
+ * <li>{@code endBefore} and {@code endAfter} are short for {@code endDate.lt} and {@code endDate.gte}, and order by
+ * end date unless another sort is given</li>
+ * <li>{@code sort=startDate,-endDate} sorts ascending, or descending with a leading {@code -}</li>
+ * <li>{@code fields=id,unitId} returns only those fields of each contract</li>
+ * </ul>
+ * Everything is translated into the Mongo query, sort and projection, so filtered out contracts and
+ * fields are never read from the database.
+ */
+public class ContractQuery {
+    public static final String SORT = "sort";
+    public static final String FIELDS = "fields";
+    public static final String END_BEFORE = "endBefore";
+    public static final String END_AFTER = "endAfter";
+
+    private static final Set<String> STRING_FIELDS = new LinkedHashSet<>(Arrays.asList("id", "unitId", "consultantId", "type"));
+    private static final Set<String> DATE_FIELDS = new LinkedHashSet<>(Arrays.asList("startDate", "endDate"));
+    private static final Set<String> PROJECTABLE_FIELDS = new LinkedHashSet<>(Arrays.asList(
+            "id", "unitId", "consultantId", "startDate", "endDate", "type", "version"));
+    private static final ObjectId FIRST_OBJECT_ID = new ObjectId("000000000000000000000000");
+    private static final Set<String> OPERATORS = new LinkedHashSet<>(Arrays.asList("gt", "gte", "lt", "lte"));
+
+    private final List<Criteria> equalities = new ArrayList<>();
+    private final Map<String, Criteria> ranges = new LinkedHashMap<>();
+    private final List<Sort.Order> orders = new ArrayList<>();
+    private final Set<String> fields = new LinkedHashSet<>();
+    private boolean byEndDate;
+
+    /**
+     * @param parameters the query parameters of the request, minus those the endpoint handles itself
+     * @throws IllegalArgumentException for unknown fields or operators and unparseable dates
+     */
+    public static ContractQuery parse(Map<String, List<String>> parameters) {
+        ContractQuery query = new ContractQuery();
+        for (Map.Entry<String, List<String>> parameter : parameters.entrySet()) {
+            for (String value : parameter.getValue()) {
+                query.add(parameter.getKey(), value);
+            }
+        }
+        return query;
+    }
+
+    private void add(String name, String value) {
+        if (SORT.equals(name)) {
+            for (String field : values(value)) {
+                boolean descending = field.startsWith("-");
+                String property = descending ? field.substring(1) : field;
+                requireField(property, PROJECTABLE_FIELDS);
+                orders.add(new Sort.Order(descending ? Sort.Direction.DESC : Sort.Direction.ASC, property));
+            }
+            return;
+        }
+        if (FIELDS.equals(name)) {
+            for (String field : values(value)) {
+                requireField(field, PROJECTABLE_FIELDS);
+                fields.add(field);
+            }
+            return;
+        }
+        if (END_BEFORE.equals(name) || END_AFTER.equals(name)) {
+            Date date = date(name, value);
+            if (END_BEFORE.equals(name))
+                range("endDate").lt(date);
+            else
+                range("endDate").gte(date);
+            byEndDate = true;
+            return;
+        }
+        int dot = name.indexOf('.');
+        String field = dot < 0 ? name : name.substring(0, dot);
+        String operator = dot < 0 ? null : name.substring(dot + 1);
+        if (operator == null) {
+            if (!STRING_FIELDS.contains(field))
+                requireField(field, DATE_FIELDS);
+            List<Object> values = new ArrayList<>();
+            for (String v : values(value)) {
+                values.add(DATE_FIELDS.contains(field) ? date(field, v) : v);
+            }
+            equalities.add(values.size() == 1 ? Criteria.where(field).is(values.get(0)) : Criteria.where(field).in(values));
+            return;
+        }
+        requireField(field, DATE_FIELDS);
+        if (!OPERATORS.contains(operator))
+            throw new IllegalArgumentException("Unknown operator " + operator + ", expected one of " + OPERATORS);
+        Date date = date(field, value);
+        Criteria criterion = range(field);
+        switch (operator) {
+            case "gt":
+                criterion.gt(date);
+                break;
+            case "gte":
+                criterion.gte(date);
+                break;
+            case "lt":
+                criterion.lt(date);
+                break;
+            default:
+                criterion.lte(date);
+        }
+    }
+
+    private Criteria range(String field) {
+        Criteria criterion = ranges.get(field);
+        if (criterion == null) {
+            criterion = Criteria.where(field);
+            ranges.put(field, criterion);
+        }
+        return criterion;
+    }
+
+    public boolean isEmpty() {
+        return equalities.isEmpty() && ranges.isEmpty() && orders.isEmpty() && fields.isEmpty();
+    }
+
+    /**
+     * @return true when only some fields of each contract are returned
+     */
+    public boolean isProjected() {
+        return !fields.isEmpty();
+    }
+
+    public Set<String> getFields() {
+        return Collections.unmodifiableSet(fields);
+    }
+
+    /**
+     * @param scope criteria of the endpoint itself, e.g. the consultant of a by-consultant lookup, or null
+     */
+    public Query toQuery(Criteria scope) {
+        Query query = build(scope, fields.contains("id"));
+        if (!orders.isEmpty())
+            query.with(new Sort(orders));
+        else if (byEndDate)
+            query.with(new Sort(Sort.Direction.ASC, "endDate"));
+        return query;
+    }
+
+    /**
+     * Keyset page of at most {@code size} contracts whose id sorts after {@code afterId}, in id order. The id is
+     * always returned, the next page starts after it.
+     *
+     * @throws IllegalArgumentException when a sort order was asked for, pages can only be ordered by id
+     */
+    public Query toPageQuery(String afterId, int size) {
+        if (!orders.isEmpty())
+            throw new IllegalArgumentException("Pages are ordered by id, " + SORT + " cannot be combined with size");
+        Query query = build(afterId == null ? null : after(afterId), true);
+        query.with(new Sort(Sort.Direction.ASC, "id")).limit(size);
+        return query;
+    }
+
+    /**
+     * The ids sorting after {@code afterId}. Ids that are valid ObjectIds are stored as ObjectIds, other client
+     * supplied ids as strings, and Mongo sorts all strings before all ObjectIds but only compares values of the
+     * same type. After a string id the page therefore continues with the following strings and then with every
+     * ObjectId. The query mapper leaves the operand of {@code $gt} alone, so the ObjectId is created here.
+     */
+    static Criteria after(String afterId) {
+        if (ObjectId.isValid(afterId))
+            return Criteria.where("id").gt(new ObjectId(afterId));
+        return new Criteria().orOperator(Criteria.where("id").gt(afterId), Criteria.where("id").gte(FIRST_OBJECT_ID));
+    }
+
+    private Query build(Criteria scope, boolean withId) {
+        List<Criteria> all = new ArrayList<>();
+        if (scope != null)
+            all.add(scope);
+        all.addAll(equalities);
+        all.addAll(ranges.values());
+        Query query;
+        if (all.isEmpty())
+            query = new Query();
+        else if (all.size() == 1)
+            query = Query.query(all.get(0));
+        else
+            query = Query.query(new Criteria().andOperator(all.toArray(new Criteria[all.size()])));
+        if (!fields.isEmpty()) {
+            for (String field : fields) {
+                query.fields().include(field);
+            }
+            if (withId)
+                query.fields().include("id");
+            else
+                query.fields().exclude("id");
+        }
+        return query;
+    }
+
+    private static List<String> values(String value) {
+        List<String> values = new ArrayList<>();
+        for (String v : StringUtils.commaDelimitedListToStringArray(value)) {
+            if (!v.trim().isEmpty())
+                values.add(v.trim());
+        }
+        if (values.isEmpty())
+            throw new IllegalArgumentException("Missing value");
+        return values;
+    }
+
+    private static Date date(String field, String value) {
+        Date date = ContractDates.parse(value);
+        if (date == null)
+            throw new IllegalArgumentException("Invalid " + field + " " + value + ", expected " + ContractDates.PATTERN);
+        return date;
+    }
+
+    private static void requireField(String field, Set<String> allowed) {
+        if (!allowed.contains(field))
+            throw new IllegalArgumentException("Unknown field " + field + ", expected one of " + allowed);
+    }
+}
@@ -3,10 +3,15 @@ package be.foreseegroup.micro.resourceservice.contract.service;
 import be.foreseegroup.micro.resourceservice.contract.model.Contract;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Created by Kaj on 24/09/15.
  */
-public interface ContractRepository extends MongoRepository<Contract, String> {
+public interface ContractRepository extends MongoRepository<Contract, String>, ContractRepositoryCustom {
     Iterable<Contract> findByConsultantId(String consultantId);
     Iterable<Contract> findByUnitId(String unitId);
+    List<Contract> findByConsultantIdIn(Collection<String> consultantIds);
+    List<Contract> findByUnitIdIn(Collection<String> unitIds);
 }
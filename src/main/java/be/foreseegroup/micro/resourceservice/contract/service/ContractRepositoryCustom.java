@@ -0,0 +1,72 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Queries that cannot be expressed as Spring Data derived queries and are implemented
+ * directly on top of the {@link org.springframework.data.mongodb.core.MongoTemplate}.
+ */
+public interface ContractRepositoryCustom {
+    /**
+     * Keyset pagination on {@code _id}: returns at most {@code size} contracts whose id sorts
+     * after {@code afterId}, in id order. A {@code null} cursor starts at the beginning. Client
+     * supplied ids that are not ObjectIds come first, see {@link ContractQuery#after(String)}.
+     */
+    List<Contract> findPage(String afterId, int size);
+
+    /**
+     * Opens a cursor over the whole collection in id order, fetching {@code batchSize}
+     * documents per round trip. The caller must close the returned cursor.
+     */
+    ContractCursor streamAll(int batchSize);
+
+    /**
+     * Returns the contracts matching the filter, in the sort order and with the projection of the
+     * query, see {@link ContractQuery}.
+     */
+    List<Contract> find(Query query);
+
+    /**
+     * Opens a cursor like {@link #streamAll(int)} over the contracts matching the query, in the
+     * sort order of the query or else in id order.
+     */
+    ContractCursor stream(Query query, int batchSize);
+
+    /**
+     * Returns the id and start date of every contract of the consultant, ordered by start date.
+     * The query is covered by {@link Contract#CONSULTANT_START_INDEX} and never touches the documents.
+     */
+    List<Contract> findRefsByConsultantId(String consultantId);
+
+    /**
+     * Returns the id and start date of every contract of the unit, ordered by start date.
+     * The query is covered by {@link Contract#UNIT_START_INDEX} and never touches the documents.
+     */
+    List<Contract> findRefsByUnitId(String unitId);
+
+    /**
+     * Returns the contracts running on the given day: started on or before it and ending on or
+     * after it, or without end date. Served by {@link Contract#END_START_INDEX}.
+     */
+    List<Contract> findActiveOn(Date day);
+
+    /**
+     * Atomically overwrites the unit, consultant, dates and type of the contract with those of
+     * {@code fields} and increments its version, in a single round trip, leaving any other field
+     * of the document untouched. When {@code expectedVersion} is given the update only applies to
+     * that version. Returns the contract as it was before the update, or {@code null} when it does
+     * not exist or has another version.
+     */
+    Contract updateFields(String id, Contract fields, Long expectedVersion);
+
+    /**
+     * Atomically removes the contract in a single round trip, only if it has the
+     * {@code expectedVersion} when one is given. Returns the removed contract, or {@code null}
+     * when it does not exist or has another version.
+     */
+    Contract removeById(String id, Long expectedVersion);
+}
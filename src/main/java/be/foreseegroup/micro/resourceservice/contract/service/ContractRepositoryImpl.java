@@ -0,0 +1,128 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * {@link MongoTemplate} backed implementation of {@link ContractRepositoryCustom}, picked up by
+ * Spring Data through the {@code Impl} naming convention.
+ */
+public class ContractRepositoryImpl implements ContractRepositoryCustom {
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Contract> findPage(String afterId, int size) {
+        Query query = new Query();
+        if (afterId != null)
+            query.addCriteria(ContractQuery.after(afterId));
+        query.with(new Sort(Sort.Direction.ASC, "id")).limit(size);
+        return mongoTemplate.find(query, Contract.class);
+    }
+
+    @Override
+    public ContractCursor streamAll(int batchSize) {
+        DBCursor cursor = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Contract.class))
+                .find()
+                .sort(new BasicDBObject("_id", 1))
+                .batchSize(batchSize);
+        return new ContractCursor(cursor, mongoTemplate.getConverter());
+    }
+
+    @Override
+    public List<Contract> find(Query query) {
+        return mongoTemplate.find(query, Contract.class);
+    }
+
+    @Override
+    public ContractCursor stream(Query query, int batchSize) {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext().getPersistentEntity(Contract.class);
+        QueryMapper mapper = new QueryMapper(mongoTemplate.getConverter());
+        DBObject fields = query.getFieldsObject() == null ? null : mapper.getMappedFields(query.getFieldsObject(), entity);
+        DBObject sort = query.getSortObject() == null ? new BasicDBObject("_id", 1) : mapper.getMappedSort(query.getSortObject(), entity);
+        DBCursor cursor = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Contract.class))
+                .find(mapper.getMappedObject(query.getQueryObject(), entity), fields)
+                .sort(sort)
+                .batchSize(batchSize);
+        return new ContractCursor(cursor, mongoTemplate.getConverter());
+    }
+
+    @Override
+    public List<Contract> findRefsByConsultantId(String consultantId) {
+        return findRefs("consultantId", consultantId, Contract.CONSULTANT_START_INDEX);
+    }
+
+    @Override
+    public List<Contract> findRefsByUnitId(String unitId) {
+        return findRefs("unitId", unitId, Contract.UNIT_START_INDEX);
+    }
+
+    private List<Contract> findRefs(String key, String value, String index) {
+        Query query = Query.query(Criteria.where(key).is(value))
+                .with(new Sort(Sort.Direction.ASC, "startDate"))
+                .withHint(index);
+        // only project fields that are part of the index so mongo can skip fetching the documents
+        query.fields().include("id").include(key).include("startDate");
+        return mongoTemplate.find(query, Contract.class);
+    }
+
+    @Override
+    public List<Contract> findActiveOn(Date day) {
+        Query query = Query.query(new Criteria().orOperator(
+                Criteria.where("endDate").gte(day),
+                Criteria.where("endDate").is(null)
+        ).and("startDate").lte(day));
+        return mongoTemplate.find(query, Contract.class);
+    }
+
+    @Override
+    public Contract updateFields(String id, Contract fields, Long expectedVersion) {
+        Update update = new Update();
+        setOrUnset(update, "unitId", fields.getUnitId());
+        setOrUnset(update, "consultantId", fields.getConsultantId());
+        setOrUnset(update, "startDate", fields.getStartDate());
+        setOrUnset(update, "endDate", fields.getEndDate());
+        setOrUnset(update, "type", fields.getType());
+        update.inc("version", 1);
+        return mongoTemplate.findAndModify(byIdAndVersion(id, expectedVersion), update,
+                FindAndModifyOptions.options().returnNew(false), Contract.class);
+    }
+
+    private static void setOrUnset(Update update, String key, Object value) {
+        if (value == null)
+            update.unset(key);
+        else
+            update.set(key, value);
+    }
+
+    @Override
+    public Contract removeById(String id, Long expectedVersion) {
+        return mongoTemplate.findAndRemove(byIdAndVersion(id, expectedVersion), Contract.class);
+    }
+
+    private static Query byIdAndVersion(String id, Long expectedVersion) {
+        Criteria criteria = Criteria.where("id").is(id);
+        if (expectedVersion != null) {
+            // documents written before versioning have no version field and count as version 0
+            if (expectedVersion == 0)
+                criteria.and("version").in(0L, null);
+            else
+                criteria.and("version").is(expectedVersion);
+        }
+        return Query.query(criteria);
+    }
+}
@@ -1,12 +1,38 @@
 package be.foreseegroup.micro.resourceservice.contract.service;
 
+import be.foreseegroup.micro.resourceservice.contract.accesslog.ContractAccessLogInterceptor;
+import be.foreseegroup.micro.resourceservice.contract.cache.ContractCache;
+import be.foreseegroup.micro.resourceservice.contract.changes.ContractChangeLog;
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import be.foreseegroup.micro.resourceservice.contract.format.ContractFormats;
+import be.foreseegroup.micro.resourceservice.contract.model.BulkReport;
 import be.foreseegroup.micro.resourceservice.contract.model.Contract;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractChange;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractDates;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Created by Kaj on 24/09/15.
@@ -14,70 +40,310 @@ import org.springframework.web.bind.annotation.*;
 
 @RestController
 public class ContractService {
-    private static final Logger LOG = LoggerFactory.getLogger(ContractService.class);
-
     @Autowired
     ContractRepository repo;
 
+    @Autowired
+    ContractCache cache;
+
+    @Autowired
+    ContractStreamWriter streamWriter;
+
+    @Autowired
+    ContractBulkWriter bulkWriter;
+
+    @Autowired
+    ContractProperties properties;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired(required = false)
+    ContractChangeLog changeLog;
+
+    @Autowired
+    ContractFormats formats;
+
+    @Autowired(required = false)
+    ContractGroupCommit groupCommit;
+
     @RequestMapping(method = RequestMethod.GET, value = "/contracts")
-    public ResponseEntity<Iterable<Contract>> getAll() {
-        Iterable<Contract> contracts = repo.findAll();
-        LOG.info("/contracts getAll method called, response size: {}", repo.count());
-        return new ResponseEntity<>(contracts, HttpStatus.OK);
+    public void getAll(@RequestParam MultiValueMap<String, String> parameters,
+                       @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ContractQuery query;
+        try {
+            query = ContractQuery.parse(parameters);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+            return;
+        }
+        ObjectMapper format = formats.negotiate(accept);
+        response.setContentType(formats.contentType(format).toString());
+        int batchSize = properties.getPaging().getCursorBatchSize();
+        try (ContractCursor cursor = query.isEmpty() ? repo.streamAll(batchSize) : repo.stream(query.toQuery(null), batchSize)) {
+            long count = streamWriter.writeArray(cursor, response.getOutputStream(), format, query.isProjected());
+            request.setAttribute(ContractAccessLogInterceptor.RESULT_COUNT_ATTRIBUTE, (int) count);
+        }
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/contracts", params = "size")
+    public ResponseEntity<List<Contract>> getPage(@RequestParam int size, @RequestParam(required = false) String after,
+                                                  @RequestParam MultiValueMap<String, String> parameters,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (size < 1)
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        int pageSize = Math.min(size, properties.getPaging().getMaxSize());
+        MultiValueMap<String, String> filters = new LinkedMultiValueMap<>(parameters);
+        filters.remove("size");
+        filters.remove("after");
+        ContractQuery query;
+        try {
+            query = ContractQuery.parse(filters);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<Contract> contracts;
+        try {
+            contracts = query.isEmpty() ? repo.findPage(after, pageSize) : repo.find(query.toPageQuery(after, pageSize));
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        if (contracts.size() == pageSize) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("size", pageSize)
+                    .replaceQueryParam("after", contracts.get(contracts.size() - 1).getId())
+                    .build().toUriString();
+            headers.add("Link", "<" + next + ">; rel=\"next\"");
+        }
+        if (query.isProjected())
+            return new ResponseEntity<>(streamWriter.sparse(contracts), headers, HttpStatus.OK);
+        String etag = ContractEtags.of(contracts);
+        headers.setETag(etag);
+        if (ContractEtags.matches(ifNoneMatch, etag))
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        return new ResponseEntity<>(contracts, headers, HttpStatus.OK);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/contracts/stream")
+    public void streamAll(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(ContractStreamWriter.NDJSON_VALUE + ";charset=UTF-8");
+        try (ContractCursor cursor = repo.streamAll(properties.getPaging().getCursorBatchSize())) {
+            long count = streamWriter.writeLines(cursor, response.getOutputStream());
+            request.setAttribute(ContractAccessLogInterceptor.RESULT_COUNT_ATTRIBUTE, (int) count);
+        }
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/contracts/active")
+    public ResponseEntity<List<Contract>> getActive(@RequestParam(required = false) String on) {
+        Date day = on == null ? today() : ContractDates.parse(on);
+        if (day == null)
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        return new ResponseEntity<>(repo.findActiveOn(day), HttpStatus.OK);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/contracts/changes")
+    public ResponseEntity<List<ContractChange>> getChanges(@RequestParam(required = false) Long since,
+                                                           @RequestParam(required = false) Integer limit) {
+        if (changeLog == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        HttpHeaders headers = new HttpHeaders();
+        //Without a starting point only the current position is returned, to resume from after a full read
+        if (since == null) {
+            headers.add("Link", "<" + changesLink(changeLog.head()) + ">; rel=\"next\"");
+            return new ResponseEntity<List<ContractChange>>(new ArrayList<ContractChange>(), headers, HttpStatus.OK);
+        }
+        if (since < 0 || (limit != null && limit < 1))
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        if (since < changeLog.prunedThrough())
+            return new ResponseEntity<>(HttpStatus.GONE);
+        int maxSize = properties.getPaging().getMaxSize();
+        List<ContractChange> changes = changeLog.since(since, limit == null ? maxSize : Math.min(limit, maxSize));
+        long next = changes.isEmpty() ? since : changes.get(changes.size() - 1).getSequence();
+        headers.add("Link", "<" + changesLink(next) + ">; rel=\"next\"");
+        return new ResponseEntity<>(changes, headers, HttpStatus.OK);
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "/contracts/{id}")
-    public ResponseEntity<Contract> getById(@PathVariable String id) {
-        LOG.info("/contracts getById method called");
-        Contract contract = repo.findOne(id);
+    public ResponseEntity<Contract> getById(@PathVariable String id,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Contract contract = cache.findOne(id);
         if (contract == null)
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        return new ResponseEntity<>(contract, HttpStatus.OK);
+        return ContractEtags.respond(contract, ContractEtags.of(contract), ifNoneMatch);
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "/contractsbycid/{consultantId}")
-    public ResponseEntity<Iterable<Contract>> getByConsultantId(@PathVariable String consultantId) {
-        LOG.info("/contracts getByConsultantId method called");
-        Iterable<Contract> contracts = repo.findByConsultantId(consultantId);
-        return new ResponseEntity<>(contracts, HttpStatus.OK);
+    public ResponseEntity<Iterable<Contract>> getByConsultantId(@PathVariable String consultantId,
+                                                                @RequestParam MultiValueMap<String, String> parameters,
+                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (!parameters.isEmpty())
+            return query(Criteria.where("consultantId").is(consultantId), parameters);
+        Iterable<Contract> contracts = cache.findByConsultantId(consultantId);
+        return ContractEtags.respond(contracts, ContractEtags.of(contracts), ifNoneMatch);
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "/contractsbyuid/{unitId}")
-    public ResponseEntity<Iterable<Contract>> getByUnitId(@PathVariable String unitId) {
-        LOG.info("/contracts getByUnitId method called");
-        Iterable<Contract> contracts = repo.findByUnitId(unitId);
-        return new ResponseEntity<>(contracts, HttpStatus.OK);
+    public ResponseEntity<Iterable<Contract>> getByUnitId(@PathVariable String unitId,
+                                                          @RequestParam MultiValueMap<String, String> parameters,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (!parameters.isEmpty())
+            return query(Criteria.where("unitId").is(unitId), parameters);
+        Iterable<Contract> contracts = cache.findByUnitId(unitId);
+        return ContractEtags.respond(contracts, ContractEtags.of(contracts), ifNoneMatch);
+    }
+
+    @RequestMapping(method = RequestMethod.POST, value = "/contractsbycid")
+    public ResponseEntity<Map<String, List<Contract>>> getByConsultantIds(@RequestBody LinkedHashSet<String> consultantIds) {
+        if (consultantIds.size() > properties.getPaging().getMaxLookupKeys())
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        return new ResponseEntity<>(cache.findByConsultantIds(consultantIds), HttpStatus.OK);
+    }
+
+    @RequestMapping(method = RequestMethod.POST, value = "/contractsbyuid")
+    public ResponseEntity<Map<String, List<Contract>>> getByUnitIds(@RequestBody LinkedHashSet<String> unitIds) {
+        if (unitIds.size() > properties.getPaging().getMaxLookupKeys())
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        return new ResponseEntity<>(cache.findByUnitIds(unitIds), HttpStatus.OK);
+    }
+
+    @RequestMapping(method = RequestMethod.POST, value = "/contracts/lookup")
+    public ResponseEntity<Map<String, Contract>> getByIds(@RequestBody LinkedHashSet<String> ids) {
+        if (ids.size() > properties.getPaging().getMaxLookupKeys())
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        return new ResponseEntity<>(cache.findByIds(ids), HttpStatus.OK);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/contractsbycid/{consultantId}/refs")
+    public ResponseEntity<List<Contract>> getRefsByConsultantId(@PathVariable String consultantId) {
+        List<Contract> refs = repo.findRefsByConsultantId(consultantId);
+        return new ResponseEntity<>(refs, HttpStatus.OK);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/contractsbyuid/{unitId}/refs")
+    public ResponseEntity<List<Contract>> getRefsByUnitId(@PathVariable String unitId) {
+        List<Contract> refs = repo.findRefsByUnitId(unitId);
+        return new ResponseEntity<>(refs, HttpStatus.OK);
     }
 
     @RequestMapping(method = RequestMethod.POST, value = "/contracts")
     public ResponseEntity<Contract> create(@RequestBody Contract contract) {
-        LOG.info("/contracts create method called");
-        Contract createdContract = repo.save(contract);
+        // a create always inserts, a client supplied version would turn the save into a versioned update
+        contract.setVersion(null);
+        if (groupCommit != null)
+            return createGrouped(contract);
+        Contract createdContract;
+        try {
+            createdContract = repo.save(contract);
+        } catch (DuplicateKeyException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+        eventPublisher.publishEvent(new ContractChangedEvent(this, null, createdContract));
         return new ResponseEntity<>(createdContract, HttpStatus.OK);
     }
 
-    @RequestMapping(method = RequestMethod.PUT, value = "/contracts/{id}")
-    public ResponseEntity<Contract>update(@PathVariable String id, @RequestBody Contract contract) {
-        LOG.info("/contracts update method called");
-        Contract update = repo.findOne(id);
-        if (update == null)
+    /**
+     * The group commit publishes the event itself. A rejected create may still be written, so the 503 names the id
+     * it was given; a retry under that id gets 409 rather than a second contract.
+     */
+    private ResponseEntity<Contract> createGrouped(Contract contract) {
+        try {
+            return new ResponseEntity<>(groupCommit.insert(contract), HttpStatus.OK);
+        } catch (DuplicateKeyException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        } catch (RejectedExecutionException e) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(properties.getBulkhead().getRetryAfterSeconds()));
+            if (contract.getId() != null)
+                headers.setLocation(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(contract.getId()).toUri());
+            return new ResponseEntity<>(headers, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    @RequestMapping(method = RequestMethod.POST, value = "/contracts/bulk")
+    public ResponseEntity<BulkReport> bulk(HttpServletRequest request) throws IOException {
+        BulkReport report;
+        try {
+            report = bulkWriter.apply(request.getInputStream());
+        } catch (JsonProcessingException e) {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-        update.setConsultantId(contract.getConsultantId());
-        update.setUnitId(contract.getUnitId());
-        update.setStartDate(contract.getStartDate());
-        update.setEndDate(contract.getEndDate());
-        update.setType(contract.getType());
-        Contract updatedContract = repo.save(update);
-        return new ResponseEntity<>(updatedContract, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(report, HttpStatus.OK);
+    }
+
+    @RequestMapping(method = RequestMethod.PUT, value = "/contracts/{id}")
+    public ResponseEntity<Contract>update(@PathVariable String id, @RequestBody Contract contract,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        // If-Match takes precedence, otherwise the version the client read is taken from the body
+        Long expectedVersion;
+        HttpStatus staleStatus = HttpStatus.PRECONDITION_FAILED;
+        try {
+            expectedVersion = ContractEtags.parseIfMatch(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+        }
+        if (ifMatch == null) {
+            expectedVersion = contract.getVersion();
+            staleStatus = HttpStatus.CONFLICT;
+        }
+        Contract before = repo.updateFields(id, contract, expectedVersion);
+        if (before == null)
+            return new ResponseEntity<>(rejectedWriteStatus(id, expectedVersion, staleStatus));
+        Contract updatedContract = new Contract(id, contract.getUnitId(), contract.getConsultantId(),
+                contract.getStartDate(), contract.getEndDate(), contract.getType());
+        updatedContract.setVersion(ContractEtags.versionOf(before) + 1);
+        eventPublisher.publishEvent(new ContractChangedEvent(this, before, updatedContract));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(ContractEtags.of(updatedContract));
+        return new ResponseEntity<>(updatedContract, headers, HttpStatus.OK);
     }
 
     @RequestMapping(method = RequestMethod.DELETE, value = "/contracts/{id}")
-    public ResponseEntity<Contract> delete(@PathVariable String id) {
-        LOG.info("/contracts delete method called");
-        Contract contract = repo.findOne(id);
+    public ResponseEntity<Contract> delete(@PathVariable String id,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion;
+        try {
+            expectedVersion = ContractEtags.parseIfMatch(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+        }
+        Contract contract = repo.removeById(id, expectedVersion);
         if (contract == null)
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-        repo.delete(contract);
+            return new ResponseEntity<>(rejectedWriteStatus(id, expectedVersion, HttpStatus.PRECONDITION_FAILED));
+        eventPublisher.publishEvent(new ContractChangedEvent(this, contract, null));
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
+
+    /**
+     * A conditional write that matched nothing either targeted an unknown contract (400) or a stale
+     * version. Only that failure path pays for the extra lookup.
+     */
+    private HttpStatus rejectedWriteStatus(String id, Long expectedVersion, HttpStatus staleStatus) {
+        if (expectedVersion != null && repo.exists(id))
+            return staleStatus;
+        return HttpStatus.BAD_REQUEST;
+    }
+
+    /**
+     * Filtered, sorted or projected lookups go to the database, the cache and the ETags only cover full documents.
+     */
+    private ResponseEntity<Iterable<Contract>> query(Criteria scope, Map<String, List<String>> parameters) {
+        ContractQuery query;
+        try {
+            query = ContractQuery.parse(parameters);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<Contract> contracts = repo.find(query.toQuery(scope));
+        return new ResponseEntity<Iterable<Contract>>(query.isProjected() ? streamWriter.sparse(contracts) : contracts, HttpStatus.OK);
+    }
+
+    private static String changesLink(long since) {
+        return ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam("since", since).build().toUriString();
+    }
+
+    private static Date today() {
+        return ContractDates.parse(ContractDates.format(new Date()));
+    }
 }
@@ -0,0 +1,102 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.format.ContractFormats;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes contracts straight from an iterator to the response body, either as a single JSON array
+ * or as newline delimited JSON, so that no more than one contract is materialized at a time.
+ */
+@Component
+public class ContractStreamWriter {
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private final ObjectMapper mapper;
+    private final ObjectWriter writer;
+    private final ObjectWriter sparseWriter;
+
+    @Autowired
+    public ContractStreamWriter(ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.writer = mapper.writerWithType(Contract.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.sparseWriter = mapper.copy().setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .writerWithType(Contract.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Writes the contracts as a JSON array and returns the number of contracts written.
+     */
+    public long writeArray(Iterator<Contract> contracts, OutputStream out) throws IOException {
+        return writeArray(contracts, out, mapper, writer);
+    }
+
+    /**
+     * Writes the contracts as an array in the format of the given mapper, e.g. one of the binary
+     * {@link ContractFormats}, and returns the number of contracts written.
+     */
+    public long writeArray(Iterator<Contract> contracts, OutputStream out, ObjectMapper format) throws IOException {
+        return writeArray(contracts, out, format, false);
+    }
+
+    /**
+     * Like {@link #writeArray(Iterator, OutputStream, ObjectMapper)}, leaving out the fields that are
+     * {@code null} when {@code sparse} is set, for contracts read with a projection.
+     */
+    public long writeArray(Iterator<Contract> contracts, OutputStream out, ObjectMapper format, boolean sparse) throws IOException {
+        // the writers only emit tokens, the generator of the format decides on the encoding
+        return writeArray(contracts, out, format, sparse ? sparseWriter : writer);
+    }
+
+    /**
+     * Wraps projected contracts so that response body converters leave out the fields that were not read.
+     */
+    public List<Contract> sparse(List<Contract> contracts) {
+        return new SparseContractList(contracts, sparseWriter);
+    }
+
+    private static long writeArray(Iterator<Contract> contracts, OutputStream out, ObjectMapper mapper, ObjectWriter writer) throws IOException {
+        long count = 0;
+        try (JsonGenerator generator = createGenerator(mapper, out)) {
+            generator.writeStartArray();
+            while (contracts.hasNext()) {
+                writer.writeValue(generator, contracts.next());
+                count++;
+            }
+            generator.writeEndArray();
+        }
+        return count;
+    }
+
+    /**
+     * Writes one JSON document per line and returns the number of contracts written.
+     */
+    public long writeLines(Iterator<Contract> contracts, OutputStream out) throws IOException {
+        long count = 0;
+        try (JsonGenerator generator = createGenerator(mapper, out)) {
+            generator.setRootValueSeparator(null);
+            while (contracts.hasNext()) {
+                writer.writeValue(generator, contracts.next());
+                generator.writeRaw('\n');
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static JsonGenerator createGenerator(ObjectMapper mapper, OutputStream out) throws IOException {
+        // the servlet container owns the response stream, we only flush it
+        return mapper.getFactory().createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+}
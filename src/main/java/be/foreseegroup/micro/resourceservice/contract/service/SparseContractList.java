@@ -0,0 +1,50 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * A list of projected contracts that serializes itself without the fields left {@code null}, whatever
+ * mapper the response body converter uses.
+ */
+class SparseContractList extends AbstractList<Contract> implements JsonSerializable {
+    private final List<Contract> contracts;
+    private final ObjectWriter writer;
+
+    SparseContractList(List<Contract> contracts, ObjectWriter writer) {
+        this.contracts = contracts;
+        this.writer = writer;
+    }
+
+    @Override
+    public Contract get(int index) {
+        return contracts.get(index);
+    }
+
+    @Override
+    public int size() {
+        return contracts.size();
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeStartArray();
+        for (Contract contract : contracts) {
+            writer.writeValue(generator, contract);
+        }
+        generator.writeEndArray();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider provider, TypeSerializer typeSerializer) throws IOException {
+        serialize(generator, provider);
+    }
+}
@@ -0,0 +1,265 @@
+package be.foreseegroup.micro.resourceservice.contract.snapshot;
+
+import be.foreseegroup.micro.resourceservice.contract.aggregate.ContractAggregates;
+import be.foreseegroup.micro.resourceservice.contract.cache.ContractCache;
+import be.foreseegroup.micro.resourceservice.contract.coherence.ContractInvalidationPublisher;
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBDecoder;
+import com.mongodb.DefaultDBDecoder;
+import com.mongodb.DefaultDBEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Export and import of the whole contract collection as a snapshot file, to seed a new environment or rebuild one
+ * without replaying every contract through the REST API. Run at startup when {@code contract.snapshot.exportTo} or
+ * {@code contract.snapshot.importFrom} is set, an import before an export.
+ * <p>
+ * A snapshot holds the raw BSON documents, so fields the {@link Contract} mapping does not know about, such as the
+ * legacy dates of {@link be.foreseegroup.micro.resourceservice.contract.service.ContractDateMigration}, survive the
+ * round trip. Layout, little-endian like BSON itself:
+ * <pre>
+ *   header   magic "CSNP", format version (int), export time (long)
+ *   records  the BSON documents back to back, each starts with its own length
+ *   trailer  magic "CEND", number of documents (long), CRC32 of the records (long)
+ * </pre>
+ * Export streams the collection in id order through a cursor into a file channel, and only moves the file in place
+ * once it is complete. Import memory-maps the file, verifies the checksum before inserting anything, and inserts the
+ * documents with unordered bulk writes; documents whose id already exists are skipped, so an interrupted import can
+ * simply be run again.
+ * <p>
+ * The inserts bypass the service and its {@link be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent}s.
+ * After an import the cache, replica, interval index and aggregate counters are rebuilt, and a full invalidation is
+ * sent over the coherence transport so running instances do the same; with {@code contract.coherence.transport: none}
+ * they keep serving what they had until they restart. The change feed gets no entries for imported contracts,
+ * consumers of the feed have to resync from {@code /contracts} after an import.
+ */
+@Component
+public class ContractSnapshots implements CommandLineRunner {
+    private static final Logger LOG = LoggerFactory.getLogger(ContractSnapshots.class);
+
+    private static final int MAGIC = 0x504e5343;
+    private static final int END_MAGIC = 0x444e4543;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int TRAILER_SIZE = 20;
+    private static final int MAP_WINDOW = 256 * 1024 * 1024;
+    private static final int DUPLICATE_KEY = 11000;
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    ContractProperties properties;
+
+    @Autowired
+    ContractCache cache;
+
+    @Autowired(required = false)
+    ContractAggregates aggregates;
+
+    @Autowired(required = false)
+    ContractInvalidationPublisher invalidations;
+
+    @Override
+    public void run(String... args) throws IOException {
+        ContractProperties.Snapshot snapshot = properties.getSnapshot();
+        if (snapshot.getImportFrom() != null)
+            restore(new File(snapshot.getImportFrom()));
+        if (snapshot.getExportTo() != null)
+            export(new File(snapshot.getExportTo()));
+    }
+
+    /**
+     * Writes all contracts to {@code file}, replacing it when it exists.
+     *
+     * @return the number of contracts written
+     */
+    public long export(File file) throws IOException {
+        long start = System.nanoTime();
+        Path target = file.toPath();
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        DBCollection collection = collection();
+        DefaultDBEncoder encoder = new DefaultDBEncoder();
+        CRC32 checksum = new CRC32();
+        long count = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(properties.getSnapshot().getBufferSize()).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DBCursor cursor = collection.find().sort(new BasicDBObject("_id", 1))
+                     .batchSize(properties.getSnapshot().getBatchSize())) {
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+            while (cursor.hasNext()) {
+                byte[] document = encoder.encode(cursor.next());
+                checksum.update(document);
+                count++;
+                if (buffer.remaining() < document.length) {
+                    drain(buffer, channel);
+                    if (buffer.capacity() < document.length) {
+                        channel.write(ByteBuffer.wrap(document));
+                        continue;
+                    }
+                }
+                buffer.put(document);
+            }
+            if (buffer.remaining() < TRAILER_SIZE)
+                drain(buffer, channel);
+            buffer.putInt(END_MAGIC).putLong(count).putLong(checksum.getValue());
+            drain(buffer, channel);
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.info("Contract snapshot {} exported, {} contracts, {} bytes in {} ms", file, count, file.length(),
+                (System.nanoTime() - start) / 1000000);
+        return count;
+    }
+
+    /**
+     * Inserts the contracts of the snapshot in {@code file} that are not in the collection yet. Nothing is inserted
+     * when the file is not a complete snapshot or does not match its checksum.
+     *
+     * @return the number of contracts inserted
+     */
+    public long restore(File file) throws IOException {
+        long start = System.nanoTime();
+        long inserted = 0;
+        long skipped = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long end = channel.size() - TRAILER_SIZE;
+            if (end < HEADER_SIZE)
+                throw new IOException("Not a contract snapshot: " + file);
+            ByteBuffer header = map(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a contract snapshot: " + file);
+            if (header.getInt() != VERSION)
+                throw new IOException("Unsupported contract snapshot version: " + file);
+            ByteBuffer trailer = map(channel, end, TRAILER_SIZE);
+            if (trailer.getInt() != END_MAGIC)
+                throw new IOException("Incomplete contract snapshot: " + file);
+            long count = trailer.getLong();
+            long expectedChecksum = trailer.getLong();
+
+            // the whole file is verified before the first insert, a second pass over the mapping is cheap
+            CRC32 checksum = new CRC32();
+            for (long position = HEADER_SIZE; position < end; position += MAP_WINDOW) {
+                checksum.update(map(channel, position, Math.min(MAP_WINDOW, end - position)));
+            }
+            if (checksum.getValue() != expectedChecksum)
+                throw new IOException("Contract snapshot does not match its checksum: " + file);
+
+            DBCollection collection = collection();
+            DBDecoder decoder = DefaultDBDecoder.FACTORY.create();
+            int batchSize = properties.getSnapshot().getBatchSize();
+            BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+            int pending = 0;
+            long read = 0;
+            long position = HEADER_SIZE;
+            ByteBuffer window = map(channel, position, Math.min(MAP_WINDOW, end - position));
+            while (position < end) {
+                if (window.remaining() < 4 || window.remaining() < window.getInt(window.position())) {
+                    // the next document crosses the end of the window, map a new one starting at it
+                    window = map(channel, position, Math.min(MAP_WINDOW, end - position));
+                }
+                int length = window.getInt(window.position());
+                if (length < 5 || length > window.remaining())
+                    throw new IOException("Corrupt contract snapshot at offset " + position + ": " + file);
+                byte[] document = new byte[length];
+                window.get(document);
+                position += length;
+                bulk.insert(decoder.decode(document, collection));
+                read++;
+                if (++pending == batchSize) {
+                    skipped += execute(bulk);
+                    inserted += pending;
+                    bulk = collection.initializeUnorderedBulkOperation();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                skipped += execute(bulk);
+                inserted += pending;
+            }
+            if (read != count)
+                throw new IOException("Contract snapshot holds " + read + " contracts instead of " + count + ": " + file);
+        } finally {
+            if (inserted > 0)
+                reload();
+        }
+        inserted -= skipped;
+        LOG.info("Contract snapshot {} imported, {} contracts inserted, {} already present, in {} ms", file, inserted,
+                skipped, (System.nanoTime() - start) / 1000000);
+        return inserted;
+    }
+
+    /**
+     * @return the number of documents skipped because their id already exists
+     */
+    private static int execute(BulkWriteOperation bulk) {
+        try {
+            bulk.execute();
+            return 0;
+        } catch (BulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (error.getCode() != DUPLICATE_KEY)
+                    throw e;
+            }
+            return e.getWriteErrors().size();
+        }
+    }
+
+    /**
+     * The inserts bypass the service and its events, so everything derived from the collection is read again, here
+     * and on the other instances.
+     */
+    private void reload() {
+        cache.reload();
+        if (aggregates != null)
+            aggregates.rebuild();
+        if (invalidations != null)
+            invalidations.publishAll();
+    }
+
+    private DBCollection collection() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Contract.class));
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
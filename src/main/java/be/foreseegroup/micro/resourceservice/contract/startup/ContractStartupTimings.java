@@ -0,0 +1,67 @@
+package be.foreseegroup.micro.resourceservice.contract.startup;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerInitializedEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durations of the startup phases in milliseconds, exposed on the actuator metrics endpoint as
+ * {@code startup.<phase>}, each measured from the end of the previous one, and {@code startup.total} from
+ * the start of the JVM:
+ * <ul>
+ * <li>{@code context}: JVM start, class loading and creation of the application context</li>
+ * <li>{@code container}: start of the embedded Tomcat</li>
+ * <li>the phases of the {@link ContractWarmUp}, when enabled</li>
+ * </ul>
+ */
+@Component
+public class ContractStartupTimings implements PublicMetrics, ApplicationListener<ApplicationEvent> {
+    private final long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private long last = jvmStart;
+
+    @Autowired
+    ApplicationContext applicationContext;
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        // child contexts, like a management context on its own port, pass their events on to this one
+        if (event instanceof ContextRefreshedEvent && ((ContextRefreshedEvent) event).getApplicationContext() == applicationContext)
+            mark("context");
+        if (event instanceof EmbeddedServletContainerInitializedEvent
+                && ((EmbeddedServletContainerInitializedEvent) event).getApplicationContext() == applicationContext)
+            mark("container");
+    }
+
+    /**
+     * Ends a phase that started when the previous one ended.
+     */
+    public synchronized void mark(String phase) {
+        long now = System.currentTimeMillis();
+        phases.put(phase, now - last);
+        last = now;
+    }
+
+    @Override
+    public synchronized Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            metrics.add(new Metric<>("startup." + phase.getKey(), phase.getValue()));
+        }
+        metrics.add(new Metric<>("startup.total", last - jvmStart));
+        return metrics;
+    }
+}
@@ -0,0 +1,197 @@
+package be.foreseegroup.micro.resourceservice.contract.startup;
+
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.format.ContractFormats;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractStreamWriter;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.DB;
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerInitializedEvent;
+import org.springframework.cloud.client.discovery.event.InstanceRegisteredEvent;
+import org.springframework.cloud.netflix.eureka.EurekaInstanceConfigBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms up a freshly started instance before Eureka hands it any traffic: the instance registers as
+ * {@code STARTING}, and only turns {@code UP} once it opened its Mongo connections, used the Jackson
+ * serializers of {@link Contract} in every format, and sent {@code contract.warmUp.iterations} requests to
+ * each hot endpoint so that they are compiled by the JIT. A failing warm-up is logged and the instance
+ * registers cold.
+ */
+@Component
+@ConditionalOnProperty(prefix = "contract.warmUp", name = "enabled", matchIfMissing = true)
+public class ContractWarmUp implements ApplicationListener<ApplicationEvent> {
+    private static final Logger LOG = LoggerFactory.getLogger(ContractWarmUp.class);
+
+    static final String WARM_UP_ID = "warm-up";
+
+    private static final String[] HOT_PATHS = {"/contracts/" + WARM_UP_ID, "/contractsbycid/" + WARM_UP_ID,
+            "/contractsbyuid/" + WARM_UP_ID, "/contracts?size=10"};
+
+    @Autowired
+    ApplicationContext applicationContext;
+
+    @Autowired
+    ContractProperties properties;
+
+    @Autowired
+    ContractStartupTimings timings;
+
+    @Autowired
+    MongoTemplate mongoTemplate;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ContractFormats formats;
+
+    @Autowired
+    ContractStreamWriter streamWriter;
+
+    @Autowired(required = false)
+    EurekaInstanceConfigBean instanceConfig;
+
+    private volatile boolean warmedUp;
+
+    @PostConstruct
+    public void holdRegistration() {
+        // read when the discovery client registers, which may happen before or after the warm-up ends
+        if (instanceConfig != null)
+            instanceConfig.setInitialStatus(InstanceStatus.STARTING);
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (event instanceof EmbeddedServletContainerInitializedEvent
+                && ((EmbeddedServletContainerInitializedEvent) event).getApplicationContext() == applicationContext)
+            warmUp(((EmbeddedServletContainerInitializedEvent) event).getEmbeddedServletContainer().getPort());
+        // a registration that raced the end of the warm-up went out as STARTING
+        if (event instanceof InstanceRegisteredEvent && warmedUp)
+            markUp();
+    }
+
+    public boolean isWarmedUp() {
+        return warmedUp;
+    }
+
+    private void warmUp(int port) {
+        try {
+            warmUpMongoPool();
+            timings.mark("mongoPool");
+            warmUpJackson();
+            timings.mark("jackson");
+            warmUpEndpoints(port);
+            timings.mark("endpoints");
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            LOG.warn("Warm-up failed, registering without it", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        warmedUp = true;
+        markUp();
+    }
+
+    /**
+     * The pool opens connections on demand, each thread pins one until all of them have theirs.
+     */
+    private void warmUpMongoPool() throws InterruptedException, ExecutionException {
+        final DB db = mongoTemplate.getDb();
+        int connections = properties.getWarmUp().getConnections();
+        final CountDownLatch opened = new CountDownLatch(connections);
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            List<Future<Void>> pings = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                pings.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        db.requestStart();
+                        try {
+                            db.command("ping");
+                            opened.countDown();
+                            // a pool smaller than the requested connections never gets there
+                            opened.await(10, TimeUnit.SECONDS);
+                        } finally {
+                            db.requestDone();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> ping : pings) {
+                ping.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void warmUpJackson() throws IOException {
+        Contract contract = new Contract(WARM_UP_ID, WARM_UP_ID, WARM_UP_ID, new Date(), new Date(), WARM_UP_ID);
+        contract.setVersion(0L);
+        List<Contract> contracts = Collections.singletonList(contract);
+        for (ObjectMapper mapper : Arrays.asList(objectMapper, formats.getSmileMapper(), formats.getCborMapper())) {
+            mapper.readValue(mapper.writeValueAsBytes(contracts), new TypeReference<List<Contract>>() {});
+            streamWriter.writeArray(contracts.iterator(), new ByteArrayOutputStream(), mapper);
+        }
+        streamWriter.writeLines(contracts.iterator(), new ByteArrayOutputStream());
+    }
+
+    /**
+     * Read-only requests for a contract, consultant and unit that do not exist, and a small page.
+     */
+    private void warmUpEndpoints(int port) {
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+        });
+        for (int i = 0; i < properties.getWarmUp().getIterations(); i++) {
+            for (String path : HOT_PATHS) {
+                restTemplate.getForObject("http://localhost:" + port + path, String.class);
+            }
+        }
+    }
+
+    private void markUp() {
+        if (instanceConfig == null)
+            return;
+        instanceConfig.setInitialStatus(InstanceStatus.UP);
+        ApplicationInfoManager applicationInfoManager = ApplicationInfoManager.getInstance();
+        if (applicationInfoManager.getInfo() != null)
+            applicationInfoManager.setInstanceStatus(InstanceStatus.UP);
+    }
+}
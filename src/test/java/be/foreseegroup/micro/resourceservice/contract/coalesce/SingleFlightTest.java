@@ -0,0 +1,149 @@
+package be.foreseegroup.micro.resourceservice.contract.coalesce;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of SingleFlight on its own, the coalescing of the repository is tested by ContractServiceTest.
+ */
+public class SingleFlightTest {
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger loads = new AtomicInteger();
+    private ExecutorService executor;
+
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    /** Test case: concurrentCallsShouldShareOneLoad
+     *
+     * Test if concurrent calls for the same key wait for the one load in flight instead of starting their own
+     */
+    @Test
+    public void concurrentCallsShouldShareOneLoad() throws Exception {
+        List<Future<String>> calls = start(8, "key", new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                loads.incrementAndGet();
+                release.await();
+                return "value";
+            }
+        });
+
+        //Hold the first load until every other call joined it
+        awaitCoalesced(7);
+        release.countDown();
+        for (Future<String> call : calls) {
+            assertEquals("Call did not return the loaded value", "value", call.get());
+        }
+        assertEquals("Calls were not coalesced into one load", 1, loads.get());
+        assertEquals("Coalesced calls were not counted", 7, flight.getCoalesced());
+        assertEquals("Finished load was still in flight", 0, flight.getInFlight());
+    }
+
+    /** Test case: failedLoadShouldFailEveryJoinedCall
+     *
+     * Test if the exception of a load is thrown to every call that joined it, and if the next call loads again
+     */
+    @Test
+    public void failedLoadShouldFailEveryJoinedCall() throws Exception {
+        List<Future<String>> calls = start(4, "key", new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                loads.incrementAndGet();
+                release.await();
+                throw new IllegalStateException("load failed");
+            }
+        });
+
+        awaitCoalesced(3);
+        release.countDown();
+        for (Future<String> call : calls) {
+            try {
+                call.get();
+                fail("Joined call did not fail");
+            } catch (ExecutionException e) {
+                assertTrue("Joined call got another exception", e.getCause() instanceof IllegalStateException);
+            }
+        }
+        assertEquals("Calls were not coalesced into one load", 1, loads.get());
+
+        //Nothing is kept once a load completes
+        assertEquals("Next call did not load again", "again", flight.execute("key", new Callable<String>() {
+            @Override
+            public String call() {
+                return "again";
+            }
+        }));
+    }
+
+    /** Test case: forgetAllShouldStartNewLoads
+     *
+     * Test if calls made after forgetAll start a load of their own instead of joining the one in flight
+     */
+    @Test
+    public void forgetAllShouldStartNewLoads() throws Exception {
+        List<Future<String>> calls = start(1, "key", new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                release.await();
+                return "old";
+            }
+        });
+        while (flight.getInFlight() == 0) {
+            Thread.sleep(10);
+        }
+
+        flight.forgetAll();
+        assertEquals("Call after forgetAll joined the load in flight", "new", flight.execute("key", new Callable<String>() {
+            @Override
+            public String call() {
+                return "new";
+            }
+        }));
+        release.countDown();
+        assertEquals("Load in flight did not complete", "old", calls.get(0).get());
+        assertEquals("Call after forgetAll was counted as coalesced", 0, flight.getCoalesced());
+    }
+
+    private List<Future<String>> start(int count, final String key, final Callable<String> loader) {
+        List<Future<String>> calls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            calls.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return flight.execute(key, loader);
+                }
+            }));
+        }
+        return calls;
+    }
+
+    private void awaitCoalesced(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && flight.getCoalesced() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package be.foreseegroup.micro.resourceservice.contract.metrics;
+
+import org.junit.Test;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the windows of HdrHistogramReservoir, which follow the clock whether or not snapshots are read.
+ */
+public class HdrHistogramReservoirTest {
+
+    /** Test case: valuesShouldExpireWithoutSnapshots
+     *
+     * Test if values recorded more than two windows ago no longer count, even when no snapshot was read since
+     */
+    @Test
+    public void valuesShouldExpireWithoutSnapshots() throws Exception {
+        HdrHistogramReservoir reservoir = new HdrHistogramReservoir(100, TimeUnit.MILLISECONDS);
+        reservoir.update(1000);
+        Thread.sleep(250);
+        reservoir.update(5);
+
+        //Only the recent value is left
+        assertEquals("Expired value was still counted", 1, reservoir.getSnapshot().size());
+        assertEquals("Recent value was not counted", 5, reservoir.getSnapshot().getMax());
+
+        Thread.sleep(250);
+        assertEquals("Expired values were still counted", 0, reservoir.getSnapshot().size());
+    }
+
+    /** Test case: valuesShouldCountForTheNextWindow
+     *
+     * Test if a value still counts during the window after the one it was recorded in
+     */
+    @Test
+    public void valuesShouldCountForTheNextWindow() throws Exception {
+        HdrHistogramReservoir reservoir = new HdrHistogramReservoir(1, TimeUnit.SECONDS);
+        reservoir.update(1000);
+        assertEquals("Value of the current window was not counted", 1, reservoir.getSnapshot().size());
+
+        Thread.sleep(1100);
+        reservoir.update(5);
+        assertEquals("Value of the previous window was not counted", 2, reservoir.getSnapshot().size());
+    }
+}
@@ -0,0 +1,174 @@
+package be.foreseegroup.micro.resourceservice.contract.replica;
+
+import be.foreseegroup.micro.resourceservice.contract.ContractServiceApplication;
+import be.foreseegroup.micro.resourceservice.contract.cache.ContractCache;
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractDates;
+import be.foreseegroup.micro.resourceservice.contract.service.ContractRepository;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.boot.test.TestRestTemplate;
+import org.springframework.boot.test.WebIntegrationTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.web.client.RestTemplate;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the in-memory replica, in a context of their own with the replica enabled so ContractServiceTest covers
+ * the lookups served by the cache and Mongo. Contracts get units and consultants of their own per test, as
+ * clearing the collection does not clear the replica.
+ */
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = ContractServiceApplication.class)
+@WebIntegrationTest({"server.port=0", "contract.replica.enabled=true", "spring.jmx.enabled=false", "endpoints.jmx.enabled=false"})
+public class ContractReplicaTest {
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private ContractRepository repo;
+
+    @Autowired
+    private ContractReplica replica;
+
+    @Autowired
+    private ContractCache cache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private RestTemplate restTemplate = new TestRestTemplate();
+
+
+    @Before
+    public void setUp() throws Exception {
+        repo.deleteAll();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repo.deleteAll();
+    }
+
+    /** Test case: loadShouldCopyTheCollection
+     *
+     * Test if loading the replica copies the contracts in the database, so they are found by id, unit and consultant
+     */
+    @Test
+    public void loadShouldCopyTheCollection() {
+        String unitId = "replicaUnit" + System.nanoTime();
+        Contract first = repo.save(new Contract(unitId, unitId + "consultantId1", day("2015-01-01"), null, "type1"));
+        Contract second = repo.save(new Contract(unitId, unitId + "consultantId2", day("2015-02-01"), day("2016-02-01"), "type1"));
+
+        replica.load();
+
+        assertTrue("Replica was not loaded", replica.isLoaded());
+        Contract found = replica.findOne(first.getId());
+        assertNotNull("Loaded contract was not found", found);
+        assertEquals("Consultant of the loaded contract is invalid", first.getConsultantId(), found.getConsultantId());
+        assertEquals("Version of the loaded contract is invalid", first.getVersion(), found.getVersion());
+        assertEquals("Unit lookup did not return both contracts", 2, replica.findByUnitId(unitId).size());
+        assertEquals("Consultant lookup did not return the contract", second.getId(),
+                replica.findByConsultantId(second.getConsultantId()).get(0).getId());
+    }
+
+    /** Test case: refreshShouldReadContractsWrittenElsewhere
+     *
+     * Test if contracts written to the database without an event of this instance, as by another instance, show up
+     * in the replica once refreshed, and disappear once refreshed after their deletion
+     */
+    @Test
+    public void refreshShouldReadContractsWrittenElsewhere() {
+        String unitId = "replicaUnit" + System.nanoTime();
+        Contract contract = repo.save(new Contract(unitId, "consultantId1", day("2015-01-01"), null, "type1"));
+        assertNull("Contract written elsewhere was found before the refresh", replica.findOne(contract.getId()));
+
+        replica.refresh(Collections.singleton(contract.getId()));
+        assertNotNull("Contract written elsewhere was not found after the refresh", replica.findOne(contract.getId()));
+        assertEquals("Unit lookup did not return the refreshed contract", 1, replica.findByUnitId(unitId).size());
+
+        repo.delete(contract.getId());
+        replica.refresh(Collections.singleton(contract.getId()));
+        assertNull("Contract deleted elsewhere was still found after the refresh", replica.findOne(contract.getId()));
+        assertTrue("Unit lookup still returned the deleted contract", replica.findByUnitId(unitId).isEmpty());
+    }
+
+    /** Test case: lateEventsShouldNotResurrectDeletedContracts
+     *
+     * Test if an update event that arrives after the deletion of its contract is refused by the replica, an older
+     * version does not replace a later one, and a contract created again under the same id still shows up
+     */
+    @Test
+    public void lateEventsShouldNotResurrectDeletedContracts() {
+        String id = new ObjectId().toString();
+        String unitId = "replicaUnit" + System.nanoTime();
+        Contract original = new Contract(id, unitId, "consultantId1", day("2015-01-01"), null, "type1");
+        original.setVersion(1L);
+        Contract update = new Contract(id, unitId, "consultantId2", day("2015-01-01"), null, "type1");
+        update.setVersion(2L);
+        Contract recreated = new Contract(id, unitId, "consultantId3", day("2015-01-01"), null, "type1");
+        recreated.setVersion(3L);
+
+        //The update to version 2 overtakes the creation of version 1
+        eventPublisher.publishEvent(new ContractChangedEvent(this, original, update));
+        eventPublisher.publishEvent(new ContractChangedEvent(this, null, original));
+        assertEquals("Older version replaced the latest one", "consultantId2", replica.findOne(id).getConsultantId());
+
+        //The deletion of version 2 overtakes the update to version 2
+        eventPublisher.publishEvent(new ContractChangedEvent(this, update, null));
+        eventPublisher.publishEvent(new ContractChangedEvent(this, original, update));
+        assertNull("Late update brought back the deleted contract", replica.findOne(id));
+
+        //A version written after the deletion is stored
+        eventPublisher.publishEvent(new ContractChangedEvent(this, null, recreated));
+        assertEquals("Contract created again was not stored", "consultantId3", replica.findOne(id).getConsultantId());
+    }
+
+    /** Test case: lookupsShouldBeServedFromTheReplica
+     *
+     * Test if the cache and GET /contracts/{id} serve lookups from the loaded replica: a contract written to the
+     * database without an event is not found, until its event arrives
+     */
+    @Test
+    public void lookupsShouldBeServedFromTheReplica() {
+        replica.load();
+        assertTrue("Cache did not serve from the replica", cache.isReplicated());
+        String unitId = "replicaUnit" + System.nanoTime();
+        Contract contract = repo.save(new Contract(unitId, "consultantId1", day("2015-01-01"), null, "type1"));
+
+        //The database is not read
+        assertNull("Cache read the contract from the database", cache.findOne(contract.getId()));
+        ResponseEntity<Contract> response = restTemplate.getForEntity(resource() + "/{id}", Contract.class, contract.getId());
+        assertEquals("HttpStatus code did not match", HttpStatus.NOT_FOUND, response.getStatusCode());
+
+        eventPublisher.publishEvent(new ContractChangedEvent(this, null, contract));
+        assertEquals("Cache did not return the replicated contract", contract.getId(), cache.findOne(contract.getId()).getId());
+        assertEquals("Cache did not return the unit of the replicated contract", 1, cache.findByUnitId(unitId).size());
+        response = restTemplate.getForEntity(resource() + "/{id}", Contract.class, contract.getId());
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Returned entry is invalid", "consultantId1", response.getBody().getConsultantId());
+    }
+
+    private String resource() {
+        return "http://localhost:" + port + "/contracts";
+    }
+
+    private static Date day(String value) {
+        return ContractDates.parse(value);
+    }
+}
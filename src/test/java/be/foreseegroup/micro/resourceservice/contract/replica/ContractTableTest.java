@@ -0,0 +1,87 @@
+package be.foreseegroup.micro.resourceservice.contract.replica;
+
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractDates;
+import org.junit.Test;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of ContractTable on its own, the replica that maintains it is tested by ContractReplicaTest.
+ */
+public class ContractTableTest {
+
+    /** Test case: contractTableShouldFollowPutsAndRemoves
+     *
+     * Test if the compact table of the in-memory replica returns the contracts as they were stored, follows a change
+     * of consultant and a removal in its indexes, and keeps the latest version when an older one arrives late
+     */
+    @Test
+    public void contractTableShouldFollowPutsAndRemoves() {
+        ContractTable table = new ContractTable();
+        Contract first = new Contract("id1", "unitId1", "consultantId1", day("2015-01-01"), null, "type1");
+        first.setVersion(0L);
+        Contract second = new Contract("id2", "unitId1", "consultantId2", day("2015-02-01"), day("2016-02-01"), "type1");
+        second.setVersion(0L);
+        table.put(first);
+        table.put(second);
+
+        Contract found = table.findOne("id1");
+        assertEquals("Unit of the stored object is invalid", "unitId1", found.getUnitId());
+        assertEquals("Start date of the stored object is invalid", first.getStartDate(), found.getStartDate());
+        assertNull("End date of the stored object is invalid", found.getEndDate());
+        assertEquals("Unit lookup did not return both contracts", 2, table.findByUnitId("unitId1").size());
+
+        //Move the first contract to the second consultant
+        Contract moved = new Contract("id1", "unitId1", "consultantId2", day("2015-01-01"), null, "type1");
+        moved.setVersion(1L);
+        table.put(moved);
+        assertTrue("Old consultant still had the contract", table.findByConsultantId("consultantId1").isEmpty());
+        assertEquals("New consultant did not have the contract", 2, table.findByConsultantId("consultantId2").size());
+        assertFalse("Older version replaced the latest one", table.put(first));
+
+        table.remove("id2");
+        assertNull("Removed contract was still found", table.findOne("id2"));
+        assertEquals("Removed contract was still indexed", 1, table.findByUnitId("unitId1").size());
+        assertEquals("Table size did not match", 1, table.size());
+    }
+
+    /** Test case: contractTableShouldNotResurrectRemovedContracts
+     *
+     * Test if an update of a contract that arrives after its removal is refused by the table of the in-memory replica,
+     * while a later version and the state read again from Mongo are still stored
+     */
+    @Test
+    public void contractTableShouldNotResurrectRemovedContracts() {
+        ContractTable table = new ContractTable();
+        Contract original = new Contract("id1", "unitId1", "consultantId1", day("2015-01-01"), null, "type1");
+        original.setVersion(1L);
+        Contract update = new Contract("id1", "unitId1", "consultantId2", day("2015-01-01"), null, "type1");
+        update.setVersion(2L);
+        table.put(original);
+
+        //The removal of version 1 overtakes the update to version 2
+        table.remove("id1");
+        assertFalse("Update older than the removal was stored", table.put(original));
+        assertNull("Removed contract was found again", table.findOne("id1"));
+
+        //A version written after the removal is stored
+        assertTrue("Later version was refused", table.put(update));
+        assertEquals("Later version was not stored", "consultantId2", table.findOne("id1").getConsultantId());
+
+        //The state read from Mongo is stored, unless the contract was removed again while it was read
+        table.remove("id1");
+        Tombstones.Removal removal = table.removal("id1");
+        assertTrue("Contract read from Mongo was refused", table.putRead(original, removal));
+        assertNotNull("Contract read from Mongo was not stored", table.findOne("id1"));
+        removal = table.removal("id1");
+        table.remove("id1");
+        assertFalse("Contract read before a removal was stored", table.putRead(original, removal));
+        assertNull("Removed contract was found again", table.findOne("id1"));
+    }
+
+    private static Date day(String value) {
+        return ContractDates.parse(value);
+    }
+}
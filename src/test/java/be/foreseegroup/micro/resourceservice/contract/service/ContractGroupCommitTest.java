@@ -0,0 +1,187 @@
+package be.foreseegroup.micro.resourceservice.contract.service;
+
+import be.foreseegroup.micro.resourceservice.contract.ContractServiceApplication;
+import be.foreseegroup.micro.resourceservice.contract.aggregate.ContractAggregates;
+import be.foreseegroup.micro.resourceservice.contract.config.ContractProperties;
+import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractDates;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.boot.test.TestRestTemplate;
+import org.springframework.boot.test.WebIntegrationTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.*;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.web.client.RestTemplate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of POST /contracts with the group commit enabled, in a context of their own so ContractServiceTest covers
+ * the plain repository save.
+ */
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = ContractServiceApplication.class)
+@WebIntegrationTest({"server.port=0", "contract.groupCommit.enabled=true", "spring.jmx.enabled=false", "endpoints.jmx.enabled=false"})
+public class ContractGroupCommitTest {
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private ContractRepository repo;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ContractEventBatch eventBatch;
+
+    @Autowired
+    private ContractAggregates aggregates;
+
+    private RestTemplate restTemplate = new TestRestTemplate();
+
+
+    @Before
+    public void setUp() throws Exception {
+        repo.deleteAll();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repo.deleteAll();
+    }
+
+    /** Test case: concurrentCreatesShouldEachGetTheirOwnContract
+     *
+     * Test if creates that are written together in a group commit each return their own contract with its own ID,
+     * all end up in the database, are counted in the aggregates, and if the batches are recorded in the metrics
+     */
+    @Test
+    public void concurrentCreatesShouldEachGetTheirOwnContract() throws Exception {
+        final String unitId = "groupCommitUnit" + System.nanoTime();
+        Map<String, Number> before = metrics();
+        final HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<ResponseEntity<Contract>>> creates = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            final Contract contract = new Contract(unitId, "consultantId" + i, day("2015-01-01"), day("2016-01-01"), "type1");
+            creates.add(executor.submit(new Callable<ResponseEntity<Contract>>() {
+                @Override
+                public ResponseEntity<Contract> call() {
+                    return restTemplate.postForEntity(resource(), new HttpEntity<>(contract, requestHeaders), Contract.class);
+                }
+            }));
+        }
+
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < creates.size(); i++) {
+            ResponseEntity<Contract> response = creates.get(i).get();
+            assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+            assertEquals("Returned entry belongs to another create", "consultantId" + i, response.getBody().getConsultantId());
+            ids.add(response.getBody().getId());
+        }
+        executor.shutdown();
+        assertEquals("Creates did not get an ID each", 32, ids.size());
+        assertEquals("Not every create was added to the database", 32, repo.count());
+        assertEquals("Not every create was counted", 32, aggregates.forUnit(unitId).getTotal());
+
+        String batchSize = "histogram.contract.groupCommit.flush.resultSize.count";
+        assertTrue("Batches were not recorded", count(metrics(), batchSize) > count(before, batchSize));
+    }
+
+
+    /** Test case: insertShouldBeRejectedWhenNotWrittenInTime
+     *
+     * Test if a create whose batch is not written within the commit timeout is rejected, which POST /contracts
+     * answers with SERVICE_UNAVAILABLE (503)
+     * The contract is still written afterwards, under the id it was given, and its event is still published
+     */
+    @Test
+    public void insertShouldBeRejectedWhenNotWrittenInTime() throws Exception {
+        String unitId = "groupCommitUnit" + System.nanoTime();
+        Contract contract = new Contract(unitId, "consultantId1", day("2015-01-01"), day("2016-01-01"), "type1");
+        //The batch window outlasts the commit timeout
+        ContractGroupCommit groupCommit = groupCommit(2000, 100);
+        try {
+            groupCommit.insert(contract);
+            fail("Create was not rejected");
+        } catch (RejectedExecutionException e) {
+            assertTrue("Rejection was not caused by the timeout", e.getMessage().contains("in time"));
+        } finally {
+            //Stopping flushes the batch the create is waiting in
+            groupCommit.stop();
+        }
+        assertNotNull("Contract was not written under the id it was given", repo.findOne(contract.getId()));
+        assertEquals("Event of the late create was not published", 1, aggregates.forUnit(unitId).getTotal());
+    }
+
+    /** Test case: insertShouldBeRejectedOnceStopped
+     *
+     * Test if creates are rejected once the group commit is stopped, instead of waiting for a writer that is gone
+     */
+    @Test
+    public void insertShouldBeRejectedOnceStopped() throws Exception {
+        ContractGroupCommit groupCommit = groupCommit(2, 5000);
+        groupCommit.stop();
+        try {
+            groupCommit.insert(new Contract("unitId1", "consultantId1", day("2015-01-01"), day("2016-01-01"), "type1"));
+            fail("Create was not rejected");
+        } catch (RejectedExecutionException e) {
+            assertEquals("Contract was added to the database", 0, repo.count());
+        }
+    }
+
+    private ContractGroupCommit groupCommit(long windowMillis, long commitTimeoutMillis) {
+        ContractGroupCommit groupCommit = new ContractGroupCommit();
+        groupCommit.mongoTemplate = mongoTemplate;
+        groupCommit.eventPublisher = eventPublisher;
+        groupCommit.eventBatch = eventBatch;
+        groupCommit.properties = new ContractProperties();
+        groupCommit.properties.getGroupCommit().setWindowMillis(windowMillis);
+        groupCommit.properties.getGroupCommit().setCommitTimeoutMillis(commitTimeoutMillis);
+        groupCommit.start();
+        return groupCommit;
+    }
+
+    private String resource() {
+        return "http://localhost:" + port + "/contracts";
+    }
+
+    private Map<String, Number> metrics() {
+        return restTemplate.exchange("http://localhost:" + port + "/metrics", HttpMethod.GET, null,
+                new ParameterizedTypeReference<Map<String, Number>>() {}).getBody();
+    }
+
+    private static long count(Map<String, Number> metrics, String name) {
+        return metrics.containsKey(name) ? metrics.get(name).longValue() : 0;
+    }
+
+    private static Date day(String value) {
+        return ContractDates.parse(value);
+    }
+}
@@ -1,21 +1,66 @@
 package be.foreseegroup.micro.resourceservice.contract.service;
 
+import be.foreseegroup.micro.resourceservice.client.contract.ContractClient;
+import be.foreseegroup.micro.resourceservice.client.contract.ContractClientProperties;
 import be.foreseegroup.micro.resourceservice.contract.ContractServiceApplication;
+import be.foreseegroup.micro.resourceservice.contract.accesslog.ContractAccessLog;
+import be.foreseegroup.micro.resourceservice.contract.aggregate.ContractAggregates;
+import be.foreseegroup.micro.resourceservice.contract.async.ContractAsyncService;
+import be.foreseegroup.micro.resourceservice.contract.bulkhead.Bulkhead;
+import be.foreseegroup.micro.resourceservice.contract.bulkhead.ContractBulkheads;
+import be.foreseegroup.micro.resourceservice.contract.cache.ContractCache;
+import be.foreseegroup.micro.resourceservice.contract.coherence.ContractInvalidation;
+import be.foreseegroup.micro.resourceservice.contract.coherence.ContractInvalidationReceiver;
+import be.foreseegroup.micro.resourceservice.contract.coherence.InMemoryContractInvalidationTransport;
+import be.foreseegroup.micro.resourceservice.contract.event.ContractChangedEvent;
+import be.foreseegroup.micro.resourceservice.contract.format.ContractFormats;
+import be.foreseegroup.micro.resourceservice.contract.interval.ContractIntervalIndex;
+import be.foreseegroup.micro.resourceservice.contract.model.BulkOperation;
+import be.foreseegroup.micro.resourceservice.contract.model.BulkReport;
 import be.foreseegroup.micro.resourceservice.contract.model.Contract;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractAggregate;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractChange;
+import be.foreseegroup.micro.resourceservice.contract.model.ContractDates;
+import be.foreseegroup.micro.resourceservice.contract.snapshot.ContractSnapshots;
+import be.foreseegroup.micro.resourceservice.contract.startup.ContractWarmUp;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.SpringApplicationConfiguration;
 import org.springframework.boot.test.TestRestTemplate;
 import org.springframework.boot.test.WebIntegrationTest;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.web.client.RestTemplate;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -33,19 +78,53 @@ public class ContractServiceTest {
     private static final String UNIT_RESOURCE = ROOT_PATH + UNIT_PATH;
 
 
-    private static final Contract CONTRACT_1 = new Contract("unitId1", "consultantId1", "startDate1", "endDate1", "type1");
-    private static final Contract CONTRACT_2 = new Contract("unitId2", "consultantId2", "startDate2", "endDate2", "type2");
+    //Fresh instances per test, a saved Contract carries an id and version that would turn the next save into an update
+    private final Contract CONTRACT_1 = new Contract("unitId1", "consultantId1", day("2015-01-01"), day("2016-01-01"), "type1");
+    private final Contract CONTRACT_2 = new Contract("unitId2", "consultantId2", day("2015-02-01"), day("2016-02-01"), "type2");
     private static final String NON_EXISTING_ID = "nonExistingId";
 
     @Autowired
     private ContractRepository repo;
 
+    @Autowired
+    private ContractIndexVerifier indexVerifier;
+
+    @Autowired
+    private ContractCache cache;
+
+    @Autowired
+    private InMemoryContractInvalidationTransport invalidationTransport;
+
+    @Autowired
+    private ContractAccessLog accessLog;
+
+    @Autowired
+    private ContractWarmUp warmUp;
+
+    @Autowired
+    private ContractBulkheads bulkheads;
+
+    @Autowired
+    @Qualifier("contractReadExecutor")
+    private ThreadPoolTaskExecutor readExecutor;
+
+    @Autowired
+    private ContractIntervalIndex intervalIndex;
+
+    @Autowired
+    private ContractSnapshots snapshots;
+
+    @Autowired
+    private ContractAggregates aggregates;
+
     private RestTemplate restTemplate = new TestRestTemplate();
 
 
     @Before
     public void setUp() throws Exception {
         repo.deleteAll();
+        //The tests write to the repository directly, bypassing the cache invalidation of the service
+        cache.invalidateAll();
     }
 
     @After
@@ -92,6 +171,47 @@ public class ContractServiceTest {
 
     }
 
+    /** Test case: asyncGetShouldMatchSynchronousGet
+     *
+     * Test if the asynchronous variant of the lookups returns the same entries as the synchronous one
+     * The Http response should have HttpStatus Code: OK (200)
+     */
+    @Test
+    public void asyncGetShouldMatchSynchronousGet() {
+        Contract savedContract = repo.save(CONTRACT_1);
+
+        ResponseEntity<Contract> response = restTemplate.getForEntity(ROOT_PATH + "/async/contracts/" + savedContract.getId(), Contract.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("ID of the received object is invalid", savedContract.getId(), response.getBody().getId());
+
+        response = restTemplate.getForEntity(ROOT_PATH + "/async/contracts/" + NON_EXISTING_ID, Contract.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.NOT_FOUND, response.getStatusCode());
+
+        ResponseEntity<String> stream = restTemplate.getForEntity(ROOT_PATH + "/async/contracts/stream", String.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, stream.getStatusCode());
+        assertEquals("Response body did not contain one line per entry", 1, stream.getBody().trim().split("\n").length);
+    }
+
+    /** Test case: asyncStreamShouldSpanSeveralBatches
+     *
+     * Test if the asynchronous stream, which reads the cursor one batch at a time on the read executor, returns
+     * every entry exactly once when the collection holds several cursor batches
+     */
+    @Test
+    public void asyncStreamShouldSpanSeveralBatches() {
+        List<Contract> contracts = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            contracts.add(new Contract("unitId1", "consultantId" + i, day("2015-01-01"), day("2016-01-01"), "type1"));
+        }
+        repo.save(contracts);
+
+        ResponseEntity<String> stream = restTemplate.getForEntity(ROOT_PATH + "/async/contracts/stream", String.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, stream.getStatusCode());
+        String[] lines = stream.getBody().trim().split("\n");
+        assertEquals("Response body did not contain one line per entry", 1200, lines.length);
+        assertEquals("Entries were returned more than once", 1200, new HashSet<>(Arrays.asList(lines)).size());
+    }
+
     /** Test case: getUnexistingPersonShouldReturnHttpNotFoundError
      *
      * Test if a GET result on an unexisting entry return an error
@@ -159,6 +279,214 @@ public class ContractServiceTest {
     }
 
 
+    /** Test case: getPageShouldFollowCursorUntilExhausted
+     *
+     * Test if paging through the collection with the "next" Link header visits every entry exactly once
+     * Each Http response should have HttpStatus code: OK (200)
+     */
+    @Test
+    public void getPageShouldFollowCursorUntilExhausted() {
+        for (int i = 0; i < 5; i++) {
+            repo.save(new Contract("unitId" + i, "consultantId" + i, day("2015-0" + (i + 1) + "-01"), day("2016-0" + (i + 1) + "-01"), "type" + i));
+        }
+
+        ParameterizedTypeReference<List<Contract>> responseType = new ParameterizedTypeReference<List<Contract>>() {};
+        Set<String> seenIds = new HashSet<>();
+        String url = UNIT_RESOURCE + "?size=2";
+        int pages = 0;
+        while (url != null) {
+            ResponseEntity<List<Contract>> response = restTemplate.exchange(url, HttpMethod.GET, null, responseType);
+            assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+            for (Contract c : response.getBody()) {
+                assertTrue("Entry was returned on more than one page", seenIds.add(c.getId()));
+            }
+            pages++;
+
+            String link = response.getHeaders().getFirst("Link");
+            url = link == null ? null : link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+        }
+
+        //5 entries with a page size of 2 yields 3 pages
+        assertEquals("Amount of pages did not match", 3, pages);
+        assertEquals("Not every entry was returned", 5, seenIds.size());
+    }
+
+    /** Test case: getPageShouldFollowCursorAcrossIdTypes
+     *
+     * Test if paging visits every entry when client supplied ids that are not ObjectIds, which Mongo sorts before all
+     * ObjectIds, are mixed with generated ones, with and without a filter
+     * Each Http response should have HttpStatus code: OK (200)
+     */
+    @Test
+    public void getPageShouldFollowCursorAcrossIdTypes() {
+        for (int i = 0; i < 3; i++) {
+            repo.save(new Contract("contract-" + i, "unitId1", "consultantId" + i, day("2015-01-01"), day("2016-01-01"), "type1"));
+            repo.save(new Contract("unitId1", "consultantId" + i, day("2015-01-01"), day("2016-01-01"), "type1"));
+        }
+
+        for (String first : Arrays.asList(UNIT_RESOURCE + "?size=2", UNIT_RESOURCE + "?size=2&type=type1")) {
+            ParameterizedTypeReference<List<Contract>> responseType = new ParameterizedTypeReference<List<Contract>>() {};
+            Set<String> seenIds = new HashSet<>();
+            String url = first;
+            while (url != null) {
+                ResponseEntity<List<Contract>> response = restTemplate.exchange(url, HttpMethod.GET, null, responseType);
+                assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+                for (Contract c : response.getBody()) {
+                    assertTrue("Entry was returned on more than one page", seenIds.add(c.getId()));
+                }
+                String link = response.getHeaders().getFirst("Link");
+                url = link == null ? null : link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+            }
+
+            //Paging must not stop at the last string id
+            assertEquals("Not every entry was returned by " + first, 6, seenIds.size());
+        }
+    }
+
+    /** Test case: streamShouldReturnOneEntryPerLine
+     *
+     * Test if the NDJSON stream returns every entry on its own line
+     */
+    @Test
+    public void streamShouldReturnOneEntryPerLine() {
+        repo.save(CONTRACT_1);
+        repo.save(CONTRACT_2);
+
+        ResponseEntity<String> response = restTemplate.getForEntity(UNIT_RESOURCE + "/stream", String.class);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Response body did not contain one line per entry", 2, response.getBody().trim().split("\n").length);
+    }
+
+    /** Test case: getActiveShouldReturnContractsRunningOnDay
+     *
+     * Test if only the Contracts that started on or before the day and end on or after it, or never end, are returned
+     * The Http response should have HttpStatus Code: OK (200)
+     */
+    @Test
+    public void getActiveShouldReturnContractsRunningOnDay() {
+        repo.save(new Contract("unitId1","consultantId1",day("2015-01-01"),day("2015-12-31"),"type1"));
+        repo.save(new Contract("unitId2","consultantId2",day("2015-06-01"),null,"type2"));
+        repo.save(new Contract("unitId3","consultantId3",day("2014-01-01"),day("2014-12-31"),"type3"));
+        repo.save(new Contract("unitId4","consultantId4",day("2016-01-01"),day("2016-12-31"),"type4"));
+
+        ParameterizedTypeReference<List<Contract>> responseType = new ParameterizedTypeReference<List<Contract>>() {};
+        ResponseEntity<List<Contract>> response = restTemplate.exchange(UNIT_RESOURCE + "/active?on=2015-07-01", HttpMethod.GET, null, responseType);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Response body size did not match", 2, response.getBody().size());
+    }
+
+    /** Test case: getEndingBeforeShouldReturnExpiringContracts
+     *
+     * Test if only the Contracts ending in the requested window are returned, ordered by end date
+     * The Http response should have HttpStatus Code: OK (200)
+     */
+    @Test
+    public void getEndingBeforeShouldReturnExpiringContracts() {
+        repo.save(new Contract("unitId1","consultantId1",day("2015-01-01"),day("2015-03-15"),"type1"));
+        repo.save(new Contract("unitId2","consultantId2",day("2015-01-01"),day("2015-03-01"),"type2"));
+        repo.save(new Contract("unitId3","consultantId3",day("2015-01-01"),day("2015-05-01"),"type3"));
+        repo.save(new Contract("unitId4","consultantId4",day("2015-01-01"),day("2015-01-15"),"type4"));
+
+        String url = UNIT_RESOURCE + "?endAfter=2015-02-01&endBefore=2015-04-01";
+        ParameterizedTypeReference<List<Contract>> responseType = new ParameterizedTypeReference<List<Contract>>() {};
+        ResponseEntity<List<Contract>> response = restTemplate.exchange(url, HttpMethod.GET, null, responseType);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Response body size did not match", 2, response.getBody().size());
+        assertEquals("Entries were not ordered by end date", "unitId2", response.getBody().get(0).getUnitId());
+    }
+
+    /** Test case: getActiveWithInvalidDayShouldReturnBadRequest
+     *
+     * Test if a day that is not formatted as yyyy-MM-dd results in HttpStatus code: BAD_REQUEST (400)
+     */
+    @Test
+    public void getActiveWithInvalidDayShouldReturnBadRequest() {
+        ResponseEntity<String> response = restTemplate.getForEntity(UNIT_RESOURCE + "/active?on=notADay", String.class);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.BAD_REQUEST, response.getStatusCode());
+
+        //A valid day followed by anything else is not a day either
+        response = restTemplate.getForEntity(UNIT_RESOURCE + "/active?on=2015-01-01garbage", String.class);
+
+        assertEquals("HttpStatus code with trailing characters did not match", HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    /** Test case: getAllWithQueryShouldFilterSortAndProject
+     *
+     * Test if the query parameters filter on type and date, order descending on start date and only return the
+     * requested fields, on the full list as well as on a lookup by unit
+     * An unknown field should result in HttpStatus code: BAD_REQUEST (400)
+     */
+    @Test
+    public void getAllWithQueryShouldFilterSortAndProject() throws Exception {
+        repo.save(new Contract("unitId1","consultantId1",day("2015-01-01"),day("2015-12-31"),"type1"));
+        repo.save(new Contract("unitId1","consultantId2",day("2015-06-01"),null,"type1"));
+        repo.save(new Contract("unitId1","consultantId3",day("2014-01-01"),day("2014-12-31"),"type1"));
+        repo.save(new Contract("unitId2","consultantId4",day("2015-03-01"),day("2015-12-31"),"type2"));
+
+        String url = UNIT_RESOURCE + "?type=type1&startDate.gte=2015-01-01&sort=-startDate&fields=unitId,consultantId";
+        ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        List<Map<String, Object>> contracts = new ObjectMapper().readValue(response.getBody(), new TypeReference<List<Map<String, Object>>>() {});
+        assertEquals("Response body size did not match", 2, contracts.size());
+        assertEquals("Entries were not ordered by descending start date", "consultantId2", contracts.get(0).get("consultantId"));
+        assertEquals("Fields other than the requested ones were returned", new HashSet<>(Arrays.asList("unitId", "consultantId")), contracts.get(0).keySet());
+
+        //The lookup by unit narrows down the same way, leaving out the fields that were not asked for
+        url = ROOT_PATH + "/contractsbyuid/unitId1?startDate.lt=2015-01-01&fields=id";
+        response = restTemplate.getForEntity(url, String.class);
+        contracts = new ObjectMapper().readValue(response.getBody(), new TypeReference<List<Map<String, Object>>>() {});
+        assertEquals("Response body size did not match", 1, contracts.size());
+        assertEquals("Fields other than the requested ones were returned", Collections.singleton("id"), contracts.get(0).keySet());
+
+        response = restTemplate.getForEntity(UNIT_RESOURCE + "?salary=1", String.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    /** Test case: getPageWithQueryShouldFilterEachPage
+     *
+     * Test if a paged request applies the same filters as the full list, on every page it links to, and if an end
+     * date window can be combined with a page size
+     * An unknown field or a sort order, which pages do not support, should result in HttpStatus code: BAD_REQUEST (400)
+     */
+    @Test
+    public void getPageWithQueryShouldFilterEachPage() {
+        for (int i = 0; i < 5; i++) {
+            repo.save(new Contract("unitId1","consultantId" + i,day("2015-01-01"),day("2015-03-0" + (i + 1)),"type1"));
+            repo.save(new Contract("unitId2","consultantId" + i,day("2015-01-01"),day("2015-06-0" + (i + 1)),"type2"));
+        }
+
+        //Follow the pages of type1 contracts
+        ParameterizedTypeReference<List<Contract>> responseType = new ParameterizedTypeReference<List<Contract>>() {};
+        List<Contract> found = new ArrayList<>();
+        String url = UNIT_RESOURCE + "?size=2&type=type1";
+        while (url != null) {
+            ResponseEntity<List<Contract>> response = restTemplate.exchange(url, HttpMethod.GET, null, responseType);
+            assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+            for (Contract contract : response.getBody()) {
+                assertEquals("Page contained a contract of another type", "type1", contract.getType());
+                found.add(contract);
+            }
+            String link = response.getHeaders().getFirst("Link");
+            url = link == null ? null : link.substring(1, link.indexOf('>'));
+        }
+        assertEquals("Pages did not contain every type1 contract", 5, found.size());
+
+        //An end date window together with a page size is answered by the paged endpoint
+        ResponseEntity<List<Contract>> response = restTemplate.exchange(UNIT_RESOURCE + "?size=10&endBefore=2015-03-03",
+                HttpMethod.GET, null, responseType);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Response body size did not match", 2, response.getBody().size());
+
+        ResponseEntity<String> invalid = restTemplate.getForEntity(UNIT_RESOURCE + "?size=2&salary=1", String.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+        invalid = restTemplate.getForEntity(UNIT_RESOURCE + "?size=2&sort=-startDate", String.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+    }
+
     /** Test case: getContractsByConsultantIdShouldReturnContracts
      *
      * Test if a GET result based on ConsultantId returns the Contracts where the specifiec ConsultantId is involved
@@ -169,11 +497,11 @@ public class ContractServiceTest {
     public void getContractsByConsultantIdShouldReturnContracts() {
         //Add the Contracts that we will try to GET request to the database;
 
-        Contract a = new Contract("unitId1","consultantId1","startDate1","endDate1","type1");
-        Contract b = new Contract("unitId2","consultantId1","startDate2","endDate2","type2");
-        Contract c = new Contract("unitId3","consultantId1","startDate3","endDate3","type3");
-        Contract d = new Contract("unitId4","consultantId4","startDate4","endDate4","type4");
-        Contract e = new Contract("unitId5","consultantId5","startDate5","endDate5","type5");
+        Contract a = new Contract("unitId1","consultantId1",day("2015-01-01"),day("2016-01-01"),"type1");
+        Contract b = new Contract("unitId2","consultantId1",day("2015-02-01"),day("2016-02-01"),"type2");
+        Contract c = new Contract("unitId3","consultantId1",day("2015-03-01"),day("2016-03-01"),"type3");
+        Contract d = new Contract("unitId4","consultantId4",day("2015-04-01"),day("2016-04-01"),"type4");
+        Contract e = new Contract("unitId5","consultantId5",day("2015-05-01"),day("2016-05-01"),"type5");
 
         repo.save(a);
         repo.save(b);
@@ -213,6 +541,90 @@ public class ContractServiceTest {
 
 
 
+    /** Test case: getRefsByConsultantIdShouldReturnIndexedFieldsOnly
+     *
+     * Test if the covered ref lookup returns every Contract of the consultant, but only the indexed fields
+     * The Http response should have HttpStatus Code: OK (200)
+     */
+    @Test
+    public void getRefsByConsultantIdShouldReturnIndexedFieldsOnly() {
+        repo.save(new Contract("unitId1","consultantId1",day("2015-01-01"),day("2016-01-01"),"type1"));
+        repo.save(new Contract("unitId2","consultantId1",day("2015-02-01"),day("2016-02-01"),"type2"));
+        repo.save(new Contract("unitId3","consultantId3",day("2015-03-01"),day("2016-03-01"),"type3"));
+
+        String url = ROOT_PATH + "/contractsbycid/consultantId1/refs";
+
+        ParameterizedTypeReference<List<Contract>> responseType = new ParameterizedTypeReference<List<Contract>>() {};
+        ResponseEntity<List<Contract>> response = restTemplate.exchange(url, HttpMethod.GET, null, responseType);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Response body size did not match", 2, response.getBody().size());
+        for (Contract c : response.getBody()) {
+            assertNotNull("ID was not projected", c.getId());
+            assertEquals("consultantId was not projected", "consultantId1", c.getConsultantId());
+            assertNotNull("startDate was not projected", c.getStartDate());
+            assertNull("Non indexed field was projected", c.getType());
+        }
+    }
+
+    /** Test case: declaredIndexesShouldExist
+     *
+     * Test if every index declared on Contract was created in the collection at startup
+     */
+    @Test
+    public void declaredIndexesShouldExist() {
+        assertTrue("Declared indexes were not created", indexVerifier.findMissingIndexes().isEmpty());
+    }
+
+    /** Test case: getContractsByConsultantIdsShouldGroupByConsultant
+     *
+     * Test if a batch lookup of several consultants returns the Contracts of each consultant under its own key,
+     * including consultants without Contracts
+     * The Http response should have HttpStatus Code: OK (200)
+     */
+    @Test
+    public void getContractsByConsultantIdsShouldGroupByConsultant() {
+        repo.save(new Contract("unitId1","consultantId1",day("2015-01-01"),day("2016-01-01"),"type1"));
+        repo.save(new Contract("unitId2","consultantId1",day("2015-02-01"),day("2016-02-01"),"type2"));
+        repo.save(new Contract("unitId3","consultantId2",day("2015-03-01"),day("2016-03-01"),"type3"));
+        repo.save(new Contract("unitId4","consultantId4",day("2015-04-01"),day("2016-04-01"),"type4"));
+
+        //Cache one of the consultants so the batch lookup mixes hits and misses
+        restTemplate.getForEntity(ROOT_PATH + "/contractsbycid/consultantId2", String.class);
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<List<String>> httpEntity = new HttpEntity<>(Arrays.asList("consultantId1", "consultantId2", "consultantId3"), requestHeaders);
+        ParameterizedTypeReference<Map<String, List<Contract>>> responseType = new ParameterizedTypeReference<Map<String, List<Contract>>>() {};
+        ResponseEntity<Map<String, List<Contract>>> response = restTemplate.exchange(ROOT_PATH + "/contractsbycid", HttpMethod.POST, httpEntity, responseType);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Amount of keys did not match", 3, response.getBody().size());
+        assertEquals("Contracts of consultantId1 did not match", 2, response.getBody().get("consultantId1").size());
+        assertEquals("Contracts of consultantId2 did not match", 1, response.getBody().get("consultantId2").size());
+        assertEquals("Contracts of consultantId3 did not match", 0, response.getBody().get("consultantId3").size());
+    }
+
+    /** Test case: getContractsByConsultantIdsShouldKeepRequestOrder
+     *
+     * Test if a batch lookup returns the consultants in the order in which they were requested
+     * The Http response should have HttpStatus Code: OK (200)
+     */
+    @Test
+    public void getContractsByConsultantIdsShouldKeepRequestOrder() {
+        repo.save(new Contract("unitId1","consultantId1",day("2015-01-01"),day("2016-01-01"),"type1"));
+
+        List<String> consultantIds = Arrays.asList("consultantId9", "consultantId1", "consultantId5", "consultantId3", "consultantId7");
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<List<String>> httpEntity = new HttpEntity<>(consultantIds, requestHeaders);
+        ParameterizedTypeReference<Map<String, List<Contract>>> responseType = new ParameterizedTypeReference<Map<String, List<Contract>>>() {};
+        ResponseEntity<Map<String, List<Contract>>> response = restTemplate.exchange(ROOT_PATH + "/contractsbycid", HttpMethod.POST, httpEntity, responseType);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Order of the keys did not match", consultantIds, new ArrayList<>(response.getBody().keySet()));
+    }
+
     /** Test case: getContractsByUnitIdShouldReturnContracts
      *
      * Test if a GET result based on ConsultantId returns the Contracts where the specifiec ConsultantId is involved
@@ -223,11 +635,11 @@ public class ContractServiceTest {
     public void getContractsByUnitIdShouldReturnContracts() {
         //Add the Contracts that we will try to GET request to the database;
 
-        Contract a = new Contract("unitId1","consultantId1","startDate1","endDate1","type1");
-        Contract b = new Contract("unitId1","consultantId2","startDate2","endDate2","type2");
-        Contract c = new Contract("unitId1","consultantId3","startDate3","endDate3","type3");
-        Contract d = new Contract("unitId4","consultantId4","startDate4","endDate4","type4");
-        Contract e = new Contract("unitId5","consultantId5","startDate5","endDate5","type5");
+        Contract a = new Contract("unitId1","consultantId1",day("2015-01-01"),day("2016-01-01"),"type1");
+        Contract b = new Contract("unitId1","consultantId2",day("2015-02-01"),day("2016-02-01"),"type2");
+        Contract c = new Contract("unitId1","consultantId3",day("2015-03-01"),day("2016-03-01"),"type3");
+        Contract d = new Contract("unitId4","consultantId4",day("2015-04-01"),day("2016-04-01"),"type4");
+        Contract e = new Contract("unitId5","consultantId5",day("2015-05-01"),day("2016-05-01"),"type5");
 
         repo.save(a);
         repo.save(b);
@@ -315,6 +727,129 @@ public class ContractServiceTest {
         assertEquals("More than one record was added to the database", 1, repo.count());
     }
 
+    /** Test case: availabilityAndOverlapsShouldFollowContractPeriods
+     *
+     * Test if the consultants under contract in a period and the contracts overlapping a new period are found,
+     * including contracts that only touch the period on its first or last day, and if updates and deletes of
+     * contracts through the service move them in and out of the results
+     */
+    @Test
+    public void availabilityAndOverlapsShouldFollowContractPeriods() {
+        //The tests write to the repository directly, bypassing the events that maintain the index
+        intervalIndex.rebuild();
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        Contract first = restTemplate.postForEntity(UNIT_RESOURCE, new HttpEntity<>(
+                new Contract("unitId1", "consultantId1", day("2031-01-01"), day("2031-03-31"), "type1"), requestHeaders), Contract.class).getBody();
+        Contract second = restTemplate.postForEntity(UNIT_RESOURCE, new HttpEntity<>(
+                new Contract("unitId1", "consultantId1", day("2031-06-01"), null, "type1"), requestHeaders), Contract.class).getBody();
+        Contract other = restTemplate.postForEntity(UNIT_RESOURCE, new HttpEntity<>(
+                new Contract("unitId2", "consultantId2", day("2031-03-01"), day("2031-06-30"), "type2"), requestHeaders), Contract.class).getBody();
+
+        //Check who is under contract
+        ParameterizedTypeReference<Map<String, List<String>>> byConsultant = new ParameterizedTypeReference<Map<String, List<String>>>() {};
+        Map<String, List<String>> underContract = restTemplate.exchange(UNIT_RESOURCE + "/availability?from=2031-03-31&to=2031-05-31",
+                HttpMethod.GET, null, byConsultant).getBody();
+        assertEquals("Wrong contracts under contract on the last day of a contract",
+                Arrays.asList(first.getId()), underContract.get("consultantId1"));
+        assertEquals("Wrong contracts under contract in the middle of a contract",
+                Arrays.asList(other.getId()), underContract.get("consultantId2"));
+        underContract = restTemplate.exchange(UNIT_RESOURCE + "/availability?from=2031-04-01&to=2031-05-31",
+                HttpMethod.GET, null, byConsultant).getBody();
+        assertFalse("Consultant between contracts was under contract", underContract.containsKey("consultantId1"));
+        underContract = restTemplate.exchange(UNIT_RESOURCE + "/availability?from=2040-01-01&to=2040-12-31",
+                HttpMethod.GET, null, byConsultant).getBody();
+        assertEquals("Contract without end date did not run indefinitely", Arrays.asList(second.getId()), underContract.get("consultantId1"));
+
+        //Check the overlaps of a new contract
+        ParameterizedTypeReference<List<Contract>> contracts = new ParameterizedTypeReference<List<Contract>>() {};
+        String overlaps = ROOT_PATH + "/contractsbycid/consultantId1/overlaps";
+        List<Contract> overlapping = restTemplate.exchange(overlaps + "?start=2031-03-15", HttpMethod.GET, null, contracts).getBody();
+        assertEquals("Open ended period did not overlap both contracts", 2, overlapping.size());
+        assertEquals("Overlaps were not in start order", first.getId(), overlapping.get(0).getId());
+        overlapping = restTemplate.exchange(overlaps + "?start=2031-04-01&end=2031-05-31", HttpMethod.GET, null, contracts).getBody();
+        assertTrue("Period between contracts overlapped", overlapping.isEmpty());
+        overlapping = restTemplate.exchange(overlaps + "?start=2031-01-15&end=2031-02-15&exclude=" + first.getId(),
+                HttpMethod.GET, null, contracts).getBody();
+        assertTrue("Excluded contract overlapped", overlapping.isEmpty());
+
+        //Check that updates and deletes are followed
+        first.setEndDate(day("2031-05-31"));
+        Contract updated = restTemplate.exchange(UNIT_RESOURCE + "/" + first.getId(), HttpMethod.PUT, new HttpEntity<>(first, requestHeaders), Contract.class).getBody();
+        overlapping = restTemplate.exchange(overlaps + "?start=2031-04-01&end=2031-05-31", HttpMethod.GET, null, contracts).getBody();
+        assertEquals("Updated contract did not overlap", 1, overlapping.size());
+        restTemplate.delete(UNIT_RESOURCE + "/" + first.getId());
+        overlapping = restTemplate.exchange(overlaps + "?start=2031-04-01&end=2031-05-31", HttpMethod.GET, null, contracts).getBody();
+        assertTrue("Deleted contract still overlapped", overlapping.isEmpty());
+
+        //Check that the event of the update arriving after the delete does not bring the contract back
+        intervalIndex.onApplicationEvent(new ContractChangedEvent(this, first, updated));
+        overlapping = restTemplate.exchange(overlaps + "?start=2031-04-01&end=2031-05-31", HttpMethod.GET, null, contracts).getBody();
+        assertTrue("Late update brought the deleted contract back", overlapping.isEmpty());
+
+        //Check invalid periods
+        ResponseEntity<String> invalid = restTemplate.getForEntity(UNIT_RESOURCE + "/availability?from=2031-12-31&to=2031-01-01", String.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+        invalid = restTemplate.getForEntity(overlaps + "?start=yesterday", String.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+    }
+
+    /** Test case: clientShouldBatchConcurrentLookupsAndCacheThem
+     *
+     * Test if the contract client, pointed at this instance, sends concurrent lookups as one request, serves
+     * repeated lookups from its cache, and sees its own writes right away
+     */
+    @Test
+    public void clientShouldBatchConcurrentLookupsAndCacheThem() throws Exception {
+        final List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            ids.add(repo.save(new Contract("unitId1", "consultantId" + i, day("2015-01-01"), day("2016-01-01"), "type1")).getId());
+        }
+        ContractClientProperties clientProperties = new ContractClientProperties();
+        clientProperties.setUrls(Arrays.asList(ROOT_PATH));
+        clientProperties.getBatch().setWindowMillis(50);
+        clientProperties.getCache().setEnabled(true);
+        try (final ContractClient client = new ContractClient(clientProperties, null)) {
+            //Look up every contract from its own thread at the same time
+            ExecutorService executor = Executors.newFixedThreadPool(ids.size());
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<be.foreseegroup.micro.resourceservice.client.contract.Contract>> lookups = new ArrayList<>();
+            for (final String id : ids) {
+                lookups.add(executor.submit(new Callable<be.foreseegroup.micro.resourceservice.client.contract.Contract>() {
+                    @Override
+                    public be.foreseegroup.micro.resourceservice.client.contract.Contract call() throws Exception {
+                        start.await();
+                        return client.findOne(id);
+                    }
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < ids.size(); i++) {
+                be.foreseegroup.micro.resourceservice.client.contract.Contract contract = lookups.get(i).get();
+                assertNotNull("Contract was not found", contract);
+                assertEquals("Returned entry belongs to another lookup", "consultantId" + i, contract.getConsultantId());
+                assertEquals("startDate did not match", day("2015-01-01"), contract.getStartDate());
+            }
+            executor.shutdown();
+            assertTrue("Concurrent lookups were not batched", client.getRequests() < ids.size());
+
+            //Check that repeated lookups are served from the cache
+            long requests = client.getRequests();
+            client.findOne(ids.get(0));
+            assertNull("Unexisting contract was found", client.findOne(NON_EXISTING_ID));
+            assertNull("Unexisting contract was found", client.findOne(NON_EXISTING_ID));
+            assertEquals("Cached lookups were sent again", requests + 1, client.getRequests());
+
+            //Check that writes through the client evict what they change
+            assertEquals("Wrong number of contracts for the consultant", 1, client.findByConsultantId("consultantId0").size());
+            client.create(new be.foreseegroup.micro.resourceservice.client.contract.Contract(
+                    "unitId2", "consultantId0", day("2016-01-01"), null, "type2"));
+            assertEquals("Created contract was not seen", 2, client.findByConsultantId("consultantId0").size());
+            client.delete(ids.get(0));
+            assertNull("Deleted contract was still found", client.findOne(ids.get(0)));
+        }
+    }
+
     /** Test case: createContractWithoutBodyShouldNotAddContract
      *
      * Test if a POST request without a body does not result in an entry added to the database
@@ -344,6 +879,132 @@ public class ContractServiceTest {
         assertEquals("An entry was added to the database", 0, repo.count());
     }
 
+    /** Test case: snapshotShouldRestoreTheCollection
+     *
+     * Test if an exported snapshot restores every contract into an empty collection, if importing it again skips
+     * the contracts that are already present, and if a damaged snapshot is rejected without inserting anything
+     * Also, an import should rebuild the aggregates and tell the other instances to reload everything
+     */
+    @Test
+    public void snapshotShouldRestoreTheCollection() throws Exception {
+        Contract first = repo.save(CONTRACT_1);
+        repo.save(CONTRACT_2);
+        File file = File.createTempFile("contracts", ".snapshot");
+        final List<ContractInvalidation> received = new CopyOnWriteArrayList<>();
+        ContractInvalidationReceiver otherInstance = new ContractInvalidationReceiver(cache, null) {
+            @Override
+            public void receive(ContractInvalidation invalidation) {
+                received.add(invalidation);
+            }
+        };
+        invalidationTransport.register(otherInstance);
+        try {
+            //Export and restore into an empty collection
+            assertEquals("Not every contract was exported", 2, snapshots.export(file));
+            repo.deleteAll();
+            assertEquals("Not every contract was imported", 2, snapshots.restore(file));
+            assertEquals("Wrong number of records in the database", 2, repo.count());
+            Contract restored = repo.findOne(first.getId());
+            assertNotNull("Contract was not restored with its ID", restored);
+            assertEquals("consultantId did not match", first.getConsultantId(), restored.getConsultantId());
+            assertEquals("startDate did not match", first.getStartDate(), restored.getStartDate());
+            assertEquals("endDate did not match", first.getEndDate(), restored.getEndDate());
+
+            //Check that the counters were rebuilt from the collection and the other instances were told
+            ContractAggregate aggregate = restTemplate.getForEntity(ROOT_PATH + "/contracts/aggregates/byunit/" + first.getUnitId(), ContractAggregate.class).getBody();
+            assertEquals("Total did not match", repo.findByUnitIdIn(Collections.singleton(first.getUnitId())).size(), aggregate.getTotal());
+            assertEquals("Wrong number of invalidations sent", 1, received.size());
+            assertTrue("Invalidation did not cover all contracts", received.get(0).isAll());
+
+            //Check that a second import skips the existing contracts
+            assertEquals("Existing contracts were imported again", 0, snapshots.restore(file));
+            assertEquals("Wrong number of records in the database", 2, repo.count());
+
+            //Damage one byte of the first contract
+            repo.deleteAll();
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.seek(24);
+                int value = raf.read();
+                raf.seek(24);
+                raf.write(value ^ 0xff);
+            }
+            try {
+                snapshots.restore(file);
+                fail("Damaged snapshot was imported");
+            } catch (IOException e) {
+                assertEquals("Contracts of a damaged snapshot were inserted", 0, repo.count());
+            }
+        } finally {
+            invalidationTransport.unregister(otherInstance);
+            file.delete();
+        }
+    }
+
+    /** Test case: bulkShouldApplyMixedOperationsAndReportEachItem
+     *
+     * Test if a bulk request creates, updates and deletes entries and reports the outcome of every operation
+     * The Http Request response should have HttpStatus code: OK (200)
+     */
+    @Test
+    public void bulkShouldApplyMixedOperationsAndReportEachItem() {
+        Contract toUpdate = repo.save(CONTRACT_1);
+        Contract toDelete = repo.save(CONTRACT_2);
+        toUpdate.setType("typeEdited");
+
+        List<BulkOperation> operations = new ArrayList<>();
+        operations.add(new BulkOperation(BulkOperation.UPSERT, null, new Contract("unitId3","consultantId3",day("2015-03-01"),day("2016-03-01"),"type3")));
+        operations.add(new BulkOperation(BulkOperation.UPSERT, null, toUpdate));
+        operations.add(new BulkOperation(BulkOperation.DELETE, toDelete.getId(), null));
+        operations.add(new BulkOperation(BulkOperation.DELETE, NON_EXISTING_ID, null));
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<BulkReport> response = restTemplate.postForEntity(UNIT_RESOURCE + "/bulk", new HttpEntity<>(operations, requestHeaders), BulkReport.class);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        BulkReport report = response.getBody();
+        assertEquals("Amount of created entries did not match", 1, report.getCreated());
+        assertEquals("Amount of updated entries did not match", 1, report.getUpdated());
+        assertEquals("Amount of deleted entries did not match", 1, report.getDeleted());
+        assertEquals("Amount of failed operations did not match", 1, report.getFailed());
+        assertEquals("Failed operation did not match", 3, report.getItems().get(3).getIndex());
+
+        assertEquals("Bulk operations were not applied to the database", 2, repo.count());
+        assertEquals("Update was not saved to the database", "typeEdited", repo.findOne(toUpdate.getId()).getType());
+        assertNotNull("Created entry was not saved to the database", repo.findOne(report.getItems().get(0).getId()));
+    }
+
+    /** Test case: bulkShouldRejectRepeatedIds
+     *
+     * Test if only the first operation on a contract is applied when a bulk request touches it more than once,
+     * and the later ones are reported as BAD_REQUEST (400)
+     */
+    @Test
+    public void bulkShouldRejectRepeatedIds() {
+        Contract existing = repo.save(CONTRACT_1);
+        existing.setType("typeEdited");
+        Contract again = new Contract(existing.getId(), existing.getUnitId(), existing.getConsultantId(), existing.getStartDate(), existing.getEndDate(), "typeAgain");
+
+        List<BulkOperation> operations = new ArrayList<>();
+        operations.add(new BulkOperation(BulkOperation.UPSERT, null, existing));
+        operations.add(new BulkOperation(BulkOperation.UPSERT, null, again));
+        operations.add(new BulkOperation(BulkOperation.DELETE, existing.getId(), null));
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        BulkReport report = restTemplate.postForEntity(UNIT_RESOURCE + "/bulk", new HttpEntity<>(operations, requestHeaders), BulkReport.class).getBody();
+
+        assertEquals("Amount of updated entries did not match", 1, report.getUpdated());
+        assertEquals("Amount of failed operations did not match", 2, report.getFailed());
+        assertEquals("Repeated upsert was not rejected", 400, report.getItems().get(1).getStatus());
+        assertEquals("Repeated delete was not rejected", 400, report.getItems().get(2).getStatus());
+
+        Contract saved = repo.findOne(existing.getId());
+        assertNotNull("Contract was deleted by a repeated operation", saved);
+        assertEquals("Update was not saved to the database", "typeEdited", saved.getType());
+        assertEquals("Version was not incremented once", Long.valueOf(ContractEtags.versionOf(existing) + 1), saved.getVersion());
+    }
+
     /** Test case: editContractShouldSaveEditionsAndReturnUpdatedContract
      *
      * Test if a PUT request to edit an entry results in the entry being saved
@@ -360,8 +1021,8 @@ public class ContractServiceTest {
         //Update the Contract
         savedContract.setConsultantId("consultantIdEdited");
         savedContract.setUnitId("unitIdEdited");
-        savedContract.setStartDate("startDateEdited");
-        savedContract.setEndDate("endDateEdited");
+        savedContract.setStartDate(day("2017-01-01"));
+        savedContract.setEndDate(day("2018-01-01"));
         savedContract.setType("typeEdited");
 
 
@@ -400,6 +1061,566 @@ public class ContractServiceTest {
         assertEquals("Updated entry was not saved to the database", savedContract.getType(), updatedContract.getType());
     }
 
+    /** Test case: editContractShouldInvalidateOldAndNewConsultantLookups
+     *
+     * Test if moving a Contract to another consultant through the service is reflected by the cached
+     * lookups of both the old and the new consultant
+     */
+    @Test
+    public void editContractShouldInvalidateOldAndNewConsultantLookups() {
+        Contract savedContract = repo.save(new Contract("unitId1","consultantId1",day("2015-01-01"),day("2016-01-01"),"type1"));
+
+        ParameterizedTypeReference<List<Contract>> responseType = new ParameterizedTypeReference<List<Contract>>() {};
+        String oldUrl = ROOT_PATH + "/contractsbycid/consultantId1";
+        String newUrl = ROOT_PATH + "/contractsbycid/consultantId2";
+
+        //Warm up the cache for both consultants
+        assertEquals("Response body size did not match", 1, restTemplate.exchange(oldUrl, HttpMethod.GET, null, responseType).getBody().size());
+        assertEquals("Response body size did not match", 0, restTemplate.exchange(newUrl, HttpMethod.GET, null, responseType).getBody().size());
+
+        savedContract.setConsultantId("consultantId2");
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        restTemplate.exchange(UNIT_RESOURCE + "/" + savedContract.getId(), HttpMethod.PUT, new HttpEntity<>(savedContract, requestHeaders), Contract.class);
+
+        assertEquals("Old consultant lookup was not invalidated", 0, restTemplate.exchange(oldUrl, HttpMethod.GET, null, responseType).getBody().size());
+        assertEquals("New consultant lookup was not invalidated", 1, restTemplate.exchange(newUrl, HttpMethod.GET, null, responseType).getBody().size());
+    }
+
+    /** Test case: invalidationFromOtherInstanceShouldEvictCachedLookup
+     *
+     * Test if an invalidation published by another instance evicts the stale lookup from the local cache
+     */
+    @Test
+    public void invalidationFromOtherInstanceShouldEvictCachedLookup() {
+        repo.save(new Contract("unitId1","consultantId1",day("2015-01-01"),day("2016-01-01"),"type1"));
+
+        ParameterizedTypeReference<List<Contract>> responseType = new ParameterizedTypeReference<List<Contract>>() {};
+        String url = ROOT_PATH + "/contractsbycid/consultantId1";
+        assertEquals("Response body size did not match", 1, restTemplate.exchange(url, HttpMethod.GET, null, responseType).getBody().size());
+
+        //Another instance adds a Contract for the same consultant, the local cache does not know yet
+        repo.save(new Contract("unitId2","consultantId1",day("2015-02-01"),day("2016-02-01"),"type2"));
+        assertEquals("Lookup was not served from the cache", 1, restTemplate.exchange(url, HttpMethod.GET, null, responseType).getBody().size());
+
+        ContractInvalidation invalidation = new ContractInvalidation("otherInstance");
+        invalidation.getConsultantIds().add("consultantId1");
+        invalidationTransport.send(invalidation);
+
+        assertEquals("Cached lookup was not evicted", 2, restTemplate.exchange(url, HttpMethod.GET, null, responseType).getBody().size());
+    }
+
+    /** Test case: changesShouldListCreateUpdateAndDeleteInOrder
+     *
+     * Test if a create, an update and a delete show up in the change feed in that order, with increasing sequence numbers
+     * Also, the next link of the feed should resume after the last change
+     */
+    @Test
+    public void changesShouldListCreateUpdateAndDeleteInOrder() {
+        String changesUrl = UNIT_RESOURCE + "/changes";
+        ParameterizedTypeReference<List<ContractChange>> responseType = new ParameterizedTypeReference<List<ContractChange>>() {};
+
+        //Without a starting point the feed only tells where to resume from
+        ResponseEntity<List<ContractChange>> response = restTemplate.exchange(changesUrl, HttpMethod.GET, null, responseType);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertTrue("Response body was not empty", response.getBody().isEmpty());
+        String next = nextLink(response);
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        Contract created = restTemplate.postForEntity(UNIT_RESOURCE, new HttpEntity<>(CONTRACT_1, requestHeaders), Contract.class).getBody();
+        created.setType("type2");
+        restTemplate.exchange(UNIT_RESOURCE + "/" + created.getId(), HttpMethod.PUT, new HttpEntity<>(created, requestHeaders), Contract.class);
+        restTemplate.delete(UNIT_RESOURCE + "/" + created.getId());
+
+        response = restTemplate.exchange(next, HttpMethod.GET, null, responseType);
+        List<ContractChange> changes = response.getBody();
+        assertEquals("Number of changes did not match", 3, changes.size());
+        assertEquals("Change type did not match", ContractChange.CREATED, changes.get(0).getType());
+        assertEquals("Change type did not match", ContractChange.UPDATED, changes.get(1).getType());
+        assertEquals("Updated state was not logged", "type2", changes.get(1).getContract().getType());
+        assertEquals("Change type did not match", ContractChange.DELETED, changes.get(2).getType());
+        for (int i = 0; i < changes.size(); i++) {
+            assertEquals("Change was for another contract", created.getId(), changes.get(i).getContractId());
+            if (i > 0)
+                assertTrue("Sequence numbers did not increase", changes.get(i).getSequence() > changes.get(i - 1).getSequence());
+        }
+
+        //Resuming from the next link returns nothing new
+        response = restTemplate.exchange(nextLink(response), HttpMethod.GET, null, responseType);
+        assertTrue("Changes were returned twice", response.getBody().isEmpty());
+    }
+
+    /** Test case: changesOfABulkRequestShouldBeLoggedTogether
+     *
+     * Test if the operations of a bulk request are logged as one block of consecutive sequence numbers, in request
+     * order, each with the version of the contract it logged
+     */
+    @Test
+    public void changesOfABulkRequestShouldBeLoggedTogether() {
+        String changesUrl = UNIT_RESOURCE + "/changes";
+        ParameterizedTypeReference<List<ContractChange>> responseType = new ParameterizedTypeReference<List<ContractChange>>() {};
+        String next = nextLink(restTemplate.exchange(changesUrl, HttpMethod.GET, null, responseType));
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        Contract existing = restTemplate.postForEntity(UNIT_RESOURCE, new HttpEntity<>(CONTRACT_1, requestHeaders), Contract.class).getBody();
+        List<BulkOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            operations.add(new BulkOperation(BulkOperation.UPSERT, null, new Contract("unitId1", "consultantId" + i, day("2015-01-01"), day("2016-01-01"), "type2")));
+        }
+        operations.add(new BulkOperation(BulkOperation.DELETE, existing.getId(), null));
+        restTemplate.postForEntity(UNIT_RESOURCE + "/bulk", new HttpEntity<>(operations, requestHeaders), BulkReport.class);
+
+        List<ContractChange> changes = restTemplate.exchange(next, HttpMethod.GET, null, responseType).getBody();
+        assertEquals("Number of changes did not match", 5, changes.size());
+        assertEquals("Version of the created contract was not logged", existing.getVersion(), changes.get(0).getVersion());
+        for (int i = 1; i < 4; i++) {
+            assertEquals("Change type did not match", ContractChange.CREATED, changes.get(i).getType());
+            assertEquals("Change was logged out of request order", "consultantId" + (i - 1), changes.get(i).getContract().getConsultantId());
+            assertNotNull("Version was not logged", changes.get(i).getVersion());
+        }
+        assertEquals("Change type did not match", ContractChange.DELETED, changes.get(4).getType());
+        assertEquals("Removed version was not logged", existing.getVersion(), changes.get(4).getVersion());
+        for (int i = 2; i < changes.size(); i++) {
+            assertEquals("Sequence numbers of the bulk request were not consecutive", changes.get(i - 1).getSequence() + 1, changes.get(i).getSequence());
+        }
+    }
+
+    private static String nextLink(ResponseEntity<?> response) {
+        String link = response.getHeaders().getFirst("Link");
+        assertNotNull("Response did not contain a next link", link);
+        return link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+    }
+
+    /** Test case: unitAggregateShouldFollowCreateUpdateAndDelete
+     *
+     * Test if the per unit counters are adjusted by creates, updates and deletes through the service
+     */
+    @Test
+    public void unitAggregateShouldFollowCreateUpdateAndDelete() {
+        //The counters outlive the contracts removed between tests, so use a unit of our own
+        String unitId = "aggregateUnit" + System.nanoTime();
+        String url = ROOT_PATH + "/contracts/aggregates/byunit/" + unitId;
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        Contract first = restTemplate.postForEntity(UNIT_RESOURCE, new HttpEntity<>(new Contract(unitId, "consultantId1", day("2015-01-01"), day("2016-01-01"), "type1"), requestHeaders), Contract.class).getBody();
+        Contract second = restTemplate.postForEntity(UNIT_RESOURCE, new HttpEntity<>(new Contract(unitId, "consultantId2", day("2015-01-01"), day("2016-01-01"), "type1"), requestHeaders), Contract.class).getBody();
+
+        ContractAggregate aggregate = restTemplate.getForEntity(url, ContractAggregate.class).getBody();
+        assertEquals("Total did not match", 2, aggregate.getTotal());
+        assertEquals("Count of type1 did not match", Long.valueOf(2), aggregate.getByType().get("type1"));
+
+        //Move the first contract to another type and remove the second one
+        first.setType("type2");
+        restTemplate.exchange(UNIT_RESOURCE + "/" + first.getId(), HttpMethod.PUT, new HttpEntity<>(first, requestHeaders), Contract.class);
+        restTemplate.delete(UNIT_RESOURCE + "/" + second.getId());
+
+        aggregate = restTemplate.getForEntity(url, ContractAggregate.class).getBody();
+        assertEquals("Total did not match", 1, aggregate.getTotal());
+        assertNull("Count of type1 was not removed", aggregate.getByType().get("type1"));
+        assertEquals("Count of type2 did not match", Long.valueOf(1), aggregate.getByType().get("type2"));
+    }
+
+    /** Test case: unitAggregateShouldFollowBulkWrites
+     *
+     * Test if the per unit counters are adjusted by the operations of a bulk request, whose deltas are written at once
+     */
+    @Test
+    public void unitAggregateShouldFollowBulkWrites() {
+        String unitId = "aggregateUnit" + System.nanoTime();
+        String url = ROOT_PATH + "/contracts/aggregates/byunit/" + unitId;
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        Contract existing = restTemplate.postForEntity(UNIT_RESOURCE, new HttpEntity<>(new Contract(unitId, "consultantId1", day("2015-01-01"), day("2016-01-01"), "type1"), requestHeaders), Contract.class).getBody();
+
+        //Create three contracts and remove the existing one in one request
+        List<BulkOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            operations.add(new BulkOperation(BulkOperation.UPSERT, null, new Contract(unitId, "consultantId" + i, day("2015-01-01"), day("2016-01-01"), "type2")));
+        }
+        operations.add(new BulkOperation(BulkOperation.DELETE, existing.getId(), null));
+        ResponseEntity<BulkReport> response = restTemplate.postForEntity(UNIT_RESOURCE + "/bulk", new HttpEntity<>(operations, requestHeaders), BulkReport.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+
+        ContractAggregate aggregate = restTemplate.getForEntity(url, ContractAggregate.class).getBody();
+        assertEquals("Total did not match", 3, aggregate.getTotal());
+        assertNull("Count of type1 was not removed", aggregate.getByType().get("type1"));
+        assertEquals("Count of type2 did not match", Long.valueOf(3), aggregate.getByType().get("type2"));
+    }
+
+    /** Test case: rebuildShouldSetEveryCounter
+     *
+     * Test if a rebuild sets the counters to the contracts in the database, including counters of units whose
+     * contracts were removed without the service
+     */
+    @Test
+    public void rebuildShouldSetEveryCounter() {
+        String unitId = "aggregateUnit" + System.nanoTime();
+        String url = ROOT_PATH + "/contracts/aggregates/byunit/" + unitId;
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        restTemplate.postForEntity(UNIT_RESOURCE, new HttpEntity<>(new Contract(unitId, "consultantId1", day("2015-01-01"), day("2016-01-01"), "type1"), requestHeaders), Contract.class);
+        repo.save(new Contract(unitId, "consultantId2", day("2015-01-01"), day("2016-01-01"), "type2"));
+        aggregates.rebuild();
+
+        ContractAggregate aggregate = restTemplate.getForEntity(url, ContractAggregate.class).getBody();
+        assertEquals("Contract saved directly was not counted", 2, aggregate.getTotal());
+
+        //Remove the contracts directly and rebuild twice, as instances starting together would
+        repo.deleteAll();
+        aggregates.rebuild();
+        aggregates.rebuild();
+        aggregate = restTemplate.getForEntity(url, ContractAggregate.class).getBody();
+        assertEquals("Counters of removed contracts were not reset", 0, aggregate.getTotal());
+    }
+
+    /** Test case: countersShouldNotCollideOnSeparators
+     *
+     * Test if a unit and type whose ids only differ in where a separator character sits get counters of their own,
+     * when counted on write and when rebuilt
+     */
+    @Test
+    public void countersShouldNotCollideOnSeparators() {
+        String unitId = "aggregateUnit" + System.nanoTime();
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        restTemplate.postForEntity(UNIT_RESOURCE, new HttpEntity<>(new Contract(unitId + "|a", "consultantId1", day("2015-01-01"), day("2016-01-01"), "b"), requestHeaders), Contract.class);
+        restTemplate.postForEntity(UNIT_RESOURCE, new HttpEntity<>(new Contract(unitId, "consultantId1", day("2015-01-01"), day("2016-01-01"), "a|b"), requestHeaders), Contract.class);
+
+        assertEquals("Count of the unit with a separator did not match", Long.valueOf(1), aggregates.forUnit(unitId + "|a").getByType().get("b"));
+        assertEquals("Count of the type with a separator did not match", Long.valueOf(1), aggregates.forUnit(unitId).getByType().get("a|b"));
+
+        aggregates.rebuild();
+        assertEquals("Rebuilt total of the unit with a separator did not match", 1, aggregates.forUnit(unitId + "|a").getTotal());
+        assertEquals("Rebuilt total of the type with a separator did not match", 1, aggregates.forUnit(unitId).getTotal());
+    }
+
+    /** Test case: activeByUnitShouldCountContractsActiveOnDay
+     *
+     * Test if the active contracts per unit are counted for the requested day only
+     */
+    @Test
+    public void activeByUnitShouldCountContractsActiveOnDay() {
+        repo.save(CONTRACT_1);
+        repo.save(CONTRACT_2);
+
+        ParameterizedTypeReference<Map<String, Long>> responseType = new ParameterizedTypeReference<Map<String, Long>>() {};
+        Map<String, Long> active = restTemplate.exchange(ROOT_PATH + "/contracts/aggregates/activebyunit?on=2015-01-15", HttpMethod.GET, null, responseType).getBody();
+
+        //Only CONTRACT_1 has started on 2015-01-15
+        assertEquals("Active count of unitId1 did not match", Long.valueOf(1), active.get("unitId1"));
+        assertNull("unitId2 was not active yet", active.get("unitId2"));
+    }
+
+    /** Test case: editWithStaleIfMatchShouldReturnPreconditionFailed
+     *
+     * Test if a PUT request with an If-Match header of an outdated version is rejected and leaves the entry untouched
+     * The Http Request response should have HttpStatus code: PRECONDITION_FAILED (412)
+     */
+    @Test
+    public void editWithStaleIfMatchShouldReturnPreconditionFailed() {
+        Contract savedContract = repo.save(CONTRACT_1);
+        String url = UNIT_RESOURCE + "/" + savedContract.getId();
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        requestHeaders.set(HttpHeaders.IF_MATCH, ContractEtags.of(savedContract));
+
+        //The first update with the current version succeeds and bumps the version
+        savedContract.setType("typeEdited");
+        ResponseEntity<Contract> response = restTemplate.exchange(url, HttpMethod.PUT, new HttpEntity<>(savedContract, requestHeaders), Contract.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Version was not incremented", Long.valueOf(1), response.getBody().getVersion());
+
+        //The second update still claims the old version
+        savedContract.setType("typeEditedAgain");
+        response = restTemplate.exchange(url, HttpMethod.PUT, new HttpEntity<>(savedContract, requestHeaders), Contract.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.PRECONDITION_FAILED, response.getStatusCode());
+        assertEquals("Stale update was saved to the database", "typeEdited", repo.findOne(savedContract.getId()).getType());
+    }
+
+    /** Test case: getWithMatchingIfNoneMatchShouldReturnNotModified
+     *
+     * Test if a GET request that presents the current ETag gets an empty response, and if both responses vary by
+     * Accept as the ETag is the same for every format
+     * The Http Request response should have HttpStatus code: NOT_MODIFIED (304)
+     */
+    @Test
+    public void getWithMatchingIfNoneMatchShouldReturnNotModified() {
+        Contract savedContract = repo.save(CONTRACT_1);
+        String url = UNIT_RESOURCE + "/" + savedContract.getId();
+
+        ResponseEntity<Contract> response = restTemplate.getForEntity(url, Contract.class);
+        String etag = response.getHeaders().getETag();
+        assertNotNull("Response did not contain an ETag", etag);
+        assertEquals("Response did not vary by Accept", HttpHeaders.ACCEPT, response.getHeaders().getFirst(HttpHeaders.VARY));
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setIfNoneMatch(etag);
+        response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(requestHeaders), Contract.class);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("Not modified response did not vary by Accept", HttpHeaders.ACCEPT, response.getHeaders().getFirst(HttpHeaders.VARY));
+        assertNull("Http Request response body did contain an entry object", response.getBody());
+    }
+
+    /** Test case: getByUnitIdShouldReturnSmileWhenAccepted
+     *
+     * Test if a client that accepts Smile gets the entries Smile encoded, and a client that accepts anything still gets JSON
+     */
+    @Test
+    public void getByUnitIdShouldReturnSmileWhenAccepted() throws Exception {
+        repo.save(CONTRACT_1);
+        String url = ROOT_PATH + "/contractsbyuid/" + CONTRACT_1.getUnitId();
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setAccept(Arrays.asList(ContractFormats.SMILE));
+        ResponseEntity<byte[]> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(requestHeaders), byte[].class);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertTrue("Response was not Smile encoded", ContractFormats.SMILE.isCompatibleWith(response.getHeaders().getContentType()));
+
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        List<Contract> contracts = smileMapper.readValue(response.getBody(), new TypeReference<List<Contract>>() {});
+        assertEquals("Response body size did not match", 1, contracts.size());
+        assertEquals("Start date of the received object is invalid", CONTRACT_1.getStartDate(), contracts.get(0).getStartDate());
+
+        requestHeaders.setAccept(Arrays.asList(MediaType.ALL));
+        response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(requestHeaders), byte[].class);
+        assertTrue("Response was not JSON encoded", MediaType.APPLICATION_JSON.isCompatibleWith(response.getHeaders().getContentType()));
+    }
+
+    /** Test case: getByIdShouldBeRecordedInEndpointAndRepositoryMetrics
+     *
+     * Test if a GET request on an entry shows up in the latency metrics of the endpoint and of the repository
+     * lookup behind it, and in the result size of the endpoint
+     */
+    @Test
+    public void getByIdShouldBeRecordedInEndpointAndRepositoryMetrics() {
+        Contract savedContract = repo.save(CONTRACT_1);
+        Map<String, Number> before = metrics();
+
+        restTemplate.getForEntity(UNIT_RESOURCE + "/" + savedContract.getId(), Contract.class);
+        Map<String, Number> after = metrics();
+
+        String endpoint = "timer.contract.endpoint.contractService.getById.count";
+        String repository = "timer.contract.repository.findOne.count";
+        String resultSize = "histogram.contract.endpoint.contractService.getById.resultSize.count";
+        assertEquals("Endpoint call was not timed", count(before, endpoint) + 1, count(after, endpoint));
+        assertEquals("Repository call was not timed", count(before, repository) + 1, count(after, repository));
+        assertEquals("Result size was not recorded", count(before, resultSize) + 1, count(after, resultSize));
+        assertTrue("Mongo pool gauges were not exposed", after.containsKey("mongo.pool.size"));
+    }
+
+    /** Test case: asyncStreamShouldBeTimedOnceComplete
+     *
+     * Test if the asynchronous stream, whose handler returns before the response is written, is timed once when
+     * its response completes
+     */
+    @Test
+    public void asyncStreamShouldBeTimedOnceComplete() throws InterruptedException {
+        repo.save(CONTRACT_1);
+        String endpoint = "timer.contract.endpoint.contractAsyncService.streamAll.count";
+        long before = count(metrics(), endpoint);
+
+        ResponseEntity<String> stream = restTemplate.getForEntity(ROOT_PATH + "/async/contracts/stream", String.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, stream.getStatusCode());
+
+        //The completion is recorded by the container thread that completes the response, shortly after the client read it
+        long after = count(metrics(), endpoint);
+        for (int i = 0; i < 50 && after == before; i++) {
+            Thread.sleep(20);
+            after = count(metrics(), endpoint);
+        }
+        assertEquals("Stream was not timed exactly once", before + 1, after);
+    }
+
+    /** Test case: getByIdShouldBeWrittenToAccessLog
+     *
+     * Test if a GET request on an entry is written to the access log by its writer thread
+     */
+    @Test
+    public void getByIdShouldBeWrittenToAccessLog() throws InterruptedException {
+        Contract savedContract = repo.save(CONTRACT_1);
+        long written = accessLog.getWritten();
+
+        restTemplate.getForEntity(UNIT_RESOURCE + "/" + savedContract.getId(), Contract.class);
+
+        //The access log is written asynchronously, give the writer thread some time
+        for (int i = 0; i < 50 && accessLog.getWritten() == written; i++) {
+            Thread.sleep(20);
+        }
+        assertTrue("Request was not written to the access log", accessLog.getWritten() > written);
+    }
+
+    /** Test case: asyncStreamShouldBeWrittenToAccessLogOnce
+     *
+     * Test if the asynchronous stream, whose handler returns before the response is written, is written to the
+     * access log once, when its response completes
+     */
+    @Test
+    public void asyncStreamShouldBeWrittenToAccessLogOnce() throws InterruptedException {
+        repo.save(CONTRACT_1);
+        long written = accessLog.getWritten();
+
+        restTemplate.getForEntity(ROOT_PATH + "/async/contracts/stream", String.class);
+
+        for (int i = 0; i < 50 && accessLog.getWritten() == written; i++) {
+            Thread.sleep(20);
+        }
+        //Give a second entry the time to show up as well
+        Thread.sleep(100);
+        assertEquals("Stream was not written to the access log exactly once", written + 1, accessLog.getWritten());
+    }
+
+    /** Test case: startupShouldBeWarmedUpAndTimed
+     *
+     * Test if the instance finished its warm-up before the tests started, and the durations of the startup
+     * phases are exposed on the metrics endpoint
+     */
+    @Test
+    public void startupShouldBeWarmedUpAndTimed() {
+        assertTrue("Instance was not warmed up", warmUp.isWarmedUp());
+
+        Map<String, Number> metrics = metrics();
+        for (String phase : Arrays.asList("context", "container", "mongoPool", "jackson", "endpoints", "total")) {
+            assertTrue("Startup phase " + phase + " was not timed", metrics.containsKey("startup." + phase));
+        }
+    }
+
+    /** Test case: concurrentIdenticalLookupsShouldShareOneQuery
+     *
+     * Test if concurrent lookups of the same unit through the repository share the query in flight instead of starting
+     * their own, and if only the queries that reach Mongo are timed by the repository metrics
+     */
+    @Test
+    public void concurrentIdenticalLookupsShouldShareOneQuery() throws Exception {
+        final Contract savedContract = repo.save(CONTRACT_1);
+        String calls = "coalescing.findByUnitId.calls";
+        String coalesced = "coalescing.findByUnitId.coalesced";
+        String queries = "timer.contract.repository.findByUnitId.count";
+        Map<String, Number> before = metrics();
+
+        //Start identical lookups at the same moment until some of them joined a query in flight
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        for (int round = 0; round < 20 && count(metrics(), coalesced) == count(before, coalesced); round++) {
+            final CyclicBarrier start = new CyclicBarrier(16);
+            List<Future<Iterable<Contract>>> lookups = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                lookups.add(executor.submit(new Callable<Iterable<Contract>>() {
+                    @Override
+                    public Iterable<Contract> call() throws Exception {
+                        start.await();
+                        return repo.findByUnitId(savedContract.getUnitId());
+                    }
+                }));
+            }
+            for (Future<Iterable<Contract>> lookup : lookups) {
+                assertEquals("Lookup did not return the contract", savedContract.getId(), lookup.get().iterator().next().getId());
+            }
+        }
+        executor.shutdown();
+
+        Map<String, Number> after = metrics();
+        long coalescedCalls = count(after, coalesced) - count(before, coalesced);
+        assertTrue("Concurrent lookups were not coalesced", coalescedCalls > 0);
+        //Coalescing wraps the repository metrics, so a coalesced lookup is not timed as a query
+        assertEquals("Coalesced lookups reached the repository", count(after, calls) - count(before, calls) - coalescedCalls,
+                count(after, queries) - count(before, queries));
+    }
+
+    /** Test case: fullBulkheadShouldShedOnlyItsOwnEndpoint
+     *
+     * Test if a request to an endpoint whose slots are all taken is shed with HttpStatus code: SERVICE_UNAVAILABLE (503)
+     * and a Retry-After header, while other endpoints keep answering, and if it is served again once a slot frees up
+     */
+    @Test
+    public void fullBulkheadShouldShedOnlyItsOwnEndpoint() throws Exception {
+        Contract savedContract = repo.save(CONTRACT_1);
+        String refsUrl = ROOT_PATH + "/contractsbyuid/" + savedContract.getUnitId() + "/refs";
+        Bulkhead bulkhead = bulkheads.bulkhead(ContractService.class, ContractService.class.getMethod("getRefsByUnitId", String.class));
+
+        //Take every slot of the endpoint, as slow requests would
+        long start = System.nanoTime();
+        int taken = 0;
+        while (bulkhead.tryAcquire()) {
+            taken++;
+        }
+        ResponseEntity<String> response = restTemplate.getForEntity(refsUrl, String.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertNotNull("Retry-After header was missing", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        ResponseEntity<Contract> lookup = restTemplate.getForEntity(UNIT_RESOURCE + "/" + savedContract.getId(), Contract.class);
+        assertEquals("Other endpoint was not isolated", HttpStatus.OK, lookup.getStatusCode());
+
+        for (int i = 0; i < taken; i++) {
+            bulkhead.release(System.nanoTime() - start);
+        }
+        response = restTemplate.getForEntity(refsUrl, String.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+    }
+
+    /** Test case: asyncStreamShouldHoldItsSlotUntilComplete
+     *
+     * Test if the asynchronous stream, which starts its asynchronous processing itself, keeps its bulkhead slot
+     * after the handler returned while the stream is still being written, and releases it once the stream completed
+     */
+    @Test
+    public void asyncStreamShouldHoldItsSlotUntilComplete() throws Exception {
+        repo.save(CONTRACT_1);
+        Bulkhead bulkhead = bulkheads.bulkhead(ContractAsyncService.class,
+                ContractAsyncService.class.getMethod("streamAll", HttpServletRequest.class, HttpServletResponse.class));
+
+        //Keep every read thread busy, so the stream cannot read its first batch yet
+        final CountDownLatch blocked = new CountDownLatch(1);
+        for (int i = 0; i < readExecutor.getMaxPoolSize(); i++) {
+            readExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        blocked.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        ExecutorService client = Executors.newSingleThreadExecutor();
+        Future<ResponseEntity<String>> stream = client.submit(new Callable<ResponseEntity<String>>() {
+            @Override
+            public ResponseEntity<String> call() {
+                return restTemplate.getForEntity(ROOT_PATH + "/async/contracts/stream", String.class);
+            }
+        });
+        try {
+            Thread.sleep(300);
+            assertEquals("Slot was released before the stream was written", 1, bulkhead.getInFlight());
+        } finally {
+            blocked.countDown();
+        }
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, stream.get().getStatusCode());
+        client.shutdown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (bulkhead.getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("Slot was not released once the stream completed", 0, bulkhead.getInFlight());
+    }
+
+    private Map<String, Number> metrics() {
+        return restTemplate.exchange(ROOT_PATH + "/metrics", HttpMethod.GET, null,
+                new ParameterizedTypeReference<Map<String, Number>>() {}).getBody();
+    }
+
+    private static long count(Map<String, Number> metrics, String name) {
+        return metrics.containsKey(name) ? metrics.get(name).longValue() : 0;
+    }
+
     /** Test case: editUnexistingContractShouldReturnError
      *
      * Test that when we try to update an unexisting entry the Http Request response does not contain an object
@@ -480,4 +1701,8 @@ public class ContractServiceTest {
         //Check if the entry was deleted in the database
         assertEquals("Contract was not deleted from the database", 0, repo.count());
     }
-}
\ No newline at end of file
+
+    private static Date day(String value) {
+        return ContractDates.parse(value);
+    }
+}